@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes and reads strings in the binary files of the inventory, such as snapshots and the stock journal.
+ * A string is stored as the number of bytes followed by the bytes in UTF-8, or as -1 if it is null.
+ */
+final class BinaryStrings {
+    private static final int NULL_STRING = -1;
+
+    private BinaryStrings() {
+
+    }
+
+    /**
+     * Writes a string.
+     *
+     * @param out the output to write to.
+     * @param string the string. May be null.
+     * @throws IOException if the string could not be written.
+     */
+    static void write(DataOutput out, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(NULL_STRING);
+        } else {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Reads a string that was written by {@link #write(DataOutput, String)}.
+     *
+     * @param in the buffer to read from, positioned at the string.
+     * @return the string. May be null.
+     * @throws IOException if the length of the string is negative or longer than the rest of the buffer.
+     */
+    static String read(ByteBuffer in) throws IOException {
+        int length = in.getInt();
+
+        if (length == NULL_STRING) {
+            return null;
+        }
+
+        if (length < 0 || length > in.remaining()) {
+            throw new IOException("A string can not have " + length + " bytes");
+        }
+
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -19,23 +19,40 @@
 
 package inventory;
 
-import org.apache.commons.lang3.builder.EqualsBuilder;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
-
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Objects;
 
 /**
  * An immutable domain object describing a book.
+ *
+ * Books are used as keys in the maps of the inventory so the hash code is computed once, when the book is created,
+ * and equals compares the hash codes before it compares any fields.
  */
 public class Book {
-    private String title;
-    private String author;
-    private BigDecimal price;
+    private static final int CENTS_SCALE = 2;
+
+    private final String title;
+    private final String author;
+    private final BigDecimal price;
+    private final int hashCode;
 
     public Book(String title, String author, BigDecimal price) {
         this.title = title;
         this.author = author;
         this.price = price;
+        this.hashCode = computeHashCode();
+    }
+
+    /**
+     * Creates a book with a price in fixed-point representation.
+     *
+     * @param title the title.
+     * @param author the author.
+     * @param priceInCents the price in hundredths of the currency unit, 76200 for 762.00.
+     */
+    public Book(String title, String author, long priceInCents) {
+        this(title, author, BigDecimal.valueOf(priceInCents, CENTS_SCALE));
     }
 
     public String getTitle() {
@@ -50,6 +67,16 @@ public class Book {
         return this.price;
     }
 
+    /**
+     * Returns the price in fixed-point representation, rounded half up to whole hundredths of the currency unit.
+     *
+     * @return the price in cents, 76200 for 762.00.
+     * @throws ArithmeticException if the price does not fit in a long.
+     */
+    public long getPriceInCents() {
+        return price.setScale(CENTS_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) {
@@ -62,22 +89,15 @@ public class Book {
 
         Book other = (Book) obj;
 
-        EqualsBuilder eb = new EqualsBuilder();
-        eb.append(title, other.title);
-        eb.append(author, other.author);
-        eb.append(price, other.price);
-
-        return eb.isEquals();
+        return hashCode == other.hashCode
+                && Objects.equals(title, other.title)
+                && Objects.equals(author, other.author)
+                && Objects.equals(price, other.price);
     }
 
     @Override
     public int hashCode() {
-        HashCodeBuilder hb = new HashCodeBuilder();
-        hb.append(title);
-        hb.append(author);
-        hb.append(price);
-
-        return hb.toHashCode();
+        return hashCode;
     }
 
     @Override
@@ -91,4 +111,24 @@ public class Book {
         sb.append(price.toString());
         return sb.toString();
     }
+
+    /**
+     * Mixes the high bits of the hash code of a book into the low bits, for hash tables and partitions that only use
+     * the low bits. The hash code of a book is a polynomial of the hash codes of its fields, so books with similar
+     * fields often share their low bits.
+     *
+     * @param hashCode the hash code of a book.
+     * @return the mixed hash code.
+     */
+    static int spread(int hashCode) {
+        return hashCode ^ (hashCode >>> 16);
+    }
+
+    private int computeHashCode() {
+        int result = Objects.hashCode(title);
+        result = 31 * result + Objects.hashCode(author);
+        result = 31 * result + Objects.hashCode(price);
+
+        return result;
+    }
 }
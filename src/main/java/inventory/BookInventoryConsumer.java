@@ -0,0 +1,34 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+/**
+ * A consumer of the rows of a book inventory, such as {@link BookList#add(Book, int)}.
+ */
+@FunctionalInterface
+public interface BookInventoryConsumer {
+    /**
+     * Receives one row of a book inventory.
+     *
+     * @param book the book.
+     * @param quantity the number of available copies.
+     */
+    void accept(Book book, int quantity);
+}
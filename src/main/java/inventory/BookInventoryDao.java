@@ -21,6 +21,7 @@
 package inventory;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -29,5 +30,43 @@ import java.util.Map;
  */
 @FunctionalInterface
 public interface BookInventoryDao {
-    Map<Book, Integer> bookInventory(String bookInventoryUrl) throws IOException;
+    /**
+     * Reads a book inventory and passes each book and the amount of available copies to the consumer
+     * while the inventory is being read.
+     *
+     * @param bookInventoryUrl the location of the book inventory.
+     * @param consumer the consumer that receives the books.
+     * @throws IOException if the inventory can not be read.
+     */
+    void bookInventory(String bookInventoryUrl, BookInventoryConsumer consumer) throws IOException;
+
+    /**
+     * Reads a book inventory like {@link #bookInventory(String, BookInventoryConsumer)}, but only if it has
+     * changed since it was last read by this dao. Implementations that can not tell if the inventory has changed
+     * always read it.
+     *
+     * @param bookInventoryUrl the location of the book inventory.
+     * @param consumer the consumer that receives the books.
+     * @return true if the inventory was read, false if it has not changed and nothing was passed to the consumer.
+     * @throws IOException if the inventory can not be read.
+     */
+    default boolean bookInventoryIfModified(String bookInventoryUrl, BookInventoryConsumer consumer)
+            throws IOException {
+        bookInventory(bookInventoryUrl, consumer);
+        return true;
+    }
+
+    /**
+     * Reads a book inventory into a map of books and the amount of available copies.
+     * If a book appears more than once the quantities are summed.
+     *
+     * @param bookInventoryUrl the location of the book inventory.
+     * @return a map of books and the number of available copies.
+     * @throws IOException if the inventory can not be read.
+     */
+    default Map<Book, Integer> bookInventory(String bookInventoryUrl) throws IOException {
+        Map<Book, Integer> bookInventory = new HashMap<>();
+        bookInventory(bookInventoryUrl, (book, quantity) -> bookInventory.merge(book, quantity, Integer::sum));
+        return bookInventory;
+    }
 }
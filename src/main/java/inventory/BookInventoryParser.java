@@ -22,6 +22,7 @@ package inventory;
 
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -29,13 +30,29 @@ import java.util.Map;
  */
 @FunctionalInterface
 public interface BookInventoryParser {
+    /**
+     * Parses a book list from an {@link java.io.InputStreamReader} and passes each book and the amount of
+     * available copies to the consumer as soon as it has been parsed. Nothing is kept in memory by the parser
+     * so the consumer can for example add the books directly to a {@link BookList}.
+     *
+     * @param bookInventoryStreamReader the {@link java.io.InputStreamReader} that contains the book inventory.
+     * @param consumer the consumer that receives the books, in the order they appear in the inventory.
+     * @throws IOException if the stream can not be read or the data could not be parsed.
+     */
+    void parse(InputStreamReader bookInventoryStreamReader, BookInventoryConsumer consumer) throws IOException;
+
     /**
      * Parses a book list from an {@link java.io.InputStreamReader} and returns a map of books and the amount of
-     * available copies.
+     * available copies. If a book appears more than once the quantities are summed, the same way as when the books
+     * are added to a {@link BookList}.
      *
      * @param bookInventoryStreamReader the {@link java.io.InputStreamReader} that contains the book inventory.
      * @return a map of books and the number of available copies.
      * @throws IOException if the stream can not be read or the data could not be parsed.
      */
-    Map<Book, Integer> parse(InputStreamReader bookInventoryStreamReader) throws IOException;
+    default Map<Book, Integer> parse(InputStreamReader bookInventoryStreamReader) throws IOException {
+        Map<Book, Integer> bookInventory = new HashMap<>();
+        parse(bookInventoryStreamReader, (book, quantity) -> bookInventory.merge(book, quantity, Integer::sum));
+        return bookInventory;
+    }
 }
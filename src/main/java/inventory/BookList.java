@@ -19,8 +19,17 @@
 
 package inventory;
 
+import java.util.Map;
+import java.util.stream.Stream;
+
 public interface BookList {
     Book[] list(String searchString);
+    Book[] list(String searchString, SearchOptions options, int limit);
+    Book[] list(String searchString, SearchOptions options, int offset, int limit);
+    Stream<Book> stream();
     void add(Book book, int quantity);
+    void addAll(Map<Book, Integer> books);
+    int remove(Book book, int quantity);
     int[] buy(Book... books);
+    int[] buyAll(Book... books);
 }
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.util.stream.Stream;
+
+/**
+ * An append-only store of books where the id of a book is the position at which it was added.
+ *
+ * There may only be one writer at a time but any number of readers can read the books without locking while
+ * the writer adds new books. A book is visible to readers once {@link #add(Book)} has returned and all books with
+ * an id lower than {@link #size()} are always visible, which makes the size usable as a consistent snapshot of
+ * the store.
+ */
+interface BookStore {
+
+    /**
+     * Adds a book to the store. The caller must make sure that there is only one writer at a time.
+     *
+     * @param book the book to add.
+     * @return the id of the book.
+     */
+    int add(Book book);
+
+    /**
+     * Adds many books to the store. The books become visible to readers at the same time, when all of them
+     * have been added. The caller must make sure that there is only one writer at a time.
+     *
+     * @param books the books to add.
+     * @return the id of the first book, the other books have the ids that follows.
+     */
+    int addAll(Book[] books);
+
+    /**
+     * Returns the book with the specified id.
+     *
+     * @param id the id of the book. Must be lower than a value previously returned by {@link #size()}.
+     * @return the book.
+     */
+    Book get(int id);
+
+    /**
+     * Returns the id of a book that is visible to readers.
+     *
+     * @param book the book to look for.
+     * @return the id of the book, or -1 if it has not been added or is not visible yet.
+     */
+    int idOf(Book book);
+
+    /**
+     * Returns the number of books that are visible to readers.
+     *
+     * @return the number of books.
+     */
+    int size();
+
+    /**
+     * Returns all books that are visible to readers, ordered by id.
+     *
+     * @return an array of books.
+     */
+    default Book[] toArray() {
+        return toArray(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns a range of the books that are visible to readers, ordered by id.
+     *
+     * @param offset the id of the first book to return.
+     * @param limit the maximum number of books to return.
+     * @return an array of at most limit books, empty if the offset is beyond the last book.
+     */
+    Book[] toArray(int offset, int limit);
+
+    /**
+     * Returns a lazy stream of the books that were visible to readers when the stream was created, ordered by id.
+     * The books are read from the store while the stream is consumed, nothing is copied up front.
+     *
+     * @return a stream of books.
+     */
+    Stream<Book> stream();
+}
@@ -26,7 +26,8 @@ package inventory;
 public enum BuyResult {
     OK,
     NOT_IN_STOCK,
-    DOES_NOT_EXIST;
+    DOES_NOT_EXIST,
+    CANCELLED;
 
     /**
      * Returns the value of the enum.
@@ -55,6 +56,9 @@ public enum BuyResult {
             case 2:
                 result = DOES_NOT_EXIST;
                 break;
+            case 3:
+                result = CANCELLED;
+                break;
             default:
                 throw new IllegalArgumentException(value + " is not a valid enum value");
         }
@@ -76,6 +80,9 @@ public enum BuyResult {
             case 2:
                 str = "does not exist";
                 break;
+            case 3:
+                str = "not bought since other books could not be bought";
+                break;
             default:
                 str = "This should never happen";
         }
@@ -28,13 +28,13 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.math.BigDecimal;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * An implementation of the {@link BookInventoryParser} that parses book inventories in CSV representation.
  *
  * The format of a line in the CSV is title;author;price;available copies
+ *
+ * Titles and authors that appear on more than one line share the same String instance.
  */
 public class CsvBookInventoryParser implements BookInventoryParser {
 
@@ -49,35 +49,34 @@ public class CsvBookInventoryParser implements BookInventoryParser {
     private static final String LIST_SEPARATOR = ";";
 
     @Override
-    public Map<Book, Integer> parse(InputStreamReader bookInventoryStreamReader) throws IOException {
-        Map<Book, Integer> bookInventory = new HashMap<>();
+    public void parse(InputStreamReader bookInventoryStreamReader, BookInventoryConsumer consumer)
+            throws IOException {
         BufferedReader reader = new BufferedReader(bookInventoryStreamReader);
+        StringDictionary dictionary = new StringDictionary();
 
         String line = reader.readLine();
 
         while (line != null) {
-            parseLine(bookInventory, line);
+            parseLine(consumer, dictionary, line);
             line = reader.readLine();
         }
-
-        return bookInventory;
     }
 
-    private void parseLine(Map<Book, Integer> bookInventory, String line) {
+    private void parseLine(BookInventoryConsumer consumer, StringDictionary dictionary, String line) {
         String[] words = StringUtils.split(line, LIST_SEPARATOR);
 
         if (words.length != NUMBER_OF_FIELDS) {
             return;
         }
 
-        String title = words[TITLE];
-        String author = words[AUTHOR];
+        String title = dictionary.canonical(words[TITLE]);
+        String author = dictionary.canonical(words[AUTHOR]);
         String priceAsString = words[PRICE].replace(THOUSAND_SEPARATOR, EMPTY_STRING);
         String quantityAsString = words[QUANTITY];
 
         try {
             Book book = new Book(title, author, new BigDecimal(priceAsString));
-            bookInventory.put(book, Integer.parseInt(quantityAsString));
+            consumer.accept(book, Integer.parseInt(quantityAsString));
         } catch (NumberFormatException e) {
             print("Could not parse \"", quantityAsString, "\" to a BigDecimal. Row will be skipped");
         }
@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The inverted index of one field of a book, such as the title or the author.
+ *
+ * Keeps the ids of the books that contain each word and the number of words in the field of each book,
+ * which is needed to rank the search results. Follows the same rules as {@link Postings}: one writer at a time
+ * and any number of readers that do not lock.
+ */
+final class FieldIndex {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final TermDictionary terms;
+    private volatile int[] lengths;
+    private volatile long totalLength;
+
+    FieldIndex() {
+        this(new TermDictionary(), new int[INITIAL_CAPACITY], 0);
+    }
+
+    private FieldIndex(TermDictionary terms, int[] lengths, long totalLength) {
+        this.terms = terms;
+        this.lengths = lengths;
+        this.totalLength = totalLength;
+    }
+
+    /**
+     * Reads an index that was written by {@link #write(DataOutput, int)}.
+     *
+     * @param in the buffer to read from, positioned at the index.
+     * @param numberOfBooks the number of books in the inventory, which must be the number of indexed books.
+     * @return the index.
+     * @throws IOException if the index is corrupt.
+     */
+    static FieldIndex read(ByteBuffer in, int numberOfBooks) throws IOException {
+        int indexedBooks = in.getInt();
+        long totalLength = in.getLong();
+
+        if (indexedBooks != numberOfBooks || numberOfBooks > in.remaining() / Integer.BYTES || totalLength < 0) {
+            throw new IOException("An index of " + numberOfBooks + " books can not have " + indexedBooks
+                    + " books and " + totalLength + " words");
+        }
+
+        int[] lengths = new int[Math.max(INITIAL_CAPACITY, numberOfBooks)];
+
+        in.asIntBuffer().get(lengths, 0, numberOfBooks);
+        in.position(in.position() + numberOfBooks * Integer.BYTES);
+
+        return new FieldIndex(TermDictionary.read(in, numberOfBooks), lengths, totalLength);
+    }
+
+    /**
+     * Writes the index. The caller must make sure that there is only one writer at a time and that no book
+     * with a higher id than numberOfBooks - 1 has been indexed.
+     *
+     * @param out the output to write to.
+     * @param numberOfBooks the number of indexed books.
+     * @throws IOException if the index could not be written.
+     */
+    void write(DataOutput out, int numberOfBooks) throws IOException {
+        int[] current = lengths;
+        out.writeInt(numberOfBooks);
+        out.writeLong(totalLength);
+
+        for (int i = 0; i < numberOfBooks; i++) {
+            out.writeInt(current[i]);
+        }
+
+        terms.write(out);
+    }
+
+    /**
+     * Indexes the words of a field. Books must be added in ascending id order.
+     *
+     * @param bookId the id of the book.
+     * @param words the normalized words of the field.
+     */
+    void add(int bookId, String[] words) {
+        for (String word : words) {
+            terms.getOrAdd(word).add(bookId);
+        }
+
+        int[] current = lengths;
+
+        if (bookId >= current.length) {
+            current = Arrays.copyOf(current, Math.max(current.length * 2, bookId + 1));
+            current[bookId] = words.length;
+            lengths = current;
+        } else {
+            current[bookId] = words.length;
+        }
+
+        totalLength = totalLength + words.length;
+    }
+
+    /**
+     * Indexes the words of the field of many books at once. The books must have higher ids than all books
+     * that are already indexed.
+     *
+     * Each distinct word is only looked up once in the dictionary and the words that are new to the index are
+     * added to it together, sorted, instead of one at a time.
+     *
+     * @param firstBookId the id of the first book, the other books have the ids that follows.
+     * @param words the normalized words of the field of each book.
+     */
+    void addAll(int firstBookId, String[][] words) {
+        Map<String, Postings> batch = new HashMap<>(Math.max(INITIAL_CAPACITY, words.length));
+        SortedMap<String, Postings> newTerms = new TreeMap<>();
+        int end = firstBookId + words.length;
+        int[] current = lengths;
+        long addedLength = 0;
+
+        if (end > current.length) {
+            current = Arrays.copyOf(current, Math.max(current.length * 2, end));
+        }
+
+        for (int i = 0; i < words.length; i++) {
+            int bookId = firstBookId + i;
+
+            for (String word : words[i]) {
+                Postings postings = batch.get(word);
+
+                if (postings == null) {
+                    postings = terms.get(word);
+
+                    if (postings == null) {
+                        postings = new Postings();
+                        newTerms.put(word, postings);
+                    }
+
+                    batch.put(word, postings);
+                }
+
+                postings.add(bookId);
+            }
+
+            current[bookId] = words[i].length;
+            addedLength += words[i].length;
+        }
+
+        terms.addAll(newTerms);
+        lengths = current;
+        totalLength = totalLength + addedLength;
+    }
+
+    /**
+     * Returns the ids of the books that contains the word.
+     *
+     * @param word the normalized word.
+     * @return the ids or null if no book contains the word.
+     */
+    Postings get(String word) {
+        return terms.get(word);
+    }
+
+    /**
+     * Visits the postings of all words that starts with the prefix.
+     *
+     * @param prefix the normalized prefix.
+     * @param visitor the visitor that receives the postings.
+     */
+    void forEachWithPrefix(String prefix, TermDictionary.Visitor visitor) {
+        terms.forEachWithPrefix(prefix, visitor);
+    }
+
+    /**
+     * Visits the postings of all words that are at most maxEdits edits from the word.
+     *
+     * @param word the normalized word.
+     * @param maxEdits the maximum number of edits.
+     * @param visitor the visitor that receives the postings and the number of edits.
+     */
+    void forEachWithinDistance(String word, int maxEdits, TermDictionary.Visitor visitor) {
+        terms.forEachWithinDistance(word, maxEdits, visitor);
+    }
+
+    /**
+     * Returns the number of words in the field of a book.
+     *
+     * @param bookId the id of a published book.
+     * @return the number of words.
+     */
+    int length(int bookId) {
+        return lengths[bookId];
+    }
+
+    /**
+     * Returns the average number of words in the field.
+     *
+     * @param numberOfBooks the number of books to average over.
+     * @return the average number of words, at least 1.
+     */
+    double averageLength(int numberOfBooks) {
+        return Math.max(1.0, (double) totalLength / Math.max(1, numberOfBooks));
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * A {@link BookStore} that keeps the books on the heap, in an array that is indexed by id.
+ *
+ * The ids of the books are looked up in a concurrent map that is updated before a book is published.
+ */
+final class HeapBookStore implements BookStore {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Map<Book, Integer> ids;
+    private volatile Book[] books;
+    private volatile int size;
+
+    HeapBookStore() {
+        this.ids = new ConcurrentHashMap<>();
+        this.books = new Book[INITIAL_CAPACITY];
+    }
+
+    @Override
+    public int add(Book book) {
+        int id = size;
+        Book[] current = books;
+
+        if (id == current.length) {
+            current = Arrays.copyOf(current, id * 2);
+            current[id] = book;
+            books = current;
+        } else {
+            current[id] = book;
+        }
+
+        ids.put(book, id);
+        size = id + 1;
+
+        return id;
+    }
+
+    @Override
+    public int addAll(Book[] newBooks) {
+        int firstId = size;
+        int end = firstId + newBooks.length;
+        Book[] current = books;
+
+        if (end > current.length) {
+            current = Arrays.copyOf(current, Math.max(current.length * 2, end));
+            System.arraycopy(newBooks, 0, current, firstId, newBooks.length);
+            books = current;
+        } else {
+            System.arraycopy(newBooks, 0, current, firstId, newBooks.length);
+        }
+
+        for (int i = 0; i < newBooks.length; i++) {
+            ids.put(newBooks[i], firstId + i);
+        }
+
+        size = end;
+
+        return firstId;
+    }
+
+    @Override
+    public Book get(int id) {
+        return books[id];
+    }
+
+    @Override
+    public int idOf(Book book) {
+        Integer id = ids.get(book);
+        // The id is put in the map before the book is published so it must be checked against the size.
+        return id != null && id < size ? id : -1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Book[] toArray(int offset, int limit) {
+        // The size must be read before the array, a newer array always contains all books of an older one.
+        int count = size;
+        Book[] current = books;
+        int from = Math.min(offset, count);
+        int to = from + Math.min(count - from, limit);
+
+        return Arrays.copyOfRange(current, from, to);
+    }
+
+    @Override
+    public Stream<Book> stream() {
+        // The size must be read before the array, a newer array always contains all books of an older one.
+        int count = size;
+        return Arrays.stream(books, 0, count);
+    }
+}
@@ -23,17 +23,25 @@ package inventory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLConnection;
 import java.nio.charset.Charset;
-import java.util.Map;
 
 /**
  * An implementation of the {@link BookInventoryDao} that reads a book list from
  * an URL.
+ *
+ * The ETag and Last-Modified headers of the last HTTP response are remembered so that
+ * {@link #bookInventoryIfModified(String, BookInventoryConsumer)} can ask the server to only send the book list
+ * if it has changed.
  */
 public class HtmlBookListDao implements BookInventoryDao {
 
     private BookInventoryParser parser;
+    private String validatedUrl;
+    private String entityTag;
+    private String lastModified;
 
     /**
      * Constructor.
@@ -45,15 +53,57 @@ public class HtmlBookListDao implements BookInventoryDao {
     }
 
     @Override
-    public Map<Book, Integer> bookInventory(String bookInventoryUrl) throws IOException {
-        URL url = new URL(bookInventoryUrl);
-        Map<Book, Integer> bookInventory;
+    public void bookInventory(String bookInventoryUrl, BookInventoryConsumer consumer) throws IOException {
+        read(bookInventoryUrl, consumer, false);
+    }
 
-        try (InputStream inputStream = url.openStream();
+    /**
+     * Reads the book list unless the server answers a conditional request with 304 Not Modified.
+     * The request is only conditional if the book list has been read from the same URL before and the server
+     * sent an ETag or a Last-Modified header.
+     */
+    @Override
+    public boolean bookInventoryIfModified(String bookInventoryUrl, BookInventoryConsumer consumer)
+            throws IOException {
+        return read(bookInventoryUrl, consumer, true);
+    }
+
+    private boolean read(String bookInventoryUrl, BookInventoryConsumer consumer, boolean conditional)
+            throws IOException {
+        URLConnection connection = new URL(bookInventoryUrl).openConnection();
+
+        if (conditional) {
+            synchronized (this) {
+                if (bookInventoryUrl.equals(validatedUrl)) {
+                    setRequestProperty(connection, "If-None-Match", entityTag);
+                    setRequestProperty(connection, "If-Modified-Since", lastModified);
+                }
+            }
+        }
+
+        if (connection instanceof HttpURLConnection &&
+                ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            ((HttpURLConnection) connection).disconnect();
+            return false;
+        }
+
+        try (InputStream inputStream = connection.getInputStream();
              InputStreamReader reader = new InputStreamReader(inputStream, Charset.forName("UTF-8"))) {
-            bookInventory = parser.parse(reader);
+            parser.parse(reader, consumer);
+        }
+
+        synchronized (this) {
+            validatedUrl = bookInventoryUrl;
+            entityTag = connection.getHeaderField("ETag");
+            lastModified = connection.getHeaderField("Last-Modified");
         }
 
-        return bookInventory;
+        return true;
+    }
+
+    private static void setRequestProperty(URLConnection connection, String key, String value) {
+        if (value != null) {
+            connection.setRequestProperty(key, value);
+        }
     }
 }
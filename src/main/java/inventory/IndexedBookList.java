@@ -19,34 +19,390 @@
 
 package inventory;
 
-import org.apache.commons.lang3.StringUtils;
-
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
- * An implementation of the {@link BookList} interface that uses three maps and a list to enable
- * fast and effective searching for books.
+ * An implementation of the {@link BookList} interface that gives each book an id, in the order the books are added,
+ * and keeps everything about a book by its id. The books are kept in a {@link BookStore} that also finds the id of a
+ * book by its hash, the copies in stock are kept in {@link StockCounts} and the title and the author each have a
+ * search index, a {@link FieldIndex}. A field index has a sorted {@link TermDictionary} of the words in the field
+ * and the delta encoded {@link Postings} of the ids of the books that contain each word, so a search only visits the
+ * books that contain its words and buying a book never depends on the size of the catalog.
+ *
+ * Searching and listing never takes a lock. Books and index entries are only ever appended and a book becomes
+ * visible to readers when it is published in the book store, after it has been indexed. A search only considers
+ * the books that were published when the search started so it always sees a consistent catalog even when
+ * books are added at the same time.
+ *
+ * The whole inventory, including the search index, can be written to a binary snapshot that is read back without
+ * parsing or indexing anything, see {@link #writeSnapshot(Path)} and {@link #readSnapshot(Path)}.
+ * Changes to the stock can also be written to a journal, see {@link #openJournal(Path)}, so that they survive a
+ * restart. A snapshot together with the journal contains every change that was made to the inventory.
+ *
+ * The results of recent searches are cached until a new book is added, so repeating a popular search only costs
+ * a lookup and a copy of the result.
  *
+ * The books can be stored outside of the heap, see {@link #IndexedBookList(int, boolean)}, in which case a large
+ * catalog only costs a few primitive arrays and the search index on the heap.
  */
 public class IndexedBookList implements BookList {
-    private static final String PUNCTUATION_REGEXP = "\\p{P}";
+    private static final int SNAPSHOT_MAGIC = 0x424f4f4b;
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int FIELDS_PER_BOOK = 3;
+    private static final int RESERVATION_STRIPES = 64;
 
-    private final List<Book> booksInStock;
-    private final Map<Book, Integer> stockedCopies;
-    private final Map<String, List<Integer>> titleIndex;
-    private final Map<String, List<Integer>> authorIndex;
+    private final BookStore booksInStock;
+    private final StockCounts stockedCopies;
+    private final StockCounts reservedCopies;
+    private final Object[] reservationLocks;
+    private final FieldIndex titleIndex;
+    private final FieldIndex authorIndex;
+    private final RankedSearch rankedSearch;
+    private final QueryCache queryCache;
+    private volatile StockJournal journal;
+    private long journalSequence;
 
     public IndexedBookList() {
-        this.booksInStock = new ArrayList<>();
-        this.stockedCopies = new HashMap<>();
-        this.titleIndex = new HashMap<>();
-        this.authorIndex = new HashMap<>();
+        this(QueryCache.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param queryCacheSize the maximum number of search results to cache. No result is cached if it is 0.
+     */
+    public IndexedBookList(int queryCacheSize) {
+        this(queryCacheSize, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param queryCacheSize the maximum number of search results to cache. No result is cached if it is 0.
+     * @param offHeap true if the books should be stored outside of the heap, see {@link OffHeapBookStore}.
+     */
+    public IndexedBookList(int queryCacheSize, boolean offHeap) {
+        this(bookStore(offHeap), new StockCounts(), new FieldIndex(), new FieldIndex(), 0, queryCacheSize);
+    }
+
+    private IndexedBookList(BookStore booksInStock, StockCounts stockedCopies,
+                            FieldIndex titleIndex, FieldIndex authorIndex, long journalSequence,
+                            int queryCacheSize) {
+        this.booksInStock = booksInStock;
+        this.stockedCopies = stockedCopies;
+        this.reservedCopies = new StockCounts();
+        this.reservationLocks = new Object[RESERVATION_STRIPES];
+        this.reservedCopies.ensureCapacity(booksInStock.size());
+
+        for (int i = 0; i < reservationLocks.length; i++) {
+            reservationLocks[i] = new Object();
+        }
+
+        this.titleIndex = titleIndex;
+        this.authorIndex = authorIndex;
+        this.rankedSearch = new RankedSearch(titleIndex, authorIndex);
+        this.queryCache = new QueryCache(queryCacheSize);
+        this.journalSequence = journalSequence;
+    }
+
+    /**
+     * Reads an inventory from a snapshot that was written by {@link #writeSnapshot(Path)}.
+     *
+     * The file is memory mapped and the books, the copies in stock and the prebuilt search index are read
+     * from it as they were written, so reading a snapshot is much faster than parsing and indexing the inventory.
+     *
+     * @param file the snapshot file.
+     * @return the inventory.
+     * @throws IOException if the file could not be read, is not a snapshot or was written by an incompatible
+     *                     version.
+     */
+    public static IndexedBookList readSnapshot(Path file) throws IOException {
+        return readSnapshot(file, false);
+    }
+
+    /**
+     * Reads an inventory from a snapshot that was written by {@link #writeSnapshot(Path)}, see
+     * {@link #readSnapshot(Path)}.
+     *
+     * @param file the snapshot file.
+     * @param offHeap true if the books should be stored outside of the heap, see {@link OffHeapBookStore}.
+     * @return the inventory.
+     * @throws IOException if the file could not be read, is not a snapshot, was written by an incompatible
+     *                     version or is corrupt.
+     */
+    public static IndexedBookList readSnapshot(Path file, boolean offHeap) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("The snapshot " + file + " is too large to be mapped");
+            }
+
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (in.remaining() < 2 * Integer.BYTES || in.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException(file + " is not a book inventory snapshot");
+            }
+
+            int version = in.getInt();
+
+            if (version != SNAPSHOT_VERSION) {
+                throw new IOException("The snapshot " + file + " has version " + version +
+                        " but only version " + SNAPSHOT_VERSION + " can be read");
+            }
+
+            return readSnapshot(file, in, offHeap);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("The snapshot " + file + " is truncated", e);
+        }
+    }
+
+    private static IndexedBookList readSnapshot(Path file, ByteBuffer in, boolean offHeap) throws IOException {
+        long journalSequence = in.getLong();
+        String[] strings = new String[count(file, in)];
+
+        try {
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = BinaryStrings.read(in);
+            }
+        } catch (IOException e) {
+            throw corrupt(file, e);
+        }
+
+        int numberOfBooks = count(file, in);
+        Book[] books = new Book[numberOfBooks];
+        StockCounts stockedCopies = new StockCounts();
+        stockedCopies.ensureCapacity(numberOfBooks);
+
+        for (int i = 0; i < numberOfBooks; i++) {
+            String title = string(file, in, strings);
+            String author = string(file, in, strings);
+            String price = string(file, in, strings);
+
+            try {
+                books[i] = new Book(title, author, price == null ? null : new BigDecimal(price));
+            } catch (NumberFormatException e) {
+                throw new IOException("The snapshot " + file + " is corrupt, " + price + " is not a price", e);
+            }
+
+            int copies = in.getInt();
+
+            if (copies < 0) {
+                throw new IOException("The snapshot " + file + " is corrupt, " + books[i] + " has " + copies
+                        + " copies in stock");
+            }
+
+            stockedCopies.set(i, copies);
+        }
+
+        FieldIndex titles;
+        FieldIndex authors;
+
+        try {
+            titles = FieldIndex.read(in, numberOfBooks);
+            authors = FieldIndex.read(in, numberOfBooks);
+        } catch (IOException e) {
+            throw corrupt(file, e);
+        }
+
+        BookStore booksInStock = bookStore(offHeap);
+        booksInStock.addAll(books);
+
+        return new IndexedBookList(booksInStock, stockedCopies, titles, authors, journalSequence,
+                QueryCache.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Returns the exception for a snapshot with a structure that contradicts its own lengths or counts.
+     */
+    private static IOException corrupt(Path file, IOException cause) {
+        return new IOException("The snapshot " + file + " is corrupt. " + cause.getMessage(), cause);
+    }
+
+    /**
+     * Reads the number of entries of a table in a snapshot. Every entry takes at least four bytes, so a larger
+     * number than that can not be right.
+     */
+    private static int count(Path file, ByteBuffer in) throws IOException {
+        int count = in.getInt();
+
+        if (count < 0 || count > in.remaining() / Integer.BYTES) {
+            throw new IOException("The snapshot " + file + " is corrupt, a table can not have " + count + " entries");
+        }
+
+        return count;
+    }
+
+    /**
+     * Reads the index of a string in the string table of a snapshot and returns the string.
+     */
+    private static String string(Path file, ByteBuffer in, String[] strings) throws IOException {
+        int index = in.getInt();
+
+        if (index < 0 || index >= strings.length) {
+            throw new IOException("The snapshot " + file + " is corrupt, the string table has no string " + index);
+        }
+
+        return strings[index];
+    }
+
+    /**
+     * Writes the inventory, including the copies in stock and the search index, to a snapshot that can be read
+     * with {@link #readSnapshot(Path)}.
+     *
+     * The snapshot is first written to a temporary file that then replaces the file, so an existing snapshot is
+     * never left half written. Books can not be added while the snapshot is written but searching and buying can
+     * continue. The copies in stock are those at the time the snapshot was started, including the copies that are
+     * reserved, see {@link StockReservations}, since reservations are not kept when the inventory is read again.
+     *
+     * If a journal is open the snapshot is a checkpoint: the changes in the journal that are part of the snapshot
+     * are removed from the journal when the snapshot has been written. The snapshot and its directory are flushed to
+     * disk before that, so the changes are always in the snapshot or in the journal.
+     *
+     * @param file the snapshot file.
+     * @throws IOException if the snapshot could not be written.
+     */
+    public void writeSnapshot(Path file) throws IOException {
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        StockJournal currentJournal;
+        long sequence;
+
+        synchronized (booksInStock) {
+            int numberOfBooks = booksInStock.size();
+            int[] copies = new int[numberOfBooks];
+            currentJournal = journal;
+
+            if (currentJournal == null) {
+                sequence = journalSequence;
+                copyStock(copies);
+            } else {
+                // Stock changes take the journal lock while they are applied and appended, so holding it gives
+                // stock counts that include exactly the changes up to the sequence number.
+                synchronized (currentJournal) {
+                    sequence = currentJournal.lastSequence();
+                    copyStock(copies);
+                }
+            }
+
+            try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 DataOutputStream out =
+                         new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+                Map<String, Integer> stringIds = new HashMap<>();
+                List<String> strings = new ArrayList<>();
+                int[] bookStrings = new int[numberOfBooks * FIELDS_PER_BOOK];
+
+                // Each distinct title, author and price is only written once, which makes the snapshot smaller
+                // and lets equal strings share one instance when the snapshot is read without a lookup.
+                for (int i = 0; i < numberOfBooks; i++) {
+                    Book book = booksInStock.get(i);
+                    String price = book.getPrice() == null ? null : book.getPrice().toString();
+                    bookStrings[i * FIELDS_PER_BOOK] = stringId(book.getTitle(), stringIds, strings);
+                    bookStrings[i * FIELDS_PER_BOOK + 1] = stringId(book.getAuthor(), stringIds, strings);
+                    bookStrings[i * FIELDS_PER_BOOK + 2] = stringId(price, stringIds, strings);
+                }
+
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeLong(sequence);
+                out.writeInt(strings.size());
+
+                for (String string : strings) {
+                    BinaryStrings.write(out, string);
+                }
+
+                out.writeInt(numberOfBooks);
+
+                for (int i = 0; i < numberOfBooks; i++) {
+                    for (int field = 0; field < FIELDS_PER_BOOK; field++) {
+                        out.writeInt(bookStrings[i * FIELDS_PER_BOOK + field]);
+                    }
+
+                    out.writeInt(copies[i]);
+                }
+
+                titleIndex.write(out, numberOfBooks);
+                authorIndex.write(out, numberOfBooks);
+
+                // The snapshot must be on disk before it replaces the old one and before the journal is truncated,
+                // otherwise a crash could leave a truncated journal next to a snapshot that was never written.
+                out.flush();
+                channel.force(true);
+            }
+        }
+
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        StockJournal.forceDirectory(file);
+
+        if (currentJournal != null) {
+            currentJournal.truncate(sequence);
+        }
+    }
+
+    /**
+     * Opens a journal of stock changes, applies the changes in it that are not already part of the inventory and
+     * then writes every change that is made to the copies in stock to it.
+     *
+     * Adding and buying books returns when the change has been flushed to disk. Changes of threads that add or
+     * buy books at the same time are flushed together so that they only wait for one flush.
+     *
+     * If the journal can not be written the change fails with an {@link UncheckedIOException} and is undone, so a
+     * copy whose purchase failed can be bought again and the stock stays the same as the stock that the journal
+     * replays. Books that were new to the inventory stay in it, without the copies that could not be written. A
+     * thread that is interrupted while it waits gets an {@link UncheckedIOException} as well, but its change is
+     * kept since it will still be flushed.
+     *
+     * @param file the journal file. It is created if it does not exist.
+     * @throws IOException if the journal could not be read or opened.
+     */
+    public void openJournal(Path file) throws IOException {
+        synchronized (booksInStock) {
+            if (journal != null) {
+                throw new IllegalStateException("A journal is already open");
+            }
+
+            journal = StockJournal.open(file, journalSequence, this::replay);
+        }
+    }
+
+    /**
+     * Flushes and closes the journal that was opened by {@link #openJournal(Path)}.
+     * Changes to the stock are no longer journaled after this.
+     *
+     * @throws IOException if the journal could not be flushed or closed.
+     */
+    public void closeJournal() throws IOException {
+        synchronized (booksInStock) {
+            StockJournal currentJournal = journal;
+
+            if (currentJournal != null) {
+                synchronized (currentJournal) {
+                    journalSequence = currentJournal.lastSequence();
+                    journal = null;
+                }
+
+                currentJournal.close();
+            }
+        }
     }
 
     /**
@@ -64,23 +420,88 @@ public class IndexedBookList implements BookList {
      * and all books with rings in the title will be returned.
      * Also all books written by authors named rings and/or wedding will be returned.
      *
+     * The books are ordered by how well they match the search string, best match first.
+     *
      * @param searchString the search string. If null, all books will be returned.
      * @return an array of {@link Book}s.
      */
     @Override
     public Book[] list(String searchString) {
+        return list(searchString, SearchOptions.ANY_WORD, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns a {@link Book} array that contains the books that best matches the provided search string.
+     * If null is passed the first books in the inventory will be returned.
+     *
+     * Words are matched against both book titles and authors, case insensitive and without punctuation,
+     * and combined as decided by the {@link SearchOptions}. Each match is scored with BM25 over the title and the
+     * author, so books that contain rare words of the search string rank above books that only contains common
+     * words such as "the". Only the best matches are kept while searching so the cost of the result does not
+     * depend on how many books that matches. The results of recent searches are cached until a book is added.
+     *
+     * If "The Lord of the Rings" is searched for with {@link SearchOptions#ALL_WORDS} only books with all
+     * five words in their title and/or author will be returned.
+     *
+     * @param searchString the search string. If null, the first books in the inventory will be returned.
+     * @param options decides how the words of the search string are combined.
+     * @param limit the maximum number of books to return.
+     * @return an array of at most limit {@link Book}s, best match first.
+     */
+    @Override
+    public Book[] list(String searchString, SearchOptions options, int limit) {
+        return list(searchString, options, 0, limit);
+    }
+
+    /**
+     * Returns a page of the books that {@link #list(String, SearchOptions, int)} would return, skipping the offset
+     * first books. Use this to fetch a large result a page at a time instead of all at once.
+     *
+     * Pages of a search are computed from the best offset + limit matches so later pages cost a bit more than
+     * earlier ones. Pages of the whole inventory, when the search string is null, are ordered by the order in which
+     * the books were added and only cost as much as the size of the page.
+     *
+     * @param searchString the search string. If null, the books in the inventory will be returned.
+     * @param options decides how the words of the search string are combined.
+     * @param offset the number of books to skip.
+     * @param limit the maximum number of books to return.
+     * @return an array of at most limit {@link Book}s, empty if there are no books after the offset.
+     */
+    @Override
+    public Book[] list(String searchString, SearchOptions options, int offset, int limit) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must be a natural number {0, 1, 2, 3...}");
+        }
+
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must be a natural number {0, 1, 2, 3...}");
+        }
+
         Book[] bookArray;
 
         if (searchString == null) {
-            bookArray = booksInStock.toArray(new Book[booksInStock.size()]);
+            bookArray = booksInStock.toArray(offset, limit);
         } else {
-            String[] searchWords = cleanInput(searchString);
-            bookArray = searchForBooks(searchWords);
+            String[] searchWords = Tokenizer.tokenize(searchString);
+            int end = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+            bookArray = searchForBooks(searchWords, options, offset, end);
         }
 
         return bookArray;
     }
 
+    /**
+     * Returns a lazy stream of all books in the inventory, in the order in which they were added. Only the books
+     * that were added before the stream was created are part of it and nothing is copied up front, so the
+     * inventory can be processed one book at a time.
+     *
+     * @return a stream of {@link Book}s.
+     */
+    @Override
+    public Stream<Book> stream() {
+        return booksInStock.stream();
+    }
+
     /**
      * Adds a book and the quantity available to the inventory
      * and indexes the author and title so that they are searchable.
@@ -90,6 +511,7 @@ public class IndexedBookList implements BookList {
      * (this is due to the possibilities of different printings of a book, hard cover vs. paperback and so forth).
      *
      * If the book already exists in the inventory the quantity will be added to the current number of books in stock.
+     * Adding copies of a book that already exists does not take any lock, only adding a new book does.
      *
      * @param book the book to add.
      * @param quantity the amount of copies that should be added to the inventory.
@@ -101,12 +523,137 @@ public class IndexedBookList implements BookList {
             throw new IllegalArgumentException("Quantity must be a natural number {0, 1, 2, 3...}");
         }
 
-        synchronized (stockedCopies) {
-            addToBookList(book, quantity);
+        int bookId = booksInStock.idOf(book);
+
+        if (bookId < 0) {
+            synchronized (booksInStock) {
+                bookId = booksInStock.idOf(book);
+
+                if (bookId < 0) {
+                    bookId = addToBookList(book);
+                }
+            }
         }
 
-        addToIndex(book.getTitle(), titleIndex);
-        addToIndex(book.getAuthor(), authorIndex);
+        awaitDurable(addCopies(book, bookId, quantity), bookId, quantity);
+    }
+
+    /**
+     * Adds many books and the quantities available to the inventory. The result is the same as calling
+     * {@link #add(Book, int)} for each book but the books that are new to the inventory are indexed together,
+     * which takes about half the time when loading a large inventory.
+     *
+     * The new books become searchable at the same time, when all of them have been indexed.
+     *
+     * @param books the books to add and the amount of copies of each book that should be added to the inventory.
+     *              All quantities must be natural numbers or an {@link IllegalArgumentException} will be thrown
+     *              and no book will be added.
+     */
+    @Override
+    public void addAll(Map<Book, Integer> books) {
+        for (Integer quantity : books.values()) {
+            if (quantity == null || quantity < 0) {
+                throw new IllegalArgumentException("Quantity must be a natural number {0, 1, 2, 3...}");
+            }
+        }
+
+        StockJournal currentJournal;
+        JournaledChanges changes = null;
+        RuntimeException failure = null;
+
+        synchronized (booksInStock) {
+            currentJournal = journal;
+            List<Book> newBooks = new ArrayList<>();
+            List<Integer> newCopies = new ArrayList<>();
+            int firstNewId = booksInStock.size();
+
+            if (currentJournal != null) {
+                changes = new JournaledChanges(books.size());
+            }
+
+            for (Map.Entry<Book, Integer> entry : books.entrySet()) {
+                int bookId = booksInStock.idOf(entry.getKey());
+                long sequence = 0;
+
+                try {
+                    if (bookId < 0) {
+                        // The new books can not be bought before they are published so their changes are appended
+                        // before any purchase of them.
+                        if (currentJournal != null) {
+                            sequence = currentJournal.append(entry.getKey(), entry.getValue());
+                        }
+
+                        bookId = firstNewId + newBooks.size();
+                        newBooks.add(entry.getKey());
+                        newCopies.add(entry.getValue());
+                    } else {
+                        sequence = addCopies(entry.getKey(), bookId, entry.getValue());
+                    }
+                } catch (RuntimeException e) {
+                    // The books that were appended before the failure are still added, like the copies that were
+                    // added to the books that already existed.
+                    failure = e;
+                    break;
+                }
+
+                if (changes != null) {
+                    changes.add(bookId, entry.getValue(), sequence);
+                }
+            }
+
+            addAllToBookList(newBooks, newCopies);
+        }
+
+        if (failure != null) {
+            undoLostChanges(currentJournal, changes);
+            throw failure;
+        }
+
+        awaitDurable(currentJournal, changes);
+    }
+
+    /**
+     * Removes copies of a book from the inventory, for example when the supplier no longer has them.
+     * The book itself stays in the inventory, and can be found by searches, even when no copies are left.
+     *
+     * @param book the book to remove copies of.
+     * @param quantity the amount of copies to remove.
+     *                 Must be a natural number or an {@link IllegalArgumentException} will be thrown.
+     * @return the number of copies that were removed, which is less than quantity if there were not enough copies
+     *         in stock, and 0 if the book is not in the inventory.
+     */
+    @Override
+    public int remove(Book book, int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must be a natural number {0, 1, 2, 3...}");
+        }
+
+        int bookId = booksInStock.idOf(book);
+
+        if (bookId < 0) {
+            return 0;
+        }
+
+        StockJournal currentJournal = journal;
+
+        if (currentJournal == null) {
+            return stockedCopies.take(bookId, quantity);
+        }
+
+        int removed;
+        long sequence = 0;
+
+        synchronized (currentJournal) {
+            removed = stockedCopies.take(bookId, quantity);
+
+            if (removed > 0) {
+                sequence = appendOrUndo(currentJournal, book, bookId, -removed);
+            }
+        }
+
+        awaitDurable(sequence, bookId, -removed);
+
+        return removed;
     }
 
     /**
@@ -116,6 +663,10 @@ public class IndexedBookList implements BookList {
      *  # if the book exist and there are copies available the amount of available copies is lowered by 1
      *    and it is marked by a 0 in the response.
      *
+     * Each book has its own counter that is decremented with compare-and-set so purchases of different books never
+     * contend and the number of copies in stock can never become negative. If a journal is open the purchases are
+     * appended to it and this method returns when they have been flushed to disk.
+     *
      * @param books the books to buy.
      * @return an array with a status for each book.
      *         2 if the book does not exist,
@@ -124,15 +675,322 @@ public class IndexedBookList implements BookList {
      */
     @Override
     public int[] buy(Book... books) {
+        StockJournal currentJournal = journal;
+        JournaledChanges changes = currentJournal == null ? null : new JournaledChanges(books.length);
         int[] result = new int[books.length];
 
         for (int i = 0; i < books.length; i++) {
-            result[i] = buyBook(books[i]);
+            // Every book in the inventory has an id so the hash lookup doubles as the existence check.
+            // This keeps the cost of a purchase independent of the catalog size.
+            int bookId = booksInStock.idOf(books[i]);
+
+            if (bookId < 0) {
+                result[i] = BuyResult.DOES_NOT_EXIST.toValue();
+            } else if (currentJournal == null) {
+                result[i] = stockedCopies.takeOne(bookId) ? BuyResult.OK.toValue() : BuyResult.NOT_IN_STOCK.toValue();
+            } else {
+                synchronized (currentJournal) {
+                    if (stockedCopies.takeOne(bookId)) {
+                        try {
+                            changes.add(bookId, -1, appendOrUndo(currentJournal, books[i], bookId, -1));
+                        } catch (RuntimeException e) {
+                            undoLostChanges(currentJournal, changes);
+                            throw e;
+                        }
+
+                        result[i] = BuyResult.OK.toValue();
+                    } else {
+                        result[i] = BuyResult.NOT_IN_STOCK.toValue();
+                    }
+                }
+            }
+        }
+
+        awaitDurable(currentJournal, changes);
+
+        return result;
+    }
+
+    /**
+     * Buys all of the books or none of them. Copies of the same book are grouped so every distinct book is looked
+     * up once and its whole quantity is taken with a single compare-and-set. The books are taken in the order of
+     * their ids and if one of them does not have enough copies the ones that were already taken are put back, so a
+     * failed purchase leaves the stock as it was. Purchases that run at the same time may see the copies that are
+     * about to be put back as sold.
+     *
+     * If a journal is open the whole purchase is made while holding the journal once, instead of once per book, and
+     * this method returns when it has been flushed to disk.
+     *
+     * @param books the books to buy.
+     * @return an array with a status for each book.
+     *         3 if the book was not bought because other books could not be bought,
+     *         2 if the book does not exist,
+     *         1 if the book exist but there are not enough copies in stock,
+     *         0 if the book was successfully bought.
+     */
+    @Override
+    public int[] buyAll(Book... books) {
+        return buyAll(books, null);
+    }
+
+    /**
+     * Buys all of the books or none of them, like {@link #buyAll(Book...)}, but the copies that are marked as
+     * reserved have already been taken out of the stock by {@link #reserve(Book)} and are bought from the reserved
+     * copies instead. If the purchase fails the reserved copies stay reserved.
+     *
+     * @param books the books to buy.
+     * @param reserved true for each book that is bought from a reserved copy, null if none of them is.
+     * @return an array with a status for each book, see {@link #buyAll(Book...)}.
+     */
+    int[] buyAll(Book[] books, boolean[] reserved) {
+        Purchase[] purchaseOfBook = new Purchase[books.length];
+        Purchase[] purchases = groupPurchases(books, reserved, purchaseOfBook);
+
+        // The books that do not exist get negative ids and are sorted first.
+        boolean bought = purchases.length > 0 && purchases[0].bookId >= 0;
+        StockJournal currentJournal = journal;
+        long sequence = 0;
+
+        if (bought && currentJournal == null) {
+            bought = takeAll(purchases);
+        } else if (bought) {
+            synchronized (currentJournal) {
+                bought = takeAll(purchases);
+
+                if (bought) {
+                    try {
+                        for (Purchase purchase : purchases) {
+                            sequence = currentJournal.append(purchase.book,
+                                    -(purchase.quantity + purchase.reservedQuantity));
+                        }
+                    } catch (RuntimeException e) {
+                        // The journal can not fail or be closed while it is held, so it failed before the first
+                        // purchase was appended and none of them will be replayed.
+                        putBack(purchases);
+                        throw e;
+                    }
+                }
+            }
+
+            if (bought) {
+                try {
+                    currentJournal.awaitDurable(sequence);
+                } catch (UncheckedIOException e) {
+                    // The purchases were appended while holding the journal so they are flushed together.
+                    if (currentJournal.isLost(sequence)) {
+                        synchronized (currentJournal) {
+                            putBack(purchases);
+                        }
+                    }
+
+                    throw e;
+                }
+            }
+        }
+
+        if (bought) {
+            int[] result = new int[books.length];
+            Arrays.fill(result, BuyResult.OK.toValue());
+            return result;
+        }
+
+        return failedStatuses(purchaseOfBook);
+    }
+
+    /**
+     * Cancels a purchase that was made by {@link #buyAll(Book...)}, for a purchase over several book lists that failed
+     * in another list. The copies are given back to the stock they were taken from, without adding the books again,
+     * so the order of the books and the cached search results stay as they are. If a journal is open the copies that
+     * are given back are appended to it and this method returns when they have been flushed to disk.
+     *
+     * @param books the books that were bought.
+     */
+    void cancelPurchase(Book... books) {
+        Purchase[] purchases = groupPurchases(books, null, new Purchase[books.length]);
+        StockJournal currentJournal = journal;
+
+        if (currentJournal == null) {
+            putBack(purchases);
+            return;
+        }
+
+        JournaledChanges changes = new JournaledChanges(purchases.length);
+
+        synchronized (currentJournal) {
+            for (Purchase purchase : purchases) {
+                stockedCopies.add(purchase.bookId, purchase.quantity);
+
+                try {
+                    changes.add(purchase.bookId, purchase.quantity,
+                            appendOrUndo(currentJournal, purchase.book, purchase.bookId, purchase.quantity));
+                } catch (RuntimeException e) {
+                    undoLostChanges(currentJournal, changes);
+                    throw e;
+                }
+            }
+        }
+
+        awaitDurable(currentJournal, changes);
+    }
+
+    /**
+     * Returns the statuses that {@link #buyAll(Book...)} would return for the books if the purchase failed, without
+     * taking any copies. The books that could be bought get 3, so the purchase can only succeed if every book gets 3.
+     * The stock may change before the books are bought.
+     *
+     * @param books the books to check.
+     * @return an array with a status for each book, see {@link #buyAll(Book...)}.
+     */
+    int[] statusesIfCancelled(Book[] books) {
+        Purchase[] purchaseOfBook = new Purchase[books.length];
+        groupPurchases(books, null, purchaseOfBook);
+
+        return failedStatuses(purchaseOfBook);
+    }
+
+    /**
+     * Groups the copies of the same book into one purchase.
+     *
+     * @param books the books to buy.
+     * @param reserved true for each book that is bought from a reserved copy, null if none of them is.
+     * @param purchaseOfBook filled in with the purchase of each book.
+     * @return the distinct purchases sorted by book id.
+     */
+    private Purchase[] groupPurchases(Book[] books, boolean[] reserved, Purchase[] purchaseOfBook) {
+        Map<Book, Purchase> purchasesByBook = new HashMap<>();
+
+        for (int i = 0; i < books.length; i++) {
+            Purchase purchase = purchasesByBook.get(books[i]);
+
+            if (purchase == null) {
+                purchase = new Purchase(books[i], booksInStock.idOf(books[i]));
+                purchasesByBook.put(books[i], purchase);
+            }
+
+            if (reserved != null && reserved[i]) {
+                purchase.reservedQuantity++;
+            } else {
+                purchase.quantity++;
+            }
+
+            purchaseOfBook[i] = purchase;
+        }
+
+        Purchase[] purchases = purchasesByBook.values().toArray(new Purchase[purchasesByBook.size()]);
+        Arrays.sort(purchases, (first, second) -> Integer.compare(first.bookId, second.bookId));
+
+        return purchases;
+    }
+
+    /**
+     * Returns the status of each book of a purchase that was not made.
+     *
+     * @param purchaseOfBook the purchase of each book.
+     * @return an array with a status for each book, see {@link #buyAll(Book...)}.
+     */
+    private int[] failedStatuses(Purchase[] purchaseOfBook) {
+        int[] result = new int[purchaseOfBook.length];
+
+        for (int i = 0; i < purchaseOfBook.length; i++) {
+            Purchase purchase = purchaseOfBook[i];
+
+            if (purchase.bookId < 0) {
+                result[i] = BuyResult.DOES_NOT_EXIST.toValue();
+            } else if (purchase.missingCopies || stockedCopies.get(purchase.bookId) < purchase.quantity) {
+                result[i] = BuyResult.NOT_IN_STOCK.toValue();
+            } else {
+                result[i] = BuyResult.CANCELLED.toValue();
+            }
         }
 
         return result;
     }
 
+    /**
+     * Puts back the copies of a purchase that was taken with {@link #takeAll(Purchase[])}.
+     */
+    private void putBack(Purchase[] purchases) {
+        for (Purchase purchase : purchases) {
+            stockedCopies.add(purchase.bookId, purchase.quantity);
+
+            if (purchase.reservedQuantity > 0) {
+                reservedCopies.add(purchase.bookId, purchase.reservedQuantity);
+            }
+        }
+    }
+
+    private boolean takeAll(Purchase[] purchases) {
+        for (int i = 0; i < purchases.length; i++) {
+            if (purchases[i].quantity > 0 && !stockedCopies.takeAll(purchases[i].bookId, purchases[i].quantity)) {
+                purchases[i].missingCopies = true;
+
+                for (int j = 0; j < i; j++) {
+                    stockedCopies.add(purchases[j].bookId, purchases[j].quantity);
+                }
+
+                return false;
+            }
+        }
+
+        for (Purchase purchase : purchases) {
+            if (purchase.reservedQuantity > 0) {
+                reservedCopies.add(purchase.bookId, -purchase.reservedQuantity);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Takes a copy of a book out of the stock and holds it until it is bought with {@link #buyAll(Book[], boolean[])}
+     * or given back with {@link #release(int)}. Reserving is not written to the journal, a reserved copy is part of
+     * the stock in snapshots and is only removed from the journaled stock when it is bought.
+     *
+     * @param book the book to reserve a copy of.
+     * @return the id of the book, or -1 if the book does not exist or is not in stock.
+     */
+    int reserve(Book book) {
+        int bookId = booksInStock.idOf(book);
+
+        if (bookId < 0) {
+            return -1;
+        }
+
+        // The copy is moved from one count to the other while holding the reservation lock of the book, so a
+        // snapshot never sees it in neither or both of them. Books with different locks never wait for each other.
+        synchronized (reservationLock(bookId)) {
+            if (!stockedCopies.takeOne(bookId)) {
+                return -1;
+            }
+
+            reservedCopies.add(bookId, 1);
+        }
+
+        return bookId;
+    }
+
+    /**
+     * Gives a reserved copy of a book back to the stock.
+     *
+     * @param bookId the id of the book.
+     */
+    void release(int bookId) {
+        synchronized (reservationLock(bookId)) {
+            reservedCopies.add(bookId, -1);
+            stockedCopies.add(bookId, 1);
+        }
+    }
+
+    /**
+     * A help method for making testing easier.
+     *
+     * @param book the book to get the amount of reserved copies for.
+     * @return the number of reserved copies of the specified book.
+     */
+    int getReservedCopiesOfBook(Book book) {
+        return reservedCopies.get(booksInStock.idOf(book));
+    }
+
     /**
      * A help method for making testing easier.
      *
@@ -140,83 +998,328 @@ public class IndexedBookList implements BookList {
      * @return the number of copies in stock for the specified book.
      */
     int getCopiesOfBookInStock(Book book) {
-        return stockedCopies.get(book);
+        return stockedCopies.get(booksInStock.idOf(book));
     }
 
-    private String[] cleanInput(String input) {
-        String lowerCaseInput = StringUtils.lowerCase(input);
-        String inputWithoutPunctuation = StringUtils.replaceAll(lowerCaseInput, PUNCTUATION_REGEXP, " ");
-        String[] searchWords = StringUtils.split(inputWithoutPunctuation);
+    /**
+     * Returns the number of books that are visible to searches. Can be passed to
+     * {@link #searchWithScores(Collection, SearchOptions, int, int)} to search the books that were visible at
+     * this point.
+     *
+     * @return the number of books.
+     */
+    int size() {
+        return booksInStock.size();
+    }
+
+    /**
+     * Returns the id of a book.
+     *
+     * @param book the book.
+     * @return the id of the book, or -1 if it is not in the book list.
+     */
+    int idOf(Book book) {
+        return booksInStock.idOf(book);
+    }
+
+    /**
+     * Returns the number of copies of a book in stock, including the copies that are reserved.
+     *
+     * @param bookId the id of the book.
+     * @return the number of copies.
+     */
+    int copiesInStock(int bookId) {
+        synchronized (reservationLock(bookId)) {
+            return stockedCopies.get(bookId) + reservedCopies.get(bookId);
+        }
+    }
 
-        return Arrays.stream(searchWords).map(StringUtils::trimToEmpty).toArray(String[]::new);
+    /**
+     * Returns the book with the specified id.
+     *
+     * @param bookId the id of the book, as returned by {@link #searchWithScores(Collection, SearchOptions, int, int)}.
+     * @return the book.
+     */
+    Book get(int bookId) {
+        return booksInStock.get(bookId);
     }
 
-    private Book[] searchForBooks(String[] searchWords) {
-        Set<Book> books = new HashSet<>();
+    /**
+     * Searches for books without the query cache and returns their ids and scores, so that the results of several
+     * book lists can be merged.
+     *
+     * @param words the distinct normalized words to search for.
+     * @param options decides how the words are combined.
+     * @param limit the maximum number of books to return.
+     * @param publishedBooks a number previously returned by {@link #size()}. Books added later are ignored.
+     * @return the ids and the scores of the best matching books, best match first.
+     */
+    RankedSearch.Matches searchWithScores(Collection<String> words, SearchOptions options, int limit,
+                                          int publishedBooks) {
+        return rankedSearch.searchWithScores(words, options, limit, publishedBooks);
+    }
 
-        for (String searchWord : searchWords) {
-            List<Integer> titleIndexes = titleIndex.get(searchWord);
-            addBooksToResult(books, titleIndexes);
+    /**
+     * Changes the number of copies in stock of a book without writing the change to the journal.
+     * The number of copies never becomes negative and books that are not in the inventory are ignored.
+     *
+     * @param book the book.
+     * @param delta the change to the number of copies in stock.
+     */
+    void adjustStock(Book book, int delta) {
+        int bookId = booksInStock.idOf(book);
 
-            List<Integer> authorIndexes = authorIndex.get(searchWord);
-            addBooksToResult(books, authorIndexes);
+        if (bookId >= 0) {
+            stockedCopies.adjust(bookId, delta);
         }
+    }
 
-        return books.toArray(new Book[books.size()]);
+    /**
+     * Returns the number of searches that were answered from the cache of search results.
+     *
+     * @return the number of cache hits.
+     */
+    public long getQueryCacheHits() {
+        return queryCache.hits();
     }
 
-    private void addBooksToResult(Set<Book> books, List<Integer> bookIds) {
-        if (bookIds != null) {
-            for (Integer bookId: bookIds) {
-                Book book = booksInStock.get(bookId);
-                books.add(book);
+    /**
+     * Returns the number of searches that were not in the cache of search results and had to be computed.
+     *
+     * @return the number of cache misses.
+     */
+    public long getQueryCacheMisses() {
+        return queryCache.misses();
+    }
+
+    private Book[] searchForBooks(String[] searchWords, SearchOptions options, int offset, int limit) {
+        // Books that are added after this point may already be indexed but they are not part of this search.
+        int publishedBooks = booksInStock.size();
+        Set<String> distinctWords = new LinkedHashSet<>(Arrays.asList(searchWords));
+        QueryCache.Query query = new QueryCache.Query(distinctWords, options, limit);
+
+        return queryCache.search(query, publishedBooks, offset, () -> {
+            int[] bookIds = rankedSearch.search(distinctWords, options, limit, publishedBooks);
+            Book[] books = new Book[bookIds.length];
+
+            for (int i = 0; i < bookIds.length; i++) {
+                books[i] = booksInStock.get(bookIds[i]);
             }
+
+            return books;
+        });
+    }
+
+    /**
+     * Adds a new book to the indexes and then publishes it in the book list. Must be called while holding
+     * the booksInStock lock since there may only be one writer at a time.
+     */
+    private int addToBookList(Book book) {
+        int bookId = booksInStock.size();
+
+        titleIndex.add(bookId, Tokenizer.tokenize(book.getTitle()));
+        authorIndex.add(bookId, Tokenizer.tokenize(book.getAuthor()));
+        stockedCopies.ensureCapacity(bookId + 1);
+        reservedCopies.ensureCapacity(bookId + 1);
+        booksInStock.add(book);
+
+        return bookId;
+    }
+
+    /**
+     * Adds new books to the indexes and then publishes all of them in the book list at once. Must be called while
+     * holding the booksInStock lock since there may only be one writer at a time.
+     */
+    private void addAllToBookList(List<Book> books, List<Integer> copies) {
+        int firstId = booksInStock.size();
+        String[][] titles = new String[books.size()][];
+        String[][] authors = new String[books.size()][];
+
+        for (int i = 0; i < books.size(); i++) {
+            titles[i] = Tokenizer.tokenize(books.get(i).getTitle());
+            authors[i] = Tokenizer.tokenize(books.get(i).getAuthor());
         }
+
+        titleIndex.addAll(firstId, titles);
+        authorIndex.addAll(firstId, authors);
+
+        stockedCopies.ensureCapacity(firstId + books.size());
+        reservedCopies.ensureCapacity(firstId + books.size());
+
+        for (int i = 0; i < books.size(); i++) {
+            stockedCopies.set(firstId + i, copies.get(i));
+        }
+
+        booksInStock.addAll(books.toArray(new Book[0]));
     }
 
-    private void addToBookList(Book book, int quantity) {
-        Integer copiesInStore = stockedCopies.get(book);
+    /**
+     * Adds copies of a book that is already in the book list and appends the change to the journal, if one is open.
+     *
+     * @return the sequence number of the change in the journal, or 0 if no journal is open.
+     */
+    private long addCopies(Book book, int bookId, int quantity) {
+        StockJournal currentJournal = journal;
+
+        if (currentJournal == null) {
+            stockedCopies.add(bookId, quantity);
+            return 0;
+        }
 
-        if (copiesInStore == null) {
-            booksInStock.add(book);
-            copiesInStore = 0;
+        synchronized (currentJournal) {
+            stockedCopies.add(bookId, quantity);
+            return appendOrUndo(currentJournal, book, bookId, quantity);
+        }
+    }
+
+    /**
+     * Appends a change that has already been made to the stock of a book. If the change could not be appended it is
+     * undone, so the stock in memory stays the same as the stock that the journal replays.
+     *
+     * @return the sequence number of the change.
+     */
+    private long appendOrUndo(StockJournal currentJournal, Book book, int bookId, int delta) {
+        try {
+            return currentJournal.append(book, delta);
+        } catch (RuntimeException e) {
+            undo(bookId, delta);
+            throw e;
         }
-        stockedCopies.put(book, copiesInStore + quantity);
     }
 
-    private void addToIndex(String indexString, Map<String, List<Integer>> index) {
-        for (String word : cleanInput(indexString)) {
-            List<Integer> bookIds = index.get(word);
+    /**
+     * Waits until a change has been flushed to disk. If the journal could not be written before that the change is
+     * lost and is undone. A change is kept if the thread was interrupted while waiting, since it will be flushed.
+     */
+    private void awaitDurable(long sequence, int bookId, int delta) {
+        StockJournal currentJournal = journal;
 
-            if (bookIds == null) {
-                bookIds = new ArrayList<>();
+        if (sequence > 0 && currentJournal != null) {
+            try {
+                currentJournal.awaitDurable(sequence);
+            } catch (UncheckedIOException e) {
+                if (currentJournal.isLost(sequence)) {
+                    undo(bookId, delta);
+                }
+
+                throw e;
             }
+        }
+    }
 
-            bookIds.add(booksInStock.size() - 1);
-            index.put(word, bookIds);
+    /**
+     * Waits until the changes have been flushed to disk and undoes those that are lost, see
+     * {@link #awaitDurable(long, int, int)}.
+     */
+    private void awaitDurable(StockJournal currentJournal, JournaledChanges changes) {
+        if (changes == null || changes.size == 0) {
+            return;
+        }
+
+        try {
+            currentJournal.awaitDurable(changes.sequences[changes.size - 1]);
+        } catch (UncheckedIOException e) {
+            undoLostChanges(currentJournal, changes);
+            throw e;
         }
     }
 
-    private int buyBook(Book book) {
-        int indexInList = booksInStock.indexOf(book);
+    private void undoLostChanges(StockJournal currentJournal, JournaledChanges changes) {
+        if (changes == null) {
+            return;
+        }
 
-        int result;
+        for (int i = 0; i < changes.size; i++) {
+            if (currentJournal.isLost(changes.sequences[i])) {
+                undo(changes.bookIds[i], changes.deltas[i]);
+            }
+        }
+    }
+
+    private void undo(int bookId, int delta) {
+        if (delta < 0) {
+            stockedCopies.add(bookId, -delta);
+        } else {
+            // Some of the copies may have been sold since they were added, the stock never becomes negative.
+            stockedCopies.adjust(bookId, -delta);
+        }
+    }
 
-        if (indexInList >= 0) {
-            synchronized (stockedCopies) {
-                int copiesInStock = stockedCopies.get(book);
+    private void replay(Book book, int delta) {
+        if (delta < 0) {
+            adjustStock(book, delta);
+        } else {
+            add(book, delta);
+        }
+    }
 
-                if (copiesInStock > 0) {
-                    result = BuyResult.OK.toValue();
-                    stockedCopies.put(book, copiesInStock - 1);
-                } else {
-                    result = BuyResult.NOT_IN_STOCK.toValue();
+    private void copyStock(int[] copies) {
+        // Only the two counts of each book must be read together, so one lock is held at a time.
+        for (int stripe = 0; stripe < reservationLocks.length; stripe++) {
+            synchronized (reservationLocks[stripe]) {
+                for (int i = stripe; i < copies.length; i += reservationLocks.length) {
+                    copies[i] = stockedCopies.get(i) + reservedCopies.get(i);
                 }
             }
-        } else {
-            result = BuyResult.DOES_NOT_EXIST.toValue();
         }
+    }
 
-        return result;
+    private Object reservationLock(int bookId) {
+        return reservationLocks[bookId & (RESERVATION_STRIPES - 1)];
+    }
+
+    private static BookStore bookStore(boolean offHeap) {
+        return offHeap ? new OffHeapBookStore() : new HeapBookStore();
+    }
+
+    private static int stringId(String string, Map<String, Integer> stringIds, List<String> strings) {
+        Integer id = stringIds.get(string);
+
+        if (id == null) {
+            id = strings.size();
+            stringIds.put(string, id);
+            strings.add(string);
+        }
+
+        return id;
+    }
+
+    /**
+     * The changes that one call has appended to the journal, in the order they were appended.
+     */
+    private static final class JournaledChanges {
+        private final int[] bookIds;
+        private final int[] deltas;
+        private final long[] sequences;
+        private int size;
+
+        private JournaledChanges(int capacity) {
+            this.bookIds = new int[capacity];
+            this.deltas = new int[capacity];
+            this.sequences = new long[capacity];
+        }
+
+        private void add(int bookId, int delta, long sequence) {
+            bookIds[size] = bookId;
+            deltas[size] = delta;
+            sequences[size] = sequence;
+            size++;
+        }
+    }
+
+    /**
+     * The copies of one book in a purchase made by {@link #buyAll(Book...)}.
+     */
+    private static final class Purchase {
+        private final Book book;
+        private final int bookId;
+        private int quantity;
+        private int reservedQuantity;
+        private boolean missingCopies;
+
+        private Purchase(Book book, int bookId) {
+            this.book = book;
+            this.bookId = bookId;
+        }
     }
 }
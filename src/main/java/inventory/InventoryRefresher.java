@@ -0,0 +1,342 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import static util.Print.flush;
+import static util.Print.print;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps an {@link IndexedBookList} up to date with a book inventory that changes over time.
+ *
+ * The inventory is read again periodically, but only if the {@link BookInventoryDao} can not tell that it is
+ * unchanged. A changed inventory is compared with the previously read inventory and only the differences are
+ * applied to the book list:
+ *  # Books that are new to the book list are added with their quantity while the inventory is read, in batches,
+ *    so the first books are searchable before the whole inventory has been read.
+ *  # Books with more copies have the extra copies added.
+ *  # Books with fewer copies, or that are no longer in the inventory, have the missing copies removed.
+ *
+ * Copies that have been bought from the book list in the meantime are therefore not added back. Searching and
+ * buying continues while the differences are applied.
+ *
+ * The previously read inventory is kept as the number of copies of each book, indexed by the id of the book in the
+ * book list, so it costs an int per book instead of a copy of the catalog. Until an inventory has been read the
+ * copies that are in stock in the book list are used instead, which is nothing for an empty book list.
+ *
+ * The previously read inventory can be saved to a file after each refresh, so a book list that is read from a
+ * snapshot, see {@link IndexedBookList#readSnapshot(Path)}, is compared with the inventory it was last refreshed
+ * with instead of with its stock, which would add back the copies that have been sold. The file is written after
+ * the differences have been applied, so if the process stops in between the next refresh applies them again.
+ */
+public class InventoryRefresher implements Closeable {
+    private static final int BATCH_SIZE = 65536;
+    private static final int BASELINE_MAGIC = 0x42415345;
+    private static final int BASELINE_VERSION = 1;
+
+    private final IndexedBookList bookList;
+    private final BookInventoryDao bookInventoryDao;
+    private final String bookInventoryUrl;
+    private final Path baselineFile;
+    private final ScheduledExecutorService executor;
+    private int[] previousInventory;
+
+    /**
+     * Constructor.
+     *
+     * @param bookList the book list to keep up to date.
+     * @param bookInventoryDao the dao that reads the inventory.
+     * @param bookInventoryUrl the location of the inventory.
+     */
+    public InventoryRefresher(IndexedBookList bookList, BookInventoryDao bookInventoryDao, String bookInventoryUrl) {
+        this(bookList, bookInventoryDao, bookInventoryUrl, null);
+    }
+
+    /**
+     * Constructor. The previously read inventory is read from the baseline file if it was written for this book
+     * list, a file that has more books than the book list was written for another book list and is not used.
+     *
+     * @param bookList the book list to keep up to date.
+     * @param bookInventoryDao the dao that reads the inventory.
+     * @param bookInventoryUrl the location of the inventory.
+     * @param baselineFile the file to save the previously read inventory in, or null if it should not be saved.
+     */
+    public InventoryRefresher(IndexedBookList bookList, BookInventoryDao bookInventoryDao, String bookInventoryUrl,
+                              Path baselineFile) {
+        this.bookList = bookList;
+        this.bookInventoryDao = bookInventoryDao;
+        this.bookInventoryUrl = bookInventoryUrl;
+        this.baselineFile = baselineFile;
+        this.previousInventory = baselineFile == null ? null : readBaseline(baselineFile, bookList.size());
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "inventory-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Reads the inventory, if it has changed, and applies the differences to the book list.
+     *
+     * @return true if the inventory had changed, false if it had not.
+     * @throws IOException if the inventory could not be read. The batches of books that are new to the book list
+     *                     and were read before the failure have been added, the other differences are not
+     *                     applied.
+     */
+    public synchronized boolean refresh() throws IOException {
+        Refresh refresh = new Refresh();
+        boolean modified;
+
+        try {
+            modified = bookInventoryDao.bookInventoryIfModified(bookInventoryUrl, refresh::read);
+        } catch (IOException | RuntimeException e) {
+            // The batches of new books that have been added are remembered so they are not added again.
+            previousInventory = Arrays.copyOf(refresh.previous, refresh.size);
+            writeBaseline();
+            throw e;
+        }
+
+        if (modified) {
+            refresh.addNewBooks();
+            refresh.applyDifferences();
+            previousInventory = Arrays.copyOf(refresh.current, refresh.size);
+            writeBaseline();
+        }
+
+        return modified;
+    }
+
+    /**
+     * Refreshes the book list periodically in a background thread until the refresher is closed.
+     * If no inventory has been read yet the first refresh is made immediately.
+     *
+     * @param period the time between the end of one refresh and the start of the next.
+     * @param unit the unit of the period.
+     */
+    public void start(long period, TimeUnit unit) {
+        long initialDelay;
+
+        synchronized (this) {
+            initialDelay = previousInventory == null ? 0 : period;
+        }
+
+        executor.scheduleWithFixedDelay(this::refreshInBackground, initialDelay, period, unit);
+    }
+
+    /**
+     * Stops refreshing the book list. A refresh that has already started is completed.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes the previously read inventory to the baseline file, if there is one. The file is replaced atomically.
+     */
+    private void writeBaseline() throws IOException {
+        if (baselineFile == null) {
+            return;
+        }
+
+        Path temporaryFile = baselineFile.resolveSibling(baselineFile.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            out.writeInt(BASELINE_MAGIC);
+            out.writeInt(BASELINE_VERSION);
+            out.writeInt(previousInventory.length);
+
+            for (int quantity : previousInventory) {
+                out.writeInt(quantity);
+            }
+
+            out.flush();
+            channel.force(true);
+        }
+
+        Files.move(temporaryFile, baselineFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        StockJournal.forceDirectory(baselineFile);
+    }
+
+    /**
+     * Reads a previously read inventory from a baseline file.
+     *
+     * @return the number of copies of each book, or null if there is no usable baseline.
+     */
+    private static int[] readBaseline(Path file, int numberOfBooks) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != BASELINE_MAGIC || in.readInt() != BASELINE_VERSION) {
+                throw new IOException(file + " is not an inventory baseline");
+            }
+
+            int length = in.readInt();
+
+            if (length < 0 || length > numberOfBooks) {
+                return null;
+            }
+
+            int[] quantities = new int[length];
+
+            for (int i = 0; i < length; i++) {
+                quantities[i] = in.readInt();
+            }
+
+            return quantities;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            print("Could not read the inventory baseline ", file.toString(), ", the first refresh is compared with ",
+                    "the copies in stock: ", String.valueOf(e));
+            return null;
+        }
+    }
+
+    private void refreshInBackground() {
+        try {
+            refresh();
+        } catch (IOException | RuntimeException e) {
+            // A failed refresh must not stop the next one.
+            print("Could not refresh the inventory from ", bookInventoryUrl, ": ", String.valueOf(e));
+            flush();
+        }
+    }
+
+    /**
+     * The state of one refresh. Only used by the thread that refreshes.
+     */
+    private final class Refresh {
+        private final Map<Book, Integer> newBooks = new HashMap<>();
+        private int[] previous;
+        private int[] current;
+        private int size;
+
+        private Refresh() {
+            size = bookList.size();
+            current = new int[size];
+
+            if (previousInventory == null) {
+                // Nothing has been read yet, the stock of the book list is what the inventory is compared with.
+                previous = new int[size];
+
+                for (int bookId = 0; bookId < size; bookId++) {
+                    previous[bookId] = bookList.copiesInStock(bookId);
+                }
+            } else {
+                previous = Arrays.copyOf(previousInventory, size);
+            }
+        }
+
+        private void read(Book book, int quantity) {
+            int bookId = bookList.idOf(book);
+
+            if (bookId < 0) {
+                newBooks.merge(book, quantity, Integer::sum);
+
+                if (newBooks.size() == BATCH_SIZE) {
+                    addNewBooks();
+                }
+            } else {
+                grow(bookId + 1);
+                current[bookId] += quantity;
+            }
+        }
+
+        /**
+         * Adds the books that are new to the book list. Their copies count as both previously read and read now,
+         * so they are not added again when the differences are applied.
+         */
+        private void addNewBooks() {
+            if (newBooks.isEmpty()) {
+                return;
+            }
+
+            bookList.addAll(newBooks);
+
+            for (Map.Entry<Book, Integer> entry : newBooks.entrySet()) {
+                int bookId = bookList.idOf(entry.getKey());
+                grow(bookId + 1);
+                current[bookId] += entry.getValue();
+                previous[bookId] += entry.getValue();
+            }
+
+            newBooks.clear();
+        }
+
+        private void applyDifferences() {
+            Map<Book, Integer> added = new HashMap<>();
+
+            for (int bookId = 0; bookId < size; bookId++) {
+                int difference = current[bookId] - previous[bookId];
+
+                if (difference > 0) {
+                    added.put(bookList.get(bookId), difference);
+
+                    if (added.size() == BATCH_SIZE) {
+                        bookList.addAll(added);
+                        added.clear();
+                    }
+                } else if (difference < 0) {
+                    bookList.remove(bookList.get(bookId), -difference);
+                }
+            }
+
+            if (!added.isEmpty()) {
+                bookList.addAll(added);
+            }
+        }
+
+        private void grow(int neededSize) {
+            if (neededSize > current.length) {
+                int capacity = Math.max(neededSize, current.length + (current.length >> 1) + 16);
+                current = Arrays.copyOf(current, capacity);
+                previous = Arrays.copyOf(previous, capacity);
+            }
+
+            size = Math.max(size, neededSize);
+        }
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import static util.Print.print;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * An implementation of the {@link BookInventoryDao} that reads a book inventory in the CSV format of
+ * {@link CsvBookInventoryParser} from a local file.
+ *
+ * The file is memory mapped, a window of at most 1 GB at a time, and the separators are found by scanning the mapped
+ * bytes directly. Only the title and the author are decoded into strings, the price and the quantity are parsed
+ * from the bytes. Nothing is read through a {@link java.io.Reader} so no char array or String is created per line,
+ * which makes a large inventory on a local disk load at close to the speed the file can be read. Titles and authors
+ * that appear on more than one line share the same String instance.
+ *
+ * With a parallelism larger than one, see {@link #withParallelism(int)}, each window is split at line boundaries
+ * into chunks of at most 8 MB that are parsed on a fork-join pool. The books of a chunk are collected with their
+ * quantities summed, and the chunks are passed to the consumer in file order on the calling thread, so the consumer
+ * does not have to be thread safe and the totals are the same as when the file is read by one thread. At most two
+ * chunks per thread are parsed ahead of the consumer.
+ */
+public class MappedFileBookInventoryDao implements BookInventoryDao {
+    private static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+    private static final int MAX_CHUNK_SIZE = 8 << 20;
+    private static final int CHUNKS_AHEAD_PER_THREAD = 2;
+    private static final String FILE_SCHEME = "file:";
+
+    private static final int TITLE = 0;
+    private static final int AUTHOR = 1;
+    private static final int PRICE = 2;
+    private static final int QUANTITY = 3;
+
+    private static final int NUMBER_OF_FIELDS = 4;
+    private static final byte LIST_SEPARATOR = ';';
+    private static final byte THOUSAND_SEPARATOR = ',';
+    private static final byte NEW_LINE = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    private final int windowSize;
+    private final int parallelism;
+
+    public MappedFileBookInventoryDao() {
+        this(DEFAULT_WINDOW_SIZE, 1);
+    }
+
+    /**
+     * Creates a dao that parses the file on several threads.
+     *
+     * @param parallelism the number of threads that parses the file.
+     * @return the dao.
+     */
+    public static MappedFileBookInventoryDao withParallelism(int parallelism) {
+        return new MappedFileBookInventoryDao(DEFAULT_WINDOW_SIZE, parallelism);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param windowSize the maximum number of bytes to map at a time. Must be larger than the longest line.
+     * @param parallelism the number of threads that parses the file.
+     */
+    MappedFileBookInventoryDao(int windowSize, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be a positive number {1, 2, 3...}");
+        }
+
+        this.windowSize = windowSize;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Reads a book inventory from a local file.
+     *
+     * @param bookInventoryUrl a file path or a file: URL.
+     * @param consumer the consumer that receives the books.
+     * @throws IOException if the file can not be read or has a line that is longer than the mapped window.
+     */
+    @Override
+    public void bookInventory(String bookInventoryUrl, BookInventoryConsumer consumer) throws IOException {
+        Path path = bookInventoryUrl.startsWith(FILE_SCHEME)
+                ? Paths.get(URI.create(bookInventoryUrl))
+                : Paths.get(bookInventoryUrl);
+
+        ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        StringDictionary dictionary = new StringDictionary();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+
+            while (position < size) {
+                long length = Math.min(windowSize, size - position);
+                boolean lastWindow = position + length == size;
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int completeLines = completeLinesLength(window, lastWindow);
+
+                if (completeLines == 0) {
+                    throw new IOException("The line at byte " + position + " is longer than " + windowSize + " bytes");
+                }
+
+                if (pool == null) {
+                    new LineParser(consumer, dictionary).parseLines(window, 0, completeLines);
+                } else {
+                    parseInParallel(pool, window, completeLines, consumer, dictionary);
+                }
+
+                position += completeLines;
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private void parseInParallel(ForkJoinPool pool, MappedByteBuffer window, int length,
+                                 BookInventoryConsumer consumer, StringDictionary dictionary) throws IOException {
+        int chunkSize = Math.max(1, Math.min(MAX_CHUNK_SIZE, length / parallelism));
+        Deque<Future<Map<Book, Integer>>> chunks = new ArrayDeque<>();
+        int chunkStart = 0;
+
+        while (chunkStart < length || !chunks.isEmpty()) {
+            while (chunkStart < length && chunks.size() < parallelism * CHUNKS_AHEAD_PER_THREAD) {
+                int start = chunkStart;
+                int end = lineEndAfter(window, Math.min(length, chunkStart + chunkSize), length);
+                chunks.add(pool.submit(() -> parseChunk(window, start, end, dictionary)));
+                chunkStart = end;
+            }
+
+            awaitChunk(chunks.poll()).forEach(consumer::accept);
+        }
+    }
+
+    private static Map<Book, Integer> parseChunk(MappedByteBuffer window, int start, int end,
+                                                 StringDictionary dictionary) {
+        Map<Book, Integer> books = new LinkedHashMap<>();
+        new LineParser((book, quantity) -> books.merge(book, quantity, Integer::sum), dictionary)
+                .parseLines(window, start, end);
+        return books;
+    }
+
+    private static Map<Book, Integer> awaitChunk(Future<Map<Book, Integer>> chunk) throws IOException {
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing the book inventory");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new IOException("Could not parse the book inventory", e.getCause());
+        }
+    }
+
+    /**
+     * Returns the number of bytes in the window that belongs to complete lines. The last line of the file
+     * is complete even if it does not end with a line separator.
+     */
+    private static int completeLinesLength(MappedByteBuffer window, boolean lastWindow) {
+        int end = window.limit();
+
+        if (lastWindow) {
+            return end;
+        }
+
+        for (int i = end - 1; i >= 0; i--) {
+            if (isLineSeparator(window.get(i))) {
+                return i + 1;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Returns the position after the first line separator at or after index, or end if there is none.
+     */
+    private static int lineEndAfter(MappedByteBuffer window, int index, int end) {
+        for (int i = index; i < end; i++) {
+            if (isLineSeparator(window.get(i))) {
+                return i + 1;
+            }
+        }
+
+        return end;
+    }
+
+    private static boolean isLineSeparator(byte b) {
+        return b == NEW_LINE || b == CARRIAGE_RETURN;
+    }
+
+    /**
+     * Parses the lines of a mapped window and keeps the buffers that are reused between lines.
+     */
+    private static final class LineParser {
+        private final BookInventoryConsumer consumer;
+        private final StringDictionary dictionary;
+        private final int[] fieldStarts = new int[NUMBER_OF_FIELDS];
+        private final int[] fieldEnds = new int[NUMBER_OF_FIELDS];
+        private byte[] bytes = new byte[256];
+        private char[] chars = new char[64];
+
+        private LineParser(BookInventoryConsumer consumer, StringDictionary dictionary) {
+            this.consumer = consumer;
+            this.dictionary = dictionary;
+        }
+
+        /**
+         * Parses all lines between start and end. The range must start at the beginning of a line and a last line
+         * without a line separator is parsed as a complete line.
+         */
+        private void parseLines(MappedByteBuffer window, int start, int end) {
+            int lineStart = start;
+
+            for (int i = start; i < end; i++) {
+                if (isLineSeparator(window.get(i))) {
+                    parseLine(window, lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+
+            if (lineStart < end) {
+                parseLine(window, lineStart, end);
+            }
+        }
+
+        /**
+         * Parses a line the same way as {@link CsvBookInventoryParser}: empty fields are ignored and lines
+         * that do not have exactly four fields are skipped.
+         */
+        private void parseLine(MappedByteBuffer window, int start, int end) {
+            int numberOfFields = 0;
+            int fieldStart = start;
+
+            for (int i = start; i <= end; i++) {
+                if (i == end || window.get(i) == LIST_SEPARATOR) {
+                    if (i > fieldStart) {
+                        if (numberOfFields == NUMBER_OF_FIELDS) {
+                            return;
+                        }
+
+                        fieldStarts[numberOfFields] = fieldStart;
+                        fieldEnds[numberOfFields] = i;
+                        numberOfFields++;
+                    }
+
+                    fieldStart = i + 1;
+                }
+            }
+
+            if (numberOfFields != NUMBER_OF_FIELDS) {
+                return;
+            }
+
+            try {
+                BigDecimal price = parsePrice(window, fieldStarts[PRICE], fieldEnds[PRICE]);
+                int quantity = parseQuantity(window, fieldStarts[QUANTITY], fieldEnds[QUANTITY]);
+                String title = dictionary.canonical(decode(window, fieldStarts[TITLE], fieldEnds[TITLE]));
+                String author = dictionary.canonical(decode(window, fieldStarts[AUTHOR], fieldEnds[AUTHOR]));
+                consumer.accept(new Book(title, author, price), quantity);
+            } catch (NumberFormatException e) {
+                String quantityAsString = decode(window, fieldStarts[QUANTITY], fieldEnds[QUANTITY]);
+                print("Could not parse \"", quantityAsString, "\" to a BigDecimal. Row will be skipped");
+            }
+        }
+
+        private BigDecimal parsePrice(MappedByteBuffer window, int start, int end) {
+            if (chars.length < end - start) {
+                chars = new char[end - start];
+            }
+
+            int length = 0;
+
+            for (int i = start; i < end; i++) {
+                byte b = window.get(i);
+
+                if (b < 0) {
+                    // Not ASCII, let BigDecimal decide what the decoded characters mean.
+                    return new BigDecimal(decode(window, start, end).replace(",", ""));
+                }
+
+                if (b != THOUSAND_SEPARATOR) {
+                    chars[length++] = (char) b;
+                }
+            }
+
+            return new BigDecimal(chars, 0, length);
+        }
+
+        /**
+         * Parses an int with the same rules as {@link Integer#parseInt(String)} for ASCII input.
+         */
+        private static int parseQuantity(MappedByteBuffer window, int start, int end) {
+            int position = start;
+            boolean negative = false;
+            byte first = window.get(position);
+
+            if (first == '-' || first == '+') {
+                negative = first == '-';
+                position++;
+            }
+
+            if (position == end) {
+                throw new NumberFormatException("No digits");
+            }
+
+            long value = 0;
+
+            for (; position < end; position++) {
+                int digit = window.get(position) - '0';
+
+                if (digit < 0 || digit > 9) {
+                    throw new NumberFormatException("Not a digit");
+                }
+
+                value = value * 10 + digit;
+
+                if (value > (long) Integer.MAX_VALUE + 1) {
+                    throw new NumberFormatException("Too large");
+                }
+            }
+
+            value = negative ? -value : value;
+
+            if (value > Integer.MAX_VALUE) {
+                throw new NumberFormatException("Too large");
+            }
+
+            return (int) value;
+        }
+
+        private String decode(MappedByteBuffer window, int start, int end) {
+            int length = end - start;
+
+            if (bytes.length < length) {
+                bytes = Arrays.copyOf(bytes, Math.max(length, bytes.length * 2));
+            }
+
+            for (int i = 0; i < length; i++) {
+                bytes[i] = window.get(start + i);
+            }
+
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
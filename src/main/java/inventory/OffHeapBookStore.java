@@ -0,0 +1,301 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A {@link BookStore} that keeps the books outside of the heap, so that a large catalog does not make the heap
+ * large and the pauses of the garbage collector long.
+ *
+ * Each book is encoded as a record with the title and the author in UTF-8 and the price as an unscaled value and a
+ * scale, and the records are appended to direct byte buffers of 16 MB. A {@link Book} is decoded from its record
+ * each time it is read, so the books that are returned are short lived copies that are equal to the added books.
+ *
+ * The heap only holds primitive arrays: the position of the record and the hash code of each book, and an open
+ * addressing hash table of ids that is used to find the id of a book by comparing its encoded bytes with the records.
+ */
+final class OffHeapBookStore implements BookStore {
+    private static final int DEFAULT_CHUNK_SIZE = 16 << 20;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int NULL_LENGTH = -1;
+    private static final int EMPTY_SLOT = 0;
+
+    private final int chunkSize;
+    private volatile ByteBuffer[] chunks;
+    private volatile long[] positions;
+    private volatile int[] hashes;
+    private volatile int[] table;
+    private volatile int size;
+    private int chunkPosition;
+
+    OffHeapBookStore() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param chunkSize the size of the direct byte buffers that the records are appended to.
+     */
+    OffHeapBookStore(int chunkSize) {
+        this.chunkSize = chunkSize;
+        this.chunks = new ByteBuffer[] {ByteBuffer.allocateDirect(chunkSize)};
+        this.positions = new long[INITIAL_CAPACITY];
+        this.hashes = new int[INITIAL_CAPACITY];
+        this.table = new int[INITIAL_CAPACITY * 2];
+    }
+
+    @Override
+    public int add(Book book) {
+        int id = size;
+        ensureCapacity(id + 1);
+        append(id, book);
+        size = id + 1;
+
+        return id;
+    }
+
+    @Override
+    public int addAll(Book[] newBooks) {
+        int firstId = size;
+        ensureCapacity(firstId + newBooks.length);
+
+        for (int i = 0; i < newBooks.length; i++) {
+            append(firstId + i, newBooks[i]);
+        }
+
+        size = firstId + newBooks.length;
+
+        return firstId;
+    }
+
+    @Override
+    public Book get(int id) {
+        long position = positions[id];
+        ByteBuffer chunk = chunks[(int) (position >>> 32)];
+        // The length of the record is skipped.
+        int offset = (int) position + Integer.BYTES;
+
+        int titleLength = chunk.getInt(offset);
+        String title = readString(chunk, offset + Integer.BYTES, titleLength);
+        offset += Integer.BYTES + Math.max(0, titleLength);
+
+        int authorLength = chunk.getInt(offset);
+        String author = readString(chunk, offset + Integer.BYTES, authorLength);
+        offset += Integer.BYTES + Math.max(0, authorLength);
+
+        int scale = chunk.getInt(offset);
+        int unscaledLength = chunk.getInt(offset + Integer.BYTES);
+        BigDecimal price = unscaledLength == NULL_LENGTH ? null :
+                new BigDecimal(new BigInteger(readBytes(chunk, offset + 2 * Integer.BYTES, unscaledLength)), scale);
+
+        return new Book(title, author, price);
+    }
+
+    @Override
+    public int idOf(Book book) {
+        // The size must be read before the arrays so that the records of all ids below it are visible.
+        int publishedBooks = size;
+        int[] currentHashes = hashes;
+        int[] currentTable = table;
+        int hash = book.hashCode();
+        byte[] record = null;
+
+        for (int slot = slotOf(hash, currentTable.length); currentTable[slot] != EMPTY_SLOT;
+             slot = (slot + 1) & (currentTable.length - 1)) {
+            int id = currentTable[slot] - 1;
+
+            if (id < publishedBooks && currentHashes[id] == hash) {
+                if (record == null) {
+                    record = encode(book);
+                }
+
+                if (recordEquals(id, record)) {
+                    return id;
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Book[] toArray(int offset, int limit) {
+        int count = size;
+        int from = Math.min(offset, count);
+        int to = from + Math.min(count - from, limit);
+        Book[] books = new Book[to - from];
+
+        for (int i = 0; i < books.length; i++) {
+            books[i] = get(from + i);
+        }
+
+        return books;
+    }
+
+    @Override
+    public Stream<Book> stream() {
+        return IntStream.range(0, size).mapToObj(this::get);
+    }
+
+    /**
+     * Grows the arrays for the records, the hash codes and the hash table so that they can hold size books.
+     */
+    private void ensureCapacity(int size) {
+        if (size > positions.length) {
+            int capacity = Math.max(positions.length * 2, size);
+            positions = Arrays.copyOf(positions, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+        }
+
+        // The table is kept at most half full so that probe sequences stay short.
+        if (size * 2L > table.length) {
+            int[] currentHashes = hashes;
+            int[] grown = new int[Integer.highestOneBit((int) Math.min(size * 4L - 1, 1 << 30))];
+
+            for (int id = 0; id < this.size; id++) {
+                insert(grown, id, currentHashes[id]);
+            }
+
+            table = grown;
+        }
+    }
+
+    /**
+     * Writes the record of a book and adds its id to the hash table. The book is not published until the size is
+     * updated.
+     */
+    private void append(int id, Book book) {
+        byte[] record = encode(book);
+        int recordLength = Integer.BYTES + record.length;
+        ByteBuffer[] currentChunks = chunks;
+        ByteBuffer chunk = currentChunks[currentChunks.length - 1];
+
+        if (chunkPosition + recordLength > chunk.capacity()) {
+            chunk = ByteBuffer.allocateDirect(Math.max(chunkSize, recordLength));
+            currentChunks = Arrays.copyOf(currentChunks, currentChunks.length + 1);
+            currentChunks[currentChunks.length - 1] = chunk;
+            chunks = currentChunks;
+            chunkPosition = 0;
+        }
+
+        chunk.putInt(chunkPosition, record.length);
+        ByteBuffer target = chunk.duplicate();
+        target.position(chunkPosition + Integer.BYTES);
+        target.put(record);
+
+        positions[id] = ((long) (currentChunks.length - 1) << 32) | chunkPosition;
+        hashes[id] = book.hashCode();
+        insert(table, id, book.hashCode());
+        chunkPosition += recordLength;
+    }
+
+    private boolean recordEquals(int id, byte[] record) {
+        long position = positions[id];
+        ByteBuffer chunk = chunks[(int) (position >>> 32)];
+        int offset = (int) position;
+
+        if (chunk.getInt(offset) != record.length) {
+            return false;
+        }
+
+        offset += Integer.BYTES;
+
+        for (int i = 0; i < record.length; i++) {
+            if (chunk.get(offset + i) != record[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static void insert(int[] table, int id, int hash) {
+        int slot = slotOf(hash, table.length);
+
+        while (table[slot] != EMPTY_SLOT) {
+            slot = (slot + 1) & (table.length - 1);
+        }
+
+        table[slot] = id + 1;
+    }
+
+    private static int slotOf(int hash, int tableLength) {
+        return Book.spread(hash) & (tableLength - 1);
+    }
+
+    /**
+     * Encodes a book as its title, its author and the unscaled value and the scale of its price. Null values are
+     * written as a length of -1.
+     */
+    private static byte[] encode(Book book) {
+        byte[] title = book.getTitle() == null ? null : book.getTitle().getBytes(StandardCharsets.UTF_8);
+        byte[] author = book.getAuthor() == null ? null : book.getAuthor().getBytes(StandardCharsets.UTF_8);
+        BigDecimal price = book.getPrice();
+        byte[] unscaled = price == null ? null : price.unscaledValue().toByteArray();
+
+        ByteBuffer record = ByteBuffer.allocate(4 * Integer.BYTES + length(title) + length(author) + length(unscaled));
+        putBytes(record, title);
+        putBytes(record, author);
+        record.putInt(price == null ? 0 : price.scale());
+        putBytes(record, unscaled);
+
+        return record.array();
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void putBytes(ByteBuffer record, byte[] bytes) {
+        if (bytes == null) {
+            record.putInt(NULL_LENGTH);
+        } else {
+            record.putInt(bytes.length);
+            record.put(bytes);
+        }
+    }
+
+    private static String readString(ByteBuffer chunk, int offset, int length) {
+        return length == NULL_LENGTH ? null : new String(readBytes(chunk, offset, length), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(ByteBuffer chunk, int offset, int length) {
+        byte[] bytes = new byte[length];
+
+        for (int i = 0; i < length; i++) {
+            bytes[i] = chunk.get(offset + i);
+        }
+
+        return bytes;
+    }
+}
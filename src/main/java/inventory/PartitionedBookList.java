@@ -0,0 +1,480 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+
+/**
+ * An implementation of the {@link BookList} interface that spreads the books over several {@link IndexedBookList}
+ * partitions by the hash of the book. Each partition has its own lock, maps and search index, so books can be added
+ * to different partitions at the same time and no partition has to hold the whole catalog.
+ *
+ * Adding, removing and buying a book only touches the partition that owns the book. A search is sent to all
+ * partitions in parallel and their best matches are merged by score. Each partition scores its books with the
+ * statistics of its own books, which are close to those of the whole catalog since the books are spread by hash,
+ * so the merged order is close to, but not always exactly, the order of a single {@link IndexedBookList}. The
+ * results of recent searches are cached until a new book is added to any partition.
+ *
+ * Listing all books returns the books of the first partition, in the order in which they were added, followed by
+ * the books of the next partition and so on.
+ */
+public class PartitionedBookList implements BookList {
+    private final IndexedBookList[] partitions;
+    private final ForkJoinPool pool;
+    private final QueryCache queryCache;
+
+    /**
+     * Constructor. The partitions are searched on the common {@link ForkJoinPool}.
+     *
+     * @param numberOfPartitions the number of partitions to spread the books over.
+     */
+    public PartitionedBookList(int numberOfPartitions) {
+        this(numberOfPartitions, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor. The pool belongs to the caller, who shuts it down when it is no longer used.
+     *
+     * @param numberOfPartitions the number of partitions to spread the books over.
+     * @param pool the pool that the partitions are searched on.
+     */
+    public PartitionedBookList(int numberOfPartitions, ForkJoinPool pool) {
+        if (numberOfPartitions < 1) {
+            throw new IllegalArgumentException("Number of partitions must be a positive number {1, 2, 3...}");
+        }
+
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool must not be null");
+        }
+
+        this.partitions = new IndexedBookList[numberOfPartitions];
+
+        for (int i = 0; i < numberOfPartitions; i++) {
+            // The merged results are cached here, the partitions would only cache their part of them.
+            partitions[i] = new IndexedBookList(0);
+        }
+
+        this.pool = pool;
+        this.queryCache = new QueryCache(QueryCache.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Returns a {@link Book} array that contains all books in the inventory
+     * or the books that matches the search string, see {@link IndexedBookList#list(String)}.
+     *
+     * @param searchString the search string. If null, all books will be returned.
+     * @return an array of {@link Book}s.
+     */
+    @Override
+    public Book[] list(String searchString) {
+        return list(searchString, SearchOptions.ANY_WORD, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns a {@link Book} array that contains the books that best matches the provided search string,
+     * see {@link IndexedBookList#list(String, SearchOptions, int)}.
+     *
+     * @param searchString the search string. If null, the first books in the inventory will be returned.
+     * @param options decides how the words of the search string are combined.
+     * @param limit the maximum number of books to return.
+     * @return an array of at most limit {@link Book}s, best match first.
+     */
+    @Override
+    public Book[] list(String searchString, SearchOptions options, int limit) {
+        return list(searchString, options, 0, limit);
+    }
+
+    /**
+     * Returns a page of the books that {@link #list(String, SearchOptions, int)} would return, skipping the offset
+     * first books.
+     *
+     * Every partition returns its best offset + limit matches, with the number of books that each partition had
+     * when the search started as its snapshot, and the matches are merged by score.
+     *
+     * @param searchString the search string. If null, the books in the inventory will be returned.
+     * @param options decides how the words of the search string are combined.
+     * @param offset the number of books to skip.
+     * @param limit the maximum number of books to return.
+     * @return an array of at most limit {@link Book}s, empty if there are no books after the offset.
+     */
+    @Override
+    public Book[] list(String searchString, SearchOptions options, int offset, int limit) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must be a natural number {0, 1, 2, 3...}");
+        }
+
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must be a natural number {0, 1, 2, 3...}");
+        }
+
+        if (searchString == null) {
+            return listAll(offset, limit);
+        }
+
+        Set<String> words = new LinkedHashSet<>(Arrays.asList(Tokenizer.tokenize(searchString)));
+        int end = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+        int[] publishedBooks = new int[partitions.length];
+        int totalPublishedBooks = 0;
+
+        for (int i = 0; i < partitions.length; i++) {
+            publishedBooks[i] = partitions[i].size();
+            totalPublishedBooks += publishedBooks[i];
+        }
+
+        QueryCache.Query query = new QueryCache.Query(words, options, end);
+
+        return queryCache.search(query, totalPublishedBooks, offset, () -> {
+            List<RankedSearch.Matches> matches = forEachPartition(i ->
+                    partitions[i].searchWithScores(words, options, end, publishedBooks[i]));
+            return merge(matches, end);
+        });
+    }
+
+    /**
+     * Returns a lazy stream of all books in the inventory, partition by partition. Only the books that were added
+     * to a partition before the stream reached it are part of it.
+     *
+     * @return a stream of {@link Book}s.
+     */
+    @Override
+    public Stream<Book> stream() {
+        return Arrays.stream(partitions).flatMap(IndexedBookList::stream);
+    }
+
+    /**
+     * Adds a book and the quantity available to the partition that owns the book,
+     * see {@link IndexedBookList#add(Book, int)}.
+     *
+     * @param book the book to add.
+     * @param quantity the amount of copies that should be added to the inventory.
+     *                 Must be a natural number or an {@link IllegalArgumentException} will be thrown.
+     */
+    @Override
+    public void add(Book book, int quantity) {
+        partitionOf(book).add(book, quantity);
+    }
+
+    /**
+     * Adds many books and the quantities available to the inventory. The books are split by the partition that
+     * owns them and the partitions add and index their books in parallel.
+     *
+     * @param books the books to add and the amount of copies of each book that should be added to the inventory.
+     *              All quantities must be natural numbers or an {@link IllegalArgumentException} will be thrown
+     *              and no book will be added.
+     */
+    @Override
+    public void addAll(Map<Book, Integer> books) {
+        List<Map<Book, Integer>> booksByPartition = new ArrayList<>(partitions.length);
+
+        for (int i = 0; i < partitions.length; i++) {
+            booksByPartition.add(new LinkedHashMap<>());
+        }
+
+        for (Map.Entry<Book, Integer> entry : books.entrySet()) {
+            if (entry.getValue() == null || entry.getValue() < 0) {
+                throw new IllegalArgumentException("Quantity must be a natural number {0, 1, 2, 3...}");
+            }
+
+            booksByPartition.get(partitionNumber(entry.getKey())).put(entry.getKey(), entry.getValue());
+        }
+
+        forEachPartition(i -> {
+            partitions[i].addAll(booksByPartition.get(i));
+            return null;
+        });
+    }
+
+    /**
+     * Removes copies of a book from the partition that owns the book, see {@link IndexedBookList#remove(Book, int)}.
+     *
+     * @param book the book to remove copies of.
+     * @param quantity the amount of copies to remove.
+     *                 Must be a natural number or an {@link IllegalArgumentException} will be thrown.
+     * @return the number of copies that were removed.
+     */
+    @Override
+    public int remove(Book book, int quantity) {
+        return partitionOf(book).remove(book, quantity);
+    }
+
+    /**
+     * Buys the books from the partitions that own them, see {@link IndexedBookList#buy(Book...)}. Each partition
+     * is only asked once, for all of its books.
+     *
+     * @param books the books to buy.
+     * @return an array with a status for each book.
+     *         2 if the book does not exist,
+     *         1 if the book exist but is not in stock,
+     *         0 if the book was successfully bought.
+     */
+    @Override
+    public int[] buy(Book... books) {
+        if (books.length == 1) {
+            return partitionOf(books[0]).buy(books);
+        }
+
+        int[][] positions = positionsByPartition(books);
+        int[] result = new int[books.length];
+
+        for (int partition = 0; partition < partitions.length; partition++) {
+            if (positions[partition] != null) {
+                int[] partitionResult = partitions[partition].buy(booksAt(books, positions[partition]));
+                copyResult(partitionResult, positions[partition], result);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Buys all of the books or none of them, see {@link IndexedBookList#buyAll(Book...)}. Every partition checks its
+     * books before anything is taken, so a purchase with a book that does not exist or is not in stock takes no
+     * copies. The partitions are then bought from in partition order and if one of them has sold its copies since
+     * it was checked, the purchases from the earlier partitions are cancelled and their copies given back, see
+     * {@link IndexedBookList#cancelPurchase(Book...)}. Until they are given back those copies look sold to everybody
+     * else.
+     *
+     * When the purchase fails every book gets its own status, whichever partition it belongs to.
+     *
+     * @param books the books to buy.
+     * @return an array with a status for each book.
+     *         3 if the book was not bought because other books could not be bought,
+     *         2 if the book does not exist,
+     *         1 if the book exist but there are not enough copies in stock,
+     *         0 if the book was successfully bought.
+     */
+    @Override
+    public int[] buyAll(Book... books) {
+        if (books.length == 1) {
+            return partitionOf(books[0]).buyAll(books);
+        }
+
+        int[][] positions = positionsByPartition(books);
+        int[] result = new int[books.length];
+
+        if (!checkAll(books, positions, -1, result)) {
+            return result;
+        }
+
+        for (int partition = 0; partition < partitions.length; partition++) {
+            if (positions[partition] == null) {
+                continue;
+            }
+
+            int[] partitionResult = partitions[partition].buyAll(booksAt(books, positions[partition]));
+
+            if (partitionResult[0] != BuyResult.OK.toValue()) {
+                for (int bought = 0; bought < partition; bought++) {
+                    if (positions[bought] != null) {
+                        partitions[bought].cancelPurchase(booksAt(books, positions[bought]));
+                    }
+                }
+
+                checkAll(books, positions, partition, result);
+                copyResult(partitionResult, positions[partition], result);
+                return result;
+            }
+        }
+
+        Arrays.fill(result, BuyResult.OK.toValue());
+
+        return result;
+    }
+
+    /**
+     * Fills in the status that every book would get if the purchase failed, see
+     * {@link IndexedBookList#statusesIfCancelled(Book[])}.
+     *
+     * @param books the books.
+     * @param positions the positions of the books for every partition.
+     * @param skippedPartition a partition whose statuses are already known, -1 for none.
+     * @param result filled in with the status of each book.
+     * @return true if all of the books can be bought.
+     */
+    private boolean checkAll(Book[] books, int[][] positions, int skippedPartition, int[] result) {
+        boolean available = true;
+
+        for (int partition = 0; partition < partitions.length; partition++) {
+            if (positions[partition] == null || partition == skippedPartition) {
+                continue;
+            }
+
+            int[] partitionResult = partitions[partition].statusesIfCancelled(booksAt(books, positions[partition]));
+            copyResult(partitionResult, positions[partition], result);
+
+            for (int status : partitionResult) {
+                available &= status == BuyResult.CANCELLED.toValue();
+            }
+        }
+
+        return available;
+    }
+
+    /**
+     * Groups the positions of the books by the partition that owns them.
+     *
+     * @param books the books.
+     * @return the positions of the books for every partition, null for the partitions that own none of them.
+     */
+    private int[][] positionsByPartition(Book[] books) {
+        int[] partitionNumbers = new int[books.length];
+        int[] booksPerPartition = new int[partitions.length];
+
+        for (int i = 0; i < books.length; i++) {
+            partitionNumbers[i] = partitionNumber(books[i]);
+            booksPerPartition[partitionNumbers[i]]++;
+        }
+
+        int[][] positions = new int[partitions.length][];
+
+        for (int i = 0; i < books.length; i++) {
+            int partition = partitionNumbers[i];
+
+            if (positions[partition] == null) {
+                positions[partition] = new int[booksPerPartition[partition]];
+                booksPerPartition[partition] = 0;
+            }
+
+            positions[partition][booksPerPartition[partition]++] = i;
+        }
+
+        return positions;
+    }
+
+    private static Book[] booksAt(Book[] books, int[] positions) {
+        Book[] booksAtPositions = new Book[positions.length];
+
+        for (int i = 0; i < positions.length; i++) {
+            booksAtPositions[i] = books[positions[i]];
+        }
+
+        return booksAtPositions;
+    }
+
+    private static void copyResult(int[] partitionResult, int[] positions, int[] result) {
+        for (int i = 0; i < positions.length; i++) {
+            result[positions[i]] = partitionResult[i];
+        }
+    }
+
+    private Book[] listAll(int offset, int limit) {
+        List<Book> books = new ArrayList<>();
+        int skip = offset;
+
+        for (IndexedBookList partition : partitions) {
+            if (books.size() == limit) {
+                break;
+            }
+
+            int size = partition.size();
+
+            if (skip >= size) {
+                skip -= size;
+                continue;
+            }
+
+            Collections.addAll(books, partition.list(null, SearchOptions.ANY_WORD, skip, limit - books.size()));
+            skip = 0;
+        }
+
+        return books.toArray(new Book[0]);
+    }
+
+    /**
+     * Merges the matches of all partitions, best score first. Books with the same score are ordered by partition.
+     */
+    private Book[] merge(List<RankedSearch.Matches> matches, int limit) {
+        int[] positions = new int[matches.size()];
+        int numberOfMatches = 0;
+        PriorityQueue<Integer> bestPartitions = new PriorityQueue<>((first, second) -> {
+            int result = Double.compare(matches.get(second).score(positions[second]),
+                    matches.get(first).score(positions[first]));
+            return result != 0 ? result : Integer.compare(first, second);
+        });
+
+        for (int i = 0; i < matches.size(); i++) {
+            numberOfMatches += matches.get(i).size();
+
+            if (matches.get(i).size() > 0) {
+                bestPartitions.add(i);
+            }
+        }
+
+        Book[] books = new Book[Math.min(numberOfMatches, limit)];
+
+        for (int i = 0; i < books.length; i++) {
+            int partition = bestPartitions.poll();
+            RankedSearch.Matches partitionMatches = matches.get(partition);
+            books[i] = partitions[partition].get(partitionMatches.bookId(positions[partition]));
+
+            if (++positions[partition] < partitionMatches.size()) {
+                bestPartitions.add(partition);
+            }
+        }
+
+        return books;
+    }
+
+    /**
+     * Runs a task for each partition on the pool and returns the results in partition order.
+     */
+    private <T> List<T> forEachPartition(IntFunction<T> task) {
+        if (partitions.length == 1) {
+            return Collections.singletonList(task.apply(0));
+        }
+
+        return pool.invoke(ForkJoinTask.adapt(() -> {
+            List<ForkJoinTask<T>> tasks = new ArrayList<>(partitions.length);
+
+            for (int i = 0; i < partitions.length; i++) {
+                int partition = i;
+                tasks.add(ForkJoinTask.adapt(() -> task.apply(partition)));
+            }
+
+            List<T> results = new ArrayList<>(partitions.length);
+
+            for (ForkJoinTask<T> partitionTask : ForkJoinTask.invokeAll(tasks)) {
+                results.add(partitionTask.join());
+            }
+
+            return results;
+        }));
+    }
+
+    private IndexedBookList partitionOf(Book book) {
+        return partitions[partitionNumber(book)];
+    }
+
+    private int partitionNumber(Book book) {
+        return (Book.spread(book.hashCode()) & Integer.MAX_VALUE) % partitions.length;
+    }
+}
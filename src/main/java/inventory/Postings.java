@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An append-only list of book ids for one word in an index.
+ *
+ * The ids are sorted so they are stored as the difference to the previous id, encoded as a variable length integer
+ * with seven bits per byte. Most differences fit in one or two bytes, compared to the four bytes of an int or the
+ * twenty bytes of a boxed Integer in a list, and iterating over them is a sequential scan of a single byte array.
+ *
+ * There may only be one writer at a time but any number of readers can iterate over the ids without locking while
+ * the writer appends new ids. The encoded bytes are stored in a growable array that is replaced when it is full
+ * and the number of bytes is published through a volatile field after the id has been written.
+ */
+final class Postings {
+    private static final int INITIAL_CAPACITY = 8;
+    private static final int MAX_VARINT_LENGTH = 5;
+    private static final int SEVEN_BITS = 0x7f;
+    private static final int CONTINUATION_BIT = 0x80;
+
+    private volatile byte[] data;
+    private volatile int length;
+    private volatile int size;
+    private int lastId;
+
+    Postings() {
+        this.data = new byte[INITIAL_CAPACITY];
+    }
+
+    private Postings(byte[] data, int length, int size, int lastId) {
+        this.data = data;
+        this.length = length;
+        this.size = size;
+        this.lastId = lastId;
+    }
+
+    /**
+     * Reads postings that were written by {@link #write(DataOutput)}.
+     *
+     * @param in the buffer to read from, positioned at the postings.
+     * @param numberOfBooks the number of books, all ids must be lower than this.
+     * @return the postings, ready for new ids to be added.
+     * @throws IOException if the postings are corrupt.
+     */
+    static Postings read(ByteBuffer in, int numberOfBooks) throws IOException {
+        int size = in.getInt();
+        int lastId = in.getInt();
+        int length = in.getInt();
+
+        // Every id takes at least one byte.
+        if (length < 0 || length > in.remaining() || size < 0 || size > length || lastId < 0
+                || size > 0 && lastId >= numberOfBooks) {
+            throw new IOException("Postings can not have " + size + " ids, " + length + " bytes and the last id "
+                    + lastId);
+        }
+
+        byte[] data = new byte[Math.max(INITIAL_CAPACITY, length)];
+        in.get(data, 0, length);
+
+        return new Postings(data, length, size, lastId);
+    }
+
+    /**
+     * Appends a book id. Ids must be added in ascending order and the caller must make sure that
+     * there is only one writer at a time. Adding the same id as the last added id has no effect.
+     *
+     * @param id the id of the book.
+     */
+    void add(int id) {
+        int count = size;
+
+        if (count > 0 && lastId == id) {
+            return;
+        }
+
+        int position = length;
+        byte[] current = data;
+
+        if (position + MAX_VARINT_LENGTH > current.length) {
+            current = Arrays.copyOf(current, Math.max(current.length * 2, position + MAX_VARINT_LENGTH));
+            position = writeVarint(current, position, id - lastId);
+            data = current;
+        } else {
+            position = writeVarint(current, position, id - lastId);
+        }
+
+        lastId = id;
+        size = count + 1;
+        length = position;
+    }
+
+    /**
+     * Returns the number of ids. The value may include an id that is being added and is not yet visible
+     * to a {@link Cursor}.
+     *
+     * @return the number of ids.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns a cursor over all ids that are published when this method is called.
+     *
+     * @return a new cursor positioned before the first id.
+     */
+    Cursor cursor() {
+        // The length must be read before the array, a newer array always contains all bytes of an older one.
+        int end = length;
+        return new Cursor(data, end);
+    }
+
+    /**
+     * Writes the encoded ids. The caller must make sure that no id is added while the postings are written.
+     *
+     * @param out the output to write to.
+     * @throws IOException if the postings could not be written.
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeInt(size);
+        out.writeInt(lastId);
+        out.writeInt(length);
+        out.write(data, 0, length);
+    }
+
+    private static int writeVarint(byte[] target, int position, int value) {
+        int remaining = value;
+
+        while ((remaining & ~SEVEN_BITS) != 0) {
+            target[position++] = (byte) ((remaining & SEVEN_BITS) | CONTINUATION_BIT);
+            remaining >>>= 7;
+        }
+
+        target[position++] = (byte) remaining;
+
+        return position;
+    }
+
+    /**
+     * Iterates over the ids of a {@link Postings} in ascending order. A cursor is not thread safe.
+     */
+    static final class Cursor {
+        static final int NO_MORE_IDS = -1;
+
+        private final byte[] data;
+        private final int end;
+        private int position;
+        private int id;
+
+        private Cursor(byte[] data, int end) {
+            this.data = data;
+            this.end = end;
+        }
+
+        /**
+         * Moves the cursor to the next id.
+         *
+         * @return the next id or {@link #NO_MORE_IDS} if all ids have been read.
+         */
+        int next() {
+            if (position >= end) {
+                return NO_MORE_IDS;
+            }
+
+            int delta = 0;
+            int shift = 0;
+            int b;
+
+            do {
+                b = data[position++];
+                delta |= (b & SEVEN_BITS) << shift;
+                shift += 7;
+            } while ((b & CONTINUATION_BIT) != 0);
+
+            id += delta;
+
+            return id;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A bounded cache of search results that evicts the least recently used result when it is full.
+ *
+ * Each result is stored with the number of books that were published when it was computed. A result is only
+ * returned for the same number of published books, so adding a book invalidates all results without having
+ * to visit them. Copies of books that are added or bought do not change the result of a search.
+ *
+ * The results are spread over several independently locked parts by the hash of the query, so that threads that
+ * search at the same time rarely wait for each other.
+ */
+final class QueryCache {
+    /**
+     * The number of results that a book list caches unless it is told otherwise.
+     */
+    static final int DEFAULT_CAPACITY = 1024;
+
+    private static final int MAX_STRIPES = 16;
+    private static final int MAX_RESULT_SIZE = 1000;
+
+    private final List<Map<Query, Result>> stripes;
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity the maximum number of results to keep. No result is kept if it is 0.
+     */
+    QueryCache(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must be a natural number {0, 1, 2, 3...}");
+        }
+
+        int numberOfStripes = Math.max(1, Math.min(MAX_STRIPES, capacity));
+        int stripeCapacity = capacity / numberOfStripes;
+        this.stripes = new ArrayList<>(numberOfStripes);
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+
+        for (int i = 0; i < numberOfStripes; i++) {
+            stripes.add(new LinkedHashMap<Query, Result>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Query, Result> eldest) {
+                    return size() > stripeCapacity;
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns a cached result.
+     *
+     * @param query the query.
+     * @param publishedBooks the number of published books.
+     * @return the books that were found for the query with the same number of published books, or null if
+     *         there is no such result. The array is shared and must not be modified.
+     */
+    Book[] get(Query query, int publishedBooks) {
+        Map<Query, Result> stripe = stripeOf(query);
+        Result result;
+
+        synchronized (stripe) {
+            result = stripe.get(query);
+        }
+
+        if (result != null && result.publishedBooks == publishedBooks) {
+            hits.increment();
+            return result.books;
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Caches a result.
+     *
+     * @param query the query.
+     * @param publishedBooks the number of published books that the result was computed for.
+     * @param books the books that were found. The array must not be modified after it has been cached.
+     */
+    void put(Query query, int publishedBooks, Book[] books) {
+        Map<Query, Result> stripe = stripeOf(query);
+
+        synchronized (stripe) {
+            Result current = stripe.get(query);
+
+            // A slower search may finish after a search that saw more books, keep the newer result.
+            if (current == null || current.publishedBooks <= publishedBooks) {
+                stripe.put(query, new Result(books, publishedBooks));
+            }
+        }
+    }
+
+    /**
+     * Returns the result of a query from the offset. The result is taken from the cache, or it is computed by the
+     * search and then cached.
+     *
+     * @param query the query.
+     * @param publishedBooks the number of published books that the search sees.
+     * @param offset the number of books of the result to skip.
+     * @param search computes the result if it is not cached.
+     * @return a copy of the books of the result from the offset, which the caller may modify.
+     */
+    Book[] search(Query query, int publishedBooks, int offset, Supplier<Book[]> search) {
+        Book[] books = get(query, publishedBooks);
+
+        if (books == null) {
+            books = search.get();
+
+            // Large results are rare and would make the size of the cache unpredictable.
+            if (books.length <= MAX_RESULT_SIZE) {
+                put(query, publishedBooks, books);
+            }
+        }
+
+        // The cached array is shared between searches so every caller gets its own copy.
+        return Arrays.copyOfRange(books, Math.min(offset, books.length), books.length);
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    private Map<Query, Result> stripeOf(Query query) {
+        return stripes.get((query.hashCode & Integer.MAX_VALUE) % stripes.size());
+    }
+
+    /**
+     * A normalized search: the distinct words of the search string in order, the options and the limit.
+     * Search strings that only differ in case, punctuation or repeated words are the same query.
+     */
+    static final class Query {
+        private final String words;
+        private final SearchOptions options;
+        private final int limit;
+        private final int hashCode;
+
+        Query(Collection<String> words, SearchOptions options, int limit) {
+            this.words = String.join(" ", words);
+            this.options = options;
+            this.limit = limit;
+            this.hashCode = 31 * (31 * this.words.hashCode() + options.hashCode()) + limit;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+
+            Query other = (Query) obj;
+
+            return hashCode == other.hashCode
+                    && limit == other.limit
+                    && words.equals(other.words)
+                    && options.equals(other.options);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static final class Result {
+        private final Book[] books;
+        private final int publishedBooks;
+
+        private Result(Book[] books, int publishedBooks) {
+            this.books = books;
+            this.publishedBooks = publishedBooks;
+        }
+    }
+}
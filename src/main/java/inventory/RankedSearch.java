@@ -0,0 +1,376 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Finds the books that best match a set of words in the title and author indexes.
+ *
+ * The postings of all words are walked in parallel in ascending id order, so a book is scored as soon as all
+ * postings have reached it and no intermediate result sets are built. When all words must match the walk stops as
+ * soon as the postings of one word are exhausted. Every match is scored with BM25 over the title and the author
+ * and only the best matches are kept in a heap that never grows larger than the requested number of results.
+ *
+ * With prefix or fuzzy matching a word of the search string expands to several words in the index. The postings
+ * of all of them are walked as one sorted list where a book gets the score of the best expansion it contains,
+ * scaled down by the number of edits. At most {@link #MAX_EXPANSIONS} expansions are used per word and field,
+ * the closest and most common ones.
+ */
+final class RankedSearch {
+    private static final Matches NO_MATCHES = new Matches(new int[0], new double[0]);
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int MAX_EXPANSIONS = 64;
+    private static final Comparator<Map.Entry<Postings, Integer>> CLOSEST_AND_MOST_COMMON_FIRST =
+            Comparator.<Map.Entry<Postings, Integer>>comparingInt(Map.Entry::getValue)
+                    .thenComparing(entry -> entry.getKey().size(), Comparator.reverseOrder());
+
+    private final FieldIndex titleIndex;
+    private final FieldIndex authorIndex;
+
+    RankedSearch(FieldIndex titleIndex, FieldIndex authorIndex) {
+        this.titleIndex = titleIndex;
+        this.authorIndex = authorIndex;
+    }
+
+    /**
+     * Searches for books.
+     *
+     * @param words the distinct normalized words to search for.
+     * @param options decides how the words are matched and combined.
+     * @param limit the maximum number of book ids to return.
+     * @param publishedBooks the number of published books. Books with a higher id are ignored.
+     * @return the ids of the best matching books, best match first.
+     */
+    int[] search(Collection<String> words, SearchOptions options, int limit, int publishedBooks) {
+        return searchWithScores(words, options, limit, publishedBooks).bookIds;
+    }
+
+    /**
+     * Searches for books like {@link #search(Collection, SearchOptions, int, int)} and also returns the score of
+     * each book, so that the results of several indexes can be merged.
+     *
+     * @param words the distinct normalized words to search for.
+     * @param options decides how the words are matched and combined.
+     * @param limit the maximum number of book ids to return.
+     * @param publishedBooks the number of published books. Books with a higher id are ignored.
+     * @return the ids and the scores of the best matching books, best match first.
+     */
+    Matches searchWithScores(Collection<String> words, SearchOptions options, int limit, int publishedBooks) {
+        boolean allWords = options.getOperator() == SearchOptions.Operator.AND;
+        WordCursor[] cursors = new WordCursor[words.size()];
+        int numberOfCursors = 0;
+        int wordNumber = 0;
+
+        for (String word : words) {
+            boolean prefix = options.isPrefixMatching() && ++wordNumber == words.size();
+            WordCursor cursor = new WordCursor(word, prefix, options.maxEditsFor(word), publishedBooks);
+
+            if (cursor.current != Postings.Cursor.NO_MORE_IDS) {
+                cursors[numberOfCursors++] = cursor;
+            } else if (allWords) {
+                return NO_MATCHES;
+            }
+        }
+
+        if (numberOfCursors == 0 || limit <= 0) {
+            return NO_MATCHES;
+        }
+
+        PriorityQueue<ScoredBook> bestBooks = new PriorityQueue<>();
+        int bookId = smallestId(cursors, numberOfCursors);
+
+        while (bookId != Postings.Cursor.NO_MORE_IDS) {
+            double score = 0;
+            int matchingWords = 0;
+
+            for (int i = 0; i < numberOfCursors; i++) {
+                WordCursor cursor = cursors[i];
+
+                if (cursor.current == bookId) {
+                    score += cursor.score(bookId);
+                    matchingWords++;
+                    cursor.advance();
+                }
+            }
+
+            if (!allWords || matchingWords == numberOfCursors) {
+                offer(bestBooks, bookId, score, limit);
+            }
+
+            if (allWords && anyExhausted(cursors, numberOfCursors)) {
+                break;
+            }
+
+            bookId = smallestId(cursors, numberOfCursors);
+        }
+
+        int[] bookIds = new int[bestBooks.size()];
+        double[] scores = new double[bookIds.length];
+
+        for (int i = bookIds.length - 1; i >= 0; i--) {
+            ScoredBook book = bestBooks.poll();
+            bookIds[i] = book.bookId;
+            scores[i] = book.score;
+        }
+
+        return new Matches(bookIds, scores);
+    }
+
+    private static void offer(PriorityQueue<ScoredBook> bestBooks, int bookId, double score, int limit) {
+        if (bestBooks.size() < limit) {
+            bestBooks.add(new ScoredBook(bookId, score));
+        } else if (score > bestBooks.peek().score) {
+            // Books are visited in ascending id order so a book with the same score as the worst
+            // kept book never replaces it, which keeps the order of equally scored books stable.
+            bestBooks.poll();
+            bestBooks.add(new ScoredBook(bookId, score));
+        }
+    }
+
+    private static int smallestId(WordCursor[] cursors, int numberOfCursors) {
+        int smallest = Postings.Cursor.NO_MORE_IDS;
+
+        for (int i = 0; i < numberOfCursors; i++) {
+            smallest = smallerId(smallest, cursors[i].current);
+        }
+
+        return smallest;
+    }
+
+    /**
+     * Returns the smaller of two ids where {@link Postings.Cursor#NO_MORE_IDS} is larger than any id.
+     */
+    private static int smallerId(int first, int second) {
+        if (first == Postings.Cursor.NO_MORE_IDS) {
+            return second;
+        }
+
+        if (second == Postings.Cursor.NO_MORE_IDS) {
+            return first;
+        }
+
+        return Math.min(first, second);
+    }
+
+    private static boolean anyExhausted(WordCursor[] cursors, int numberOfCursors) {
+        for (int i = 0; i < numberOfCursors; i++) {
+            if (cursors[i].current == Postings.Cursor.NO_MORE_IDS) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static double inverseDocumentFrequency(Postings postings, int numberOfBooks) {
+        int booksWithWord = Math.min(postings.size(), numberOfBooks);
+        return Math.log(1 + (numberOfBooks - booksWithWord + 0.5) / (booksWithWord + 0.5));
+    }
+
+    private static double bestScore(FieldCursor[] cursors, int bookId) {
+        double best = 0;
+
+        for (FieldCursor cursor : cursors) {
+            best = Math.max(best, cursor.score(bookId));
+        }
+
+        return best;
+    }
+
+    private static int smallestId(FieldCursor[] titles, FieldCursor[] authors) {
+        int smallest = Postings.Cursor.NO_MORE_IDS;
+
+        for (FieldCursor title : titles) {
+            smallest = smallerId(smallest, title.current);
+        }
+
+        for (FieldCursor author : authors) {
+            smallest = smallerId(smallest, author.current);
+        }
+
+        return smallest;
+    }
+
+    /**
+     * Returns cursors over the postings of the words in the index that matches the word.
+     */
+    private static FieldCursor[] fieldCursors(FieldIndex index, String word, boolean prefix, int maxEdits,
+                                              int publishedBooks) {
+        Map<Postings, Integer> matches = new IdentityHashMap<>();
+
+        if (prefix) {
+            index.forEachWithPrefix(word, (postings, distance) -> matches.put(postings, distance));
+        }
+
+        if (maxEdits > 0) {
+            index.forEachWithinDistance(word, maxEdits, (postings, distance) ->
+                    matches.merge(postings, distance, Math::min));
+        } else if (!prefix) {
+            Postings postings = index.get(word);
+
+            if (postings != null) {
+                matches.put(postings, 0);
+            }
+        }
+
+        List<Map.Entry<Postings, Integer>> expansions = new ArrayList<>(matches.entrySet());
+
+        if (expansions.size() > MAX_EXPANSIONS) {
+            expansions.sort(CLOSEST_AND_MOST_COMMON_FIRST);
+            expansions = expansions.subList(0, MAX_EXPANSIONS);
+        }
+
+        FieldCursor[] cursors = new FieldCursor[expansions.size()];
+
+        for (int i = 0; i < cursors.length; i++) {
+            Map.Entry<Postings, Integer> expansion = expansions.get(i);
+            double weight = 1.0 / (1 + expansion.getValue());
+            cursors[i] = new FieldCursor(index, expansion.getKey(), weight, publishedBooks);
+        }
+
+        return cursors;
+    }
+
+    /**
+     * Walks the title and author postings of all expansions of one word as a single sorted list of book ids.
+     */
+    private final class WordCursor {
+        private final FieldCursor[] titles;
+        private final FieldCursor[] authors;
+        private int current;
+
+        private WordCursor(String word, boolean prefix, int maxEdits, int publishedBooks) {
+            this.titles = fieldCursors(titleIndex, word, prefix, maxEdits, publishedBooks);
+            this.authors = fieldCursors(authorIndex, word, prefix, maxEdits, publishedBooks);
+            this.current = smallestId(titles, authors);
+        }
+
+        private double score(int bookId) {
+            return bestScore(titles, bookId) + bestScore(authors, bookId);
+        }
+
+        private void advance() {
+            int bookId = current;
+
+            for (FieldCursor title : titles) {
+                title.advancePast(bookId);
+            }
+
+            for (FieldCursor author : authors) {
+                author.advancePast(bookId);
+            }
+
+            current = smallestId(titles, authors);
+        }
+    }
+
+    /**
+     * Walks the postings of one word in one field and scores the books that contain the word.
+     */
+    private static final class FieldCursor {
+        private final FieldIndex index;
+        private final Postings.Cursor cursor;
+        private final int publishedBooks;
+        private final double weightedInverseDocumentFrequency;
+        private final double averageLength;
+        private int current;
+
+        private FieldCursor(FieldIndex index, Postings postings, double weight, int publishedBooks) {
+            this.index = index;
+            this.cursor = postings.cursor();
+            this.publishedBooks = publishedBooks;
+            this.weightedInverseDocumentFrequency = weight * inverseDocumentFrequency(postings, publishedBooks);
+            this.averageLength = index.averageLength(publishedBooks);
+            next();
+        }
+
+        private double score(int bookId) {
+            if (current != bookId) {
+                return 0;
+            }
+
+            // The words of a field are only indexed once per book so the term frequency is always 1.
+            double lengthNormalization = 1 - B + B * index.length(bookId) / averageLength;
+            return weightedInverseDocumentFrequency * (K1 + 1) / (1 + K1 * lengthNormalization);
+        }
+
+        private void advancePast(int bookId) {
+            if (current == bookId) {
+                next();
+            }
+        }
+
+        private void next() {
+            int bookId = cursor.next();
+            // Ids are ascending so the first unpublished id ends the postings for this search.
+            current = bookId < publishedBooks ? bookId : Postings.Cursor.NO_MORE_IDS;
+        }
+    }
+
+    /**
+     * The ids of the best matching books, best match first, and the score of each book at the same position.
+     */
+    static final class Matches {
+        private final int[] bookIds;
+        private final double[] scores;
+
+        private Matches(int[] bookIds, double[] scores) {
+            this.bookIds = bookIds;
+            this.scores = scores;
+        }
+
+        int size() {
+            return bookIds.length;
+        }
+
+        int bookId(int position) {
+            return bookIds[position];
+        }
+
+        double score(int position) {
+            return scores[position];
+        }
+    }
+
+    private static final class ScoredBook implements Comparable<ScoredBook> {
+        private final int bookId;
+        private final double score;
+
+        private ScoredBook(int bookId, double score) {
+            this.bookId = bookId;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(ScoredBook other) {
+            // The worst book is at the head of the heap. A higher id is worse when the scores are equal.
+            int result = Double.compare(score, other.score);
+            return result != 0 ? result : Integer.compare(other.bookId, bookId);
+        }
+    }
+}
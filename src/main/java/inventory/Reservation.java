@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A copy of a book that has been taken out of the stock of an {@link IndexedBookList} for a shopping cart, see
+ * {@link StockReservations}.
+ *
+ * A reservation is reserved until it is bought, released or expires. Buying claims the reservation first so it can
+ * not expire while the purchase is made, and a purchase that fails makes it reserved again.
+ */
+public final class Reservation {
+    static final int RESERVED = 0;
+    static final int CLAIMED = 1;
+    static final int BOUGHT = 2;
+    static final int RELEASED = 3;
+
+    // A field updater instead of an atomic object per reservation since there can be millions of reservations.
+    private static final AtomicIntegerFieldUpdater<Reservation> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(Reservation.class, "state");
+
+    private final Book book;
+    private final int bookId;
+    private volatile int state;
+
+    // Only used by the thread that owns the timer wheel, after the reservation has been handed over to it.
+    long deadlineTick;
+    Reservation next;
+
+    Reservation(Book book, int bookId, long deadlineTick) {
+        this.book = book;
+        this.bookId = bookId;
+        this.deadlineTick = deadlineTick;
+    }
+
+    public Book getBook() {
+        return book;
+    }
+
+    int getBookId() {
+        return bookId;
+    }
+
+    int getState() {
+        return state;
+    }
+
+    boolean changeState(int expected, int newState) {
+        return STATE.compareAndSet(this, expected, newState);
+    }
+}
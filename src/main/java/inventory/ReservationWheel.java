@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Predicate;
+
+/**
+ * A hashed timer wheel that expires {@link Reservation}s.
+ *
+ * Time is divided into ticks and the wheel has one slot per tick, for as many ticks as a reservation lives. A
+ * reservation is kept in a linked list in the slot of the tick when it expires, so expiring the reservations of a
+ * tick only visits that slot and millions of pending reservations cost one object each and no scheduled task.
+ * Reservations that live longer than a turn of the wheel are visited once per turn.
+ *
+ * Any thread may schedule a reservation. Scheduled reservations are queued and moved into their slots by the thread
+ * that expires reservations, so the slots are only touched by one thread. Reservations are never removed from the
+ * wheel before they expire. A reservation that has been bought or released is dropped when its slot is visited.
+ */
+final class ReservationWheel {
+    private static final int MAX_SLOTS = 1 << 16;
+
+    private final Reservation[] slots;
+    private final int mask;
+    private final long tickNanos;
+    private final long start;
+    private final Queue<Reservation> scheduled;
+    private long nextTick;
+
+    /**
+     * Constructor.
+     *
+     * @param timeToLive the time that the reservations live, in nanoseconds.
+     * @param tickNanos the length of a tick in nanoseconds. Reservations expire up to one tick late.
+     * @param start the time of tick 0, from {@link System#nanoTime()}.
+     */
+    ReservationWheel(long timeToLive, long tickNanos, long start) {
+        long ticks = Math.min(MAX_SLOTS, Math.max(2, timeToLive / tickNanos + 1));
+        int numberOfSlots = Integer.highestOneBit((int) ticks - 1) << 1;
+
+        this.slots = new Reservation[numberOfSlots];
+        this.mask = numberOfSlots - 1;
+        this.tickNanos = tickNanos;
+        this.start = start;
+        this.scheduled = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Returns the tick when something that happens at the given time has happened.
+     *
+     * @param time the time, from {@link System#nanoTime()}.
+     * @return the first tick that starts at or after the time.
+     */
+    long tickOf(long time) {
+        return Math.max(0, (time - start + tickNanos - 1) / tickNanos);
+    }
+
+    /**
+     * Schedules a reservation to expire at its deadline tick.
+     *
+     * @param reservation the reservation.
+     */
+    void schedule(Reservation reservation) {
+        scheduled.add(reservation);
+    }
+
+    /**
+     * Expires the reservations that have a deadline at or before the given time. A reservation that can not be
+     * expired yet is tried again at the next tick.
+     *
+     * @param now the time, from {@link System#nanoTime()}.
+     * @param expiry called with each expired reservation, returns false if it should be tried again.
+     */
+    synchronized void expire(long now, Predicate<Reservation> expiry) {
+        long tick = Math.max(-1, (now - start) / tickNanos);
+        Reservation reservation;
+
+        while ((reservation = scheduled.poll()) != null) {
+            place(reservation);
+        }
+
+        // After a long pause every slot is visited once instead of once per missed tick.
+        long lastTick = Math.min(tick, nextTick + mask);
+
+        for (long current = nextTick; current <= lastTick; current++) {
+            int slot = (int) current & mask;
+            reservation = slots[slot];
+            slots[slot] = null;
+
+            while (reservation != null) {
+                Reservation next = reservation.next;
+
+                if (reservation.deadlineTick > tick) {
+                    link(reservation, slot);
+                } else if (!expiry.test(reservation)) {
+                    reservation.deadlineTick = tick + 1;
+                    link(reservation, (int) reservation.deadlineTick & mask);
+                } else {
+                    // The cart may still refer to the reservation, it must not keep the rest of the slot alive.
+                    reservation.next = null;
+                }
+
+                reservation = next;
+            }
+        }
+
+        nextTick = Math.max(nextTick, tick + 1);
+    }
+
+    private void place(Reservation reservation) {
+        reservation.deadlineTick = Math.max(reservation.deadlineTick, nextTick);
+        link(reservation, (int) reservation.deadlineTick & mask);
+    }
+
+    private void link(Reservation reservation, int slot) {
+        reservation.next = slots[slot];
+        slots[slot] = reservation;
+    }
+}
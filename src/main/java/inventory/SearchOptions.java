@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.util.Objects;
+
+/**
+ * An immutable description of how the words of a search string are matched and combined when searching for books.
+ *
+ * By default a word only matches the exact same word in a title or author. With prefix matching the last word of
+ * the search string also matches all words that starts with it, which is meant for search-as-you-type where the
+ * last word is still being typed. With edits every word also matches words that are a few insertions, deletions
+ * or substitutions away, so that "tolkein" finds "tolkien". Exact matches are always ranked above fuzzy matches.
+ */
+public class SearchOptions {
+
+    /**
+     * Enumerates the ways that the words of a search string can be combined.
+     */
+    public enum Operator {
+        /**
+         * A book must match all words, in either the title or the author.
+         */
+        AND,
+        /**
+         * A book must match at least one of the words, in either the title or the author.
+         */
+        OR
+    }
+
+    public static final int MAX_EDITS = 2;
+
+    public static final SearchOptions ALL_WORDS = new SearchOptions(Operator.AND);
+    public static final SearchOptions ANY_WORD = new SearchOptions(Operator.OR);
+
+    private final Operator operator;
+    private final boolean prefixMatching;
+    private final int maxEdits;
+
+    public SearchOptions(Operator operator) {
+        this(operator, false, 0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param operator decides if a book must match all words or at least one of them.
+     * @param prefixMatching true if the last word should match all words that starts with it.
+     * @param maxEdits the maximum number of edits between a word of the search string and a matching word.
+     *                 Must be between 0 and {@link #MAX_EDITS}. Short words allows fewer edits, words with less
+     *                 than three characters must always match exactly and words with less than six characters
+     *                 allows at most one edit.
+     */
+    public SearchOptions(Operator operator, boolean prefixMatching, int maxEdits) {
+        if (operator == null) {
+            throw new IllegalArgumentException("Operator must not be null");
+        }
+
+        if (maxEdits < 0 || maxEdits > MAX_EDITS) {
+            throw new IllegalArgumentException("Max edits must be between 0 and " + MAX_EDITS);
+        }
+
+        this.operator = operator;
+        this.prefixMatching = prefixMatching;
+        this.maxEdits = maxEdits;
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    public boolean isPrefixMatching() {
+        return prefixMatching;
+    }
+
+    public int getMaxEdits() {
+        return maxEdits;
+    }
+
+    /**
+     * Returns the number of edits that are allowed for a word of the search string.
+     *
+     * @param word the word.
+     * @return the maximum number of edits for the word.
+     */
+    int maxEditsFor(String word) {
+        int allowedForLength = word.length() < 3 ? 0 : word.length() < 6 ? 1 : 2;
+        return Math.min(maxEdits, allowedForLength);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+
+        SearchOptions other = (SearchOptions) obj;
+
+        return operator == other.operator
+                && prefixMatching == other.prefixMatching
+                && maxEdits == other.maxEdits;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(operator, prefixMatching, maxEdits);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The number of copies in stock of each book, addressed by the id of the book.
+ *
+ * The counts are kept in fixed size chunks of {@link AtomicIntegerArray}s, so the stock of a million books is four
+ * megabytes of primitive arrays instead of a million objects, and growing never copies the counts. Each count is
+ * changed with compare-and-set so changes of different books never contend and a count can never become negative.
+ * Only the single writer that adds books to the inventory may grow the counts.
+ */
+final class StockCounts {
+    private static final int CHUNK_BITS = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private volatile AtomicIntegerArray[] chunks;
+
+    StockCounts() {
+        this.chunks = new AtomicIntegerArray[0];
+    }
+
+    /**
+     * Makes room for the counts of the books with an id lower than size. Must be called by the single writer before
+     * the books are published.
+     *
+     * @param size the number of books.
+     */
+    void ensureCapacity(int size) {
+        AtomicIntegerArray[] current = chunks;
+        int neededChunks = (int) (((long) size + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+
+        if (neededChunks > current.length) {
+            AtomicIntegerArray[] grown = Arrays.copyOf(current, neededChunks);
+
+            for (int i = current.length; i < neededChunks; i++) {
+                grown[i] = new AtomicIntegerArray(CHUNK_SIZE);
+            }
+
+            chunks = grown;
+        }
+    }
+
+    int get(int id) {
+        return chunk(id).get(id & CHUNK_MASK);
+    }
+
+    void set(int id, int copies) {
+        chunk(id).set(id & CHUNK_MASK, copies);
+    }
+
+    void add(int id, int quantity) {
+        chunk(id).addAndGet(id & CHUNK_MASK, quantity);
+    }
+
+    /**
+     * Changes the count of a book. The count never becomes negative.
+     *
+     * @param id the id of the book.
+     * @param delta the change.
+     */
+    void adjust(int id, int delta) {
+        chunk(id).updateAndGet(id & CHUNK_MASK, copies -> Math.max(0, copies + delta));
+    }
+
+    /**
+     * Takes as many copies of a book as there are, up to quantity.
+     *
+     * @param id the id of the book.
+     * @param quantity the number of copies to take.
+     * @return the number of copies that were taken.
+     */
+    int take(int id, int quantity) {
+        AtomicIntegerArray chunk = chunk(id);
+        int index = id & CHUNK_MASK;
+        int copies = chunk.get(index);
+
+        while (!chunk.compareAndSet(index, copies, copies - Math.min(copies, quantity))) {
+            copies = chunk.get(index);
+        }
+
+        return Math.min(copies, quantity);
+    }
+
+    /**
+     * Takes quantity copies of a book if there are at least that many, otherwise nothing is taken.
+     *
+     * @param id the id of the book.
+     * @param quantity the number of copies to take.
+     * @return true if the copies were taken, false if there were too few copies in stock.
+     */
+    boolean takeAll(int id, int quantity) {
+        AtomicIntegerArray chunk = chunk(id);
+        int index = id & CHUNK_MASK;
+        int copies = chunk.get(index);
+
+        while (copies >= quantity) {
+            if (chunk.compareAndSet(index, copies, copies - quantity)) {
+                return true;
+            }
+            copies = chunk.get(index);
+        }
+
+        return false;
+    }
+
+    /**
+     * Takes one copy of a book if there is one.
+     *
+     * @param id the id of the book.
+     * @return true if a copy was taken, false if there were no copies in stock.
+     */
+    boolean takeOne(int id) {
+        AtomicIntegerArray chunk = chunk(id);
+        int index = id & CHUNK_MASK;
+        int copies = chunk.get(index);
+
+        while (copies > 0) {
+            if (chunk.compareAndSet(index, copies, copies - 1)) {
+                return true;
+            }
+            copies = chunk.get(index);
+        }
+
+        return false;
+    }
+
+    private AtomicIntegerArray chunk(int id) {
+        return chunks[id >>> CHUNK_BITS];
+    }
+}
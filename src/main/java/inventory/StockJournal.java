@@ -0,0 +1,397 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of the changes to the number of copies in stock of the books in an inventory.
+ *
+ * Each change is given a sequence number and is written to the end of the journal file. Changes are not written
+ * and flushed to disk one at a time. A flusher thread writes all changes that were appended since the previous
+ * flush with one write and one fsync, so threads that wait for their changes to become durable at the same time
+ * share a single flush. This is usually called group commit.
+ *
+ * A record is stored as its length, a CRC32 checksum and the sequence number, the change and the book.
+ * A record at the end of the file that was only partly written before a crash fails the checksum and is discarded
+ * when the journal is opened.
+ */
+final class StockJournal implements Closeable {
+    private static final int RECORD_HEADER_LENGTH = 2 * Integer.BYTES;
+
+    private final Path file;
+    private final Object fileLock;
+    private final Thread flusher;
+    private FileChannel channel;
+    private ByteArrayOutputStream pending;
+    private ByteArrayOutputStream writing;
+    private long lastSequence;
+    private long durableSequence;
+    private IOException failure;
+    private boolean closed;
+
+    private StockJournal(Path file, FileChannel channel, long lastSequence) {
+        this.file = file;
+        this.fileLock = new Object();
+        this.channel = channel;
+        this.pending = new ByteArrayOutputStream();
+        this.writing = new ByteArrayOutputStream();
+        this.lastSequence = lastSequence;
+        this.durableSequence = lastSequence;
+        this.flusher = new Thread(this::flushUntilClosed, "stock-journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Receives the changes of a journal when it is opened.
+     */
+    @FunctionalInterface
+    interface Replay {
+        /**
+         * Called once for each change, in the order the changes were appended.
+         *
+         * @param book the book.
+         * @param delta the change to the number of copies in stock. Negative when copies were bought.
+         */
+        void apply(Book book, int delta);
+    }
+
+    /**
+     * Opens a journal, replays the changes in it and then accepts new changes. The file is created if it does
+     * not exist.
+     *
+     * @param file the journal file.
+     * @param afterSequence only the changes with a higher sequence number than this are replayed, the earlier
+     *                      changes are already part of the inventory.
+     * @param replay receives the changes that are replayed.
+     * @return the journal.
+     * @throws IOException if the journal could not be read or opened.
+     */
+    static StockJournal open(Path file, long afterSequence, Replay replay) throws IOException {
+        long lastSequence = afterSequence;
+        long validLength = 0;
+
+        if (Files.exists(file)) {
+            long fileLength = Files.size(file);
+
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                byte[] record;
+
+                while ((record = readRecord(in, fileLength - validLength)) != null) {
+                    ByteBuffer buffer = ByteBuffer.wrap(record);
+                    long sequence = buffer.getLong();
+                    int delta = buffer.getInt();
+
+                    if (sequence > lastSequence) {
+                        replay.apply(readBook(buffer), delta);
+                        lastSequence = sequence;
+                    }
+
+                    validLength += RECORD_HEADER_LENGTH + record.length;
+                }
+            }
+        }
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // Drops a record that was only partly written when the process stopped.
+        channel.truncate(validLength);
+        channel.position(validLength);
+
+        return new StockJournal(file, channel, lastSequence);
+    }
+
+    /**
+     * Appends a change. The change is written to the journal file in the background,
+     * use {@link #awaitDurable(long)} to wait until it has been flushed to disk.
+     *
+     * @param book the book.
+     * @param delta the change to the number of copies in stock.
+     * @return the sequence number of the change.
+     * @throws UncheckedIOException if the journal could not be written.
+     */
+    synchronized long append(Book book, int delta) {
+        checkFailure();
+
+        if (closed) {
+            throw new IllegalStateException("The journal is closed");
+        }
+
+        try {
+            ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+            DataOutputStream record = new DataOutputStream(recordBytes);
+            record.writeLong(lastSequence + 1);
+            record.writeInt(delta);
+            BinaryStrings.write(record, book.getTitle());
+            BinaryStrings.write(record, book.getAuthor());
+            BinaryStrings.write(record, book.getPrice() == null ? null : book.getPrice().toString());
+
+            DataOutputStream out = new DataOutputStream(pending);
+            out.writeInt(recordBytes.size());
+            out.writeInt(checksum(recordBytes.toByteArray()));
+            recordBytes.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        lastSequence++;
+        notifyAll();
+
+        return lastSequence;
+    }
+
+    /**
+     * Waits until a change, and all changes before it, have been flushed to disk.
+     *
+     * @param sequence the sequence number of the change.
+     * @throws UncheckedIOException if the journal could not be written or the thread was interrupted.
+     */
+    synchronized void awaitDurable(long sequence) {
+        while (durableSequence < sequence) {
+            checkFailure();
+
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UncheckedIOException(new InterruptedIOException("Interrupted while waiting for the journal"));
+            }
+        }
+    }
+
+    /**
+     * Returns the sequence number of the last change that was appended.
+     *
+     * @return the sequence number.
+     */
+    synchronized long lastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Returns true if a change will never be flushed to disk, because the journal could not be written before the
+     * change was flushed. A lost change is not replayed when the journal is opened again.
+     *
+     * @param sequence the sequence number of the change.
+     * @return true if the change is lost.
+     */
+    synchronized boolean isLost(long sequence) {
+        return failure != null && sequence > durableSequence;
+    }
+
+    /**
+     * Removes the changes that are part of a snapshot of the inventory from the journal file. The changes that
+     * comes after them are kept. Changes can be appended while the file is rewritten.
+     *
+     * @param sequence the sequence number of the last change that is part of the snapshot.
+     * @throws IOException if the journal file could not be rewritten.
+     */
+    void truncate(long sequence) throws IOException {
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+        synchronized (fileLock) {
+            long remaining = Files.size(file);
+
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+                 FileChannel out = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                         StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                byte[] record;
+
+                while ((record = readRecord(in, remaining)) != null) {
+                    remaining -= RECORD_HEADER_LENGTH + record.length;
+
+                    if (ByteBuffer.wrap(record).getLong() > sequence) {
+                        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+                        header.putInt(record.length).putInt(checksum(record)).flip();
+                        writeFully(out, header);
+                        writeFully(out, ByteBuffer.wrap(record));
+                    }
+                }
+
+                out.force(true);
+            }
+
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory(file);
+            channel.close();
+            channel = FileChannel.open(file, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        }
+    }
+
+    /**
+     * Flushes the directory of a file to disk, so a file that was moved into it is still there after a crash.
+     *
+     * @param file the file.
+     * @throws IOException if the directory could not be flushed.
+     */
+    static void forceDirectory(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (AccessDeniedException e) {
+            // Directories can not be opened on some platforms, like Windows, where a move can not be flushed.
+        }
+    }
+
+    /**
+     * Flushes the changes that have been appended and closes the journal.
+     *
+     * @throws IOException if the changes could not be flushed or the journal file could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing the journal");
+        }
+
+        synchronized (fileLock) {
+            channel.close();
+        }
+
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private void flushUntilClosed() {
+        while (true) {
+            long sequence;
+            ByteArrayOutputStream batch;
+
+            synchronized (this) {
+                while (pending.size() == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // Only close stops the flusher so that no appended change is lost.
+                    }
+                }
+
+                if (pending.size() == 0) {
+                    return;
+                }
+
+                batch = pending;
+                pending = writing;
+                writing = batch;
+                sequence = lastSequence;
+            }
+
+            try {
+                synchronized (fileLock) {
+                    writeFully(channel, ByteBuffer.wrap(batch.toByteArray()));
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                return;
+            }
+
+            batch.reset();
+
+            synchronized (this) {
+                durableSequence = sequence;
+                notifyAll();
+            }
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new UncheckedIOException("The journal could not be written", failure);
+        }
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @param remaining the number of bytes from the record to the end of the file.
+     * @return the record without the header, or null at the end of the journal or at a record that was only
+     *         partly written.
+     */
+    private static byte[] readRecord(DataInputStream in, long remaining) throws IOException {
+        try {
+            int length = in.readInt();
+            int checksum = in.readInt();
+
+            if (length < 0 || length > remaining - RECORD_HEADER_LENGTH) {
+                return null;
+            }
+
+            byte[] record = new byte[length];
+            in.readFully(record);
+
+            return checksum(record) == checksum ? record : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static int checksum(byte[] record) {
+        CRC32 checksum = new CRC32();
+        checksum.update(record, 0, record.length);
+        return (int) checksum.getValue();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static Book readBook(ByteBuffer in) throws IOException {
+        String title = BinaryStrings.read(in);
+        String author = BinaryStrings.read(in);
+        String price = BinaryStrings.read(in);
+        return new Book(title, author, price == null ? null : new BigDecimal(price));
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import static util.Print.flush;
+import static util.Print.print;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reserves copies of books in an {@link IndexedBookList} while they are in a shopping cart, so a customer knows when
+ * a book is added to the cart whether it can be bought and checking out can not fail for the reserved copies.
+ *
+ * A reserved copy is taken out of the stock and can not be bought by anyone else. A reservation that has not been
+ * bought or released when its time to live has passed expires and the copy is given back to the stock. The
+ * reservations are expired by a background thread with a {@link ReservationWheel}, so buying and releasing a
+ * reservation only changes its state and the wheel drops it when its time comes.
+ *
+ * A copy that has expired can still be bought if it is in stock at checkout.
+ */
+public class StockReservations implements Closeable {
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final IndexedBookList bookList;
+    private final long timeToLive;
+    private final ReservationWheel wheel;
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Constructor. Starts the background thread that expires the reservations.
+     *
+     * @param bookList the book list to reserve copies in.
+     * @param timeToLive the time that a reservation lives.
+     * @param unit the unit of the time to live.
+     */
+    public StockReservations(IndexedBookList bookList, long timeToLive, TimeUnit unit) {
+        if (timeToLive <= 0) {
+            throw new IllegalArgumentException("Time to live must be a positive number {1, 2, 3...}");
+        }
+
+        this.bookList = bookList;
+        this.timeToLive = unit.toNanos(timeToLive);
+        this.wheel = new ReservationWheel(this.timeToLive, TICK_NANOS, System.nanoTime());
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reservation-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.scheduleAtFixedRate(this::expireInBackground, TICK_NANOS, TICK_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Reserves a copy of a book.
+     *
+     * @param book the book to reserve a copy of.
+     * @return the reservation, or null if the book does not exist or is not in stock.
+     */
+    public Reservation reserve(Book book) {
+        int bookId = bookList.reserve(book);
+
+        if (bookId < 0) {
+            return null;
+        }
+
+        Reservation reservation = new Reservation(book, bookId, wheel.tickOf(System.nanoTime() + timeToLive));
+        wheel.schedule(reservation);
+
+        return reservation;
+    }
+
+    /**
+     * Gives the reserved copy back to the stock, unless it has already been bought or given back.
+     *
+     * @param reservation the reservation.
+     */
+    public void release(Reservation reservation) {
+        if (reservation.changeState(Reservation.RESERVED, Reservation.RELEASED)) {
+            bookList.release(reservation.getBookId());
+        }
+    }
+
+    /**
+     * Buys all of the books or none of them, see {@link IndexedBookList#buyAll(Book...)}. The books that have a
+     * reservation are bought from the reserved copies, the others and those whose reservation has expired are bought
+     * from the stock. If the purchase fails the reservations are kept.
+     *
+     * @param books the books to buy.
+     * @param reservations the reservation of each book, null for the books that are not reserved.
+     * @return an array with a status for each book, see {@link IndexedBookList#buyAll(Book...)}.
+     */
+    public int[] buyAll(Book[] books, Reservation[] reservations) {
+        boolean[] reserved = new boolean[books.length];
+
+        for (int i = 0; i < books.length; i++) {
+            reserved[i] = reservations[i] != null && reservations[i].changeState(Reservation.RESERVED,
+                    Reservation.CLAIMED);
+        }
+
+        boolean bought = false;
+
+        try {
+            int[] result = bookList.buyAll(books, reserved);
+            bought = result.length > 0 && result[0] == BuyResult.OK.toValue();
+            return result;
+        } finally {
+            // A purchase that could not be written to the journal gives back the reserved copies, so they are
+            // reserved again.
+            for (int i = 0; i < books.length; i++) {
+                if (reserved[i]) {
+                    reservations[i].changeState(Reservation.CLAIMED,
+                            bought ? Reservation.BOUGHT : Reservation.RESERVED);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops expiring reservations. The reservations that have not been bought or released keep their copies.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Expires the reservations that had expired at the given time.
+     *
+     * @param now the time, from {@link System#nanoTime()}.
+     */
+    void expire(long now) {
+        wheel.expire(now, this::expire);
+    }
+
+    private boolean expire(Reservation reservation) {
+        while (true) {
+            int state = reservation.getState();
+
+            if (state != Reservation.RESERVED) {
+                // A reservation that is being bought is tried again since the purchase may fail.
+                return state != Reservation.CLAIMED;
+            }
+
+            if (reservation.changeState(Reservation.RESERVED, Reservation.RELEASED)) {
+                bookList.release(reservation.getBookId());
+                return true;
+            }
+        }
+    }
+
+    private void expireInBackground() {
+        try {
+            expire(System.nanoTime());
+        } catch (RuntimeException e) {
+            // A failure must not stop the reservations from expiring later.
+            print("Could not expire the stock reservations: ", String.valueOf(e));
+            flush();
+        }
+    }
+}
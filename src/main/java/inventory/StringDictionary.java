@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps equal strings to one canonical instance so that a value that appears in many rows of an inventory,
+ * such as the name of an author with hundreds of titles, is only kept once in memory.
+ *
+ * Unlike {@link String#intern()} the strings are only held for as long as the dictionary is used, which is
+ * typically while one inventory is loaded. The dictionary is thread safe.
+ */
+final class StringDictionary {
+    private final Map<String, String> strings;
+
+    StringDictionary() {
+        this.strings = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns the canonical instance of a string.
+     *
+     * @param string the string. May be null.
+     * @return the first instance that was passed to this method that is equal to the string.
+     */
+    String canonical(String string) {
+        if (string == null) {
+            return null;
+        }
+
+        String existing = strings.putIfAbsent(string, string);
+        return existing == null ? string : existing;
+    }
+}
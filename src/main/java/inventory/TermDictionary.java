@@ -0,0 +1,554 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A sorted dictionary from words to their {@link Postings} that supports exact, prefix and fuzzy lookups.
+ *
+ * Most words are kept in an immutable sorted segment where the characters of all words are stored back to back
+ * in a single char array, which takes a fraction of the memory of a hash map with one String key per word.
+ * New words are first added to a small concurrent sorted map and are merged into a new sorted segment when that
+ * map has grown to a sixteenth of the segment. The segment and the map are published together, and never contain
+ * the same word, so a reader always sees every word that was added before the lookup started exactly once.
+ *
+ * Like the rest of the index there may only be one writer at a time but any number of readers that do not lock.
+ */
+final class TermDictionary {
+    private static final int MIN_MERGE_SIZE = 1024;
+    private static final int MERGE_FRACTION = 16;
+
+    private volatile State state;
+    private int newTerms;
+
+    TermDictionary() {
+        this(Segment.EMPTY);
+    }
+
+    private TermDictionary(Segment segment) {
+        this.state = new State(segment, new ConcurrentSkipListMap<>());
+    }
+
+    /**
+     * Reads a dictionary that was written by {@link #write(DataOutput)}.
+     *
+     * @param in the buffer to read from, positioned at the dictionary.
+     * @param numberOfBooks the number of books, all ids in the postings must be lower than this.
+     * @return the dictionary.
+     * @throws IOException if the dictionary is corrupt.
+     */
+    static TermDictionary read(ByteBuffer in, int numberOfBooks) throws IOException {
+        return new TermDictionary(Segment.read(in, numberOfBooks));
+    }
+
+    /**
+     * A visitor that receives the postings of the words that matches a lookup.
+     */
+    @FunctionalInterface
+    interface Visitor {
+        /**
+         * Called once for each matching word.
+         *
+         * @param postings the postings of the word.
+         * @param distance the number of edits between the searched word and the matching word,
+         *                 always 0 for exact and prefix lookups.
+         */
+        void visit(Postings postings, int distance);
+    }
+
+    /**
+     * Returns the postings of a word.
+     *
+     * @param term the word.
+     * @return the postings or null if the word is not in the dictionary.
+     */
+    Postings get(String term) {
+        State current = state;
+        Postings postings = current.newTerms.get(term);
+
+        if (postings == null) {
+            int index = current.segment.indexOf(term);
+            postings = index >= 0 ? current.segment.postings[index] : null;
+        }
+
+        return postings;
+    }
+
+    /**
+     * Returns the postings of a word and adds the word if it is not already in the dictionary.
+     * The caller must make sure that there is only one writer at a time.
+     *
+     * @param term the word.
+     * @return the postings of the word.
+     */
+    Postings getOrAdd(String term) {
+        Postings postings = get(term);
+
+        if (postings == null) {
+            postings = new Postings();
+            state.newTerms.put(term, postings);
+            newTerms++;
+
+            if (newTerms >= Math.max(MIN_MERGE_SIZE, state.segment.size() / MERGE_FRACTION)) {
+                merge();
+            }
+        }
+
+        return postings;
+    }
+
+    /**
+     * Adds many words that are not already in the dictionary. The words are merged into the sorted segment
+     * together with the other new words in a single pass, so the cost of the merge is shared by the whole batch
+     * and later lookups of the words are binary searches instead of lookups in the map of new words.
+     * The caller must make sure that there is only one writer at a time.
+     *
+     * @param terms the words and their postings, none of which may already be in the dictionary.
+     */
+    void addAll(SortedMap<String, Postings> terms) {
+        if (terms.isEmpty()) {
+            return;
+        }
+
+        State current = state;
+        SortedMap<String, Postings> merged = new TreeMap<>(terms);
+        merged.putAll(current.newTerms);
+        state = new State(Segment.merge(current.segment, merged), new ConcurrentSkipListMap<>());
+        newTerms = 0;
+    }
+
+    /**
+     * Writes all words and their postings. The new words are merged into the sorted segment first so that the
+     * dictionary is written as one sorted array. The caller must make sure that there is only one writer at a time.
+     *
+     * @param out the output to write to.
+     * @throws IOException if the dictionary could not be written.
+     */
+    void write(DataOutput out) throws IOException {
+        if (!state.newTerms.isEmpty()) {
+            merge();
+        }
+
+        state.segment.write(out);
+    }
+
+    /**
+     * Visits all words that starts with the prefix.
+     *
+     * @param prefix the prefix.
+     * @param visitor the visitor that receives the postings of the matching words.
+     */
+    void forEachWithPrefix(String prefix, Visitor visitor) {
+        State current = state;
+        Segment segment = current.segment;
+
+        for (int i = segment.lowerBound(prefix); i < segment.size() && segment.startsWith(i, prefix); i++) {
+            visitor.visit(segment.postings[i], 0);
+        }
+
+        for (Map.Entry<String, Postings> entry : current.newTerms.tailMap(prefix).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+
+            visitor.visit(entry.getValue(), 0);
+        }
+    }
+
+    /**
+     * Visits all words that are at most maxEdits insertions, deletions or substitutions from the term.
+     *
+     * The sorted words are walked like a trie: the rows of the Levenshtein matrix are kept for the prefix that a
+     * word shares with the previous word, and as soon as no row value for a prefix is within maxEdits all words
+     * with that prefix are skipped with a binary search.
+     *
+     * @param term the word to match.
+     * @param maxEdits the maximum number of edits.
+     * @param visitor the visitor that receives the postings and the distance of the matching words.
+     */
+    void forEachWithinDistance(String term, int maxEdits, Visitor visitor) {
+        State current = state;
+        Segment segment = current.segment;
+        int[][] rows = new int[segment.maxLength + 1][term.length() + 1];
+
+        for (int j = 0; j <= term.length(); j++) {
+            rows[0][j] = j;
+        }
+
+        int computedDepth = 0;
+        int i = 0;
+
+        while (i < segment.size()) {
+            int start = segment.offsets[i];
+            int length = segment.offsets[i + 1] - start;
+            int depth = Math.min(computedDepth, segment.commonPrefixLength(i));
+            boolean pruned = false;
+
+            while (depth < length && !pruned) {
+                pruned = nextRow(rows[depth], rows[depth + 1], term, segment.chars[start + depth], depth + 1,
+                        maxEdits);
+                depth++;
+            }
+
+            computedDepth = depth;
+
+            if (pruned) {
+                // No word that starts with these characters can be within maxEdits.
+                i = segment.skipPrefix(i, depth);
+            } else {
+                int distance = rows[length][term.length()];
+
+                if (distance <= maxEdits) {
+                    visitor.visit(segment.postings[i], distance);
+                }
+
+                i++;
+            }
+        }
+
+        for (Map.Entry<String, Postings> entry : current.newTerms.entrySet()) {
+            int distance = distance(entry.getKey(), term, maxEdits);
+
+            if (distance <= maxEdits) {
+                visitor.visit(entry.getValue(), distance);
+            }
+        }
+    }
+
+    /**
+     * Computes the next row of the Levenshtein matrix.
+     *
+     * @return true if no value in the row is within maxEdits.
+     */
+    private static boolean nextRow(int[] previous, int[] next, String term, char c, int depth, int maxEdits) {
+        next[0] = depth;
+        int smallest = depth;
+
+        for (int j = 1; j <= term.length(); j++) {
+            int substitution = previous[j - 1] + (term.charAt(j - 1) == c ? 0 : 1);
+            next[j] = Math.min(substitution, Math.min(previous[j], next[j - 1]) + 1);
+            smallest = Math.min(smallest, next[j]);
+        }
+
+        return smallest > maxEdits;
+    }
+
+    private static int distance(String word, String term, int maxEdits) {
+        int[] previous = new int[term.length() + 1];
+        int[] next = new int[term.length() + 1];
+
+        for (int j = 0; j <= term.length(); j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 0; i < word.length(); i++) {
+            if (nextRow(previous, next, term, word.charAt(i), i + 1, maxEdits)) {
+                return maxEdits + 1;
+            }
+
+            int[] swap = previous;
+            previous = next;
+            next = swap;
+        }
+
+        return previous[term.length()];
+    }
+
+    private void merge() {
+        State current = state;
+        Segment merged = Segment.merge(current.segment, current.newTerms);
+        state = new State(merged, new ConcurrentSkipListMap<>());
+        newTerms = 0;
+    }
+
+    /**
+     * The segment and the map of new words that together hold all words of the dictionary.
+     */
+    private static final class State {
+        private final Segment segment;
+        private final ConcurrentSkipListMap<String, Postings> newTerms;
+
+        private State(Segment segment, ConcurrentSkipListMap<String, Postings> newTerms) {
+            this.segment = segment;
+            this.newTerms = newTerms;
+        }
+    }
+
+    /**
+     * An immutable sorted array of words. Word i is stored in chars from offsets[i] to offsets[i + 1].
+     */
+    private static final class Segment {
+        private static final Segment EMPTY = new Segment(new char[0], new int[] {0}, new Postings[0], 0);
+
+        private final char[] chars;
+        private final int[] offsets;
+        private final Postings[] postings;
+        private final int maxLength;
+
+        private Segment(char[] chars, int[] offsets, Postings[] postings, int maxLength) {
+            this.chars = chars;
+            this.offsets = offsets;
+            this.postings = postings;
+            this.maxLength = maxLength;
+        }
+
+        private static Segment merge(Segment segment, SortedMap<String, Postings> newTerms) {
+            int size = segment.size() + newTerms.size();
+            int numberOfChars = segment.chars.length;
+
+            for (String term : newTerms.keySet()) {
+                numberOfChars += term.length();
+            }
+
+            char[] chars = new char[numberOfChars];
+            int[] offsets = new int[size + 1];
+            Postings[] postings = new Postings[size];
+            int maxLength = segment.maxLength;
+
+            Iterator<Map.Entry<String, Postings>> newEntries = newTerms.entrySet().iterator();
+            Map.Entry<String, Postings> newEntry = newEntries.hasNext() ? newEntries.next() : null;
+            int oldIndex = 0;
+            int position = 0;
+
+            for (int i = 0; i < size; i++) {
+                offsets[i] = position;
+
+                if (newEntry != null && (oldIndex == segment.size() || segment.compare(oldIndex, newEntry.getKey()) > 0)) {
+                    String term = newEntry.getKey();
+                    term.getChars(0, term.length(), chars, position);
+                    position += term.length();
+                    maxLength = Math.max(maxLength, term.length());
+                    postings[i] = newEntry.getValue();
+                    newEntry = newEntries.hasNext() ? newEntries.next() : null;
+                } else {
+                    int start = segment.offsets[oldIndex];
+                    int length = segment.offsets[oldIndex + 1] - start;
+                    System.arraycopy(segment.chars, start, chars, position, length);
+                    position += length;
+                    postings[i] = segment.postings[oldIndex];
+                    oldIndex++;
+                }
+            }
+
+            offsets[size] = position;
+
+            return new Segment(chars, offsets, postings, maxLength);
+        }
+
+        private static Segment read(ByteBuffer in, int numberOfBooks) throws IOException {
+            int size = in.getInt();
+            int maxLength = in.getInt();
+            int numberOfChars = in.getInt();
+
+            // Each word has an offset of four bytes and postings of at least twelve bytes.
+            if (size < 0 || size > in.remaining() / (4 * Integer.BYTES) || numberOfChars < 0
+                    || numberOfChars > in.remaining() / Character.BYTES) {
+                throw new IOException("A dictionary can not have " + size + " words and " + numberOfChars
+                        + " characters");
+            }
+
+            char[] chars = new char[numberOfChars];
+            int[] offsets = new int[size + 1];
+            Postings[] postings = new Postings[size];
+
+            in.asCharBuffer().get(chars);
+            in.position(in.position() + chars.length * Character.BYTES);
+
+            if (offsets.length > in.remaining() / Integer.BYTES) {
+                throw new IOException("The offsets of a dictionary with " + size + " words are truncated");
+            }
+
+            in.asIntBuffer().get(offsets);
+            in.position(in.position() + offsets.length * Integer.BYTES);
+
+            if (offsets[0] != 0 || offsets[size] != chars.length) {
+                throw new IOException("The words of a dictionary can not span " + offsets[0] + " to " + offsets[size]
+                        + " of " + chars.length + " characters");
+            }
+
+            for (int i = 0; i < size; i++) {
+                int length = offsets[i + 1] - offsets[i];
+
+                if (length < 0 || length > maxLength) {
+                    throw new IOException("A word can not have " + length + " characters when the longest word has "
+                            + maxLength);
+                }
+
+                postings[i] = Postings.read(in, numberOfBooks);
+            }
+
+            return new Segment(chars, offsets, postings, maxLength);
+        }
+
+        private void write(DataOutput out) throws IOException {
+            out.writeInt(size());
+            out.writeInt(maxLength);
+            out.writeInt(chars.length);
+
+            for (char c : chars) {
+                out.writeChar(c);
+            }
+
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+
+            for (Postings wordPostings : postings) {
+                wordPostings.write(out);
+            }
+        }
+
+        private int size() {
+            return postings.length;
+        }
+
+        private int indexOf(String term) {
+            int index = lowerBound(term);
+            return index < size() && compare(index, term) == 0 ? index : -1;
+        }
+
+        /**
+         * Returns the index of the first word that is greater than or equal to the term.
+         */
+        private int lowerBound(String term) {
+            int low = 0;
+            int high = size();
+
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+
+                if (compare(middle, term) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            return low;
+        }
+
+        private int compare(int index, String term) {
+            int start = offsets[index];
+            int length = offsets[index + 1] - start;
+            int shortest = Math.min(length, term.length());
+
+            for (int i = 0; i < shortest; i++) {
+                int difference = chars[start + i] - term.charAt(i);
+
+                if (difference != 0) {
+                    return difference;
+                }
+            }
+
+            return length - term.length();
+        }
+
+        private boolean startsWith(int index, String prefix) {
+            int start = offsets[index];
+            int length = offsets[index + 1] - start;
+
+            if (length < prefix.length()) {
+                return false;
+            }
+
+            for (int i = 0; i < prefix.length(); i++) {
+                if (chars[start + i] != prefix.charAt(i)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Returns the number of leading characters that word index shares with the word before it.
+         */
+        private int commonPrefixLength(int index) {
+            if (index == 0) {
+                return 0;
+            }
+
+            int start = offsets[index];
+            int previousStart = offsets[index - 1];
+            int shortest = Math.min(offsets[index + 1] - start, start - previousStart);
+            int length = 0;
+
+            while (length < shortest && chars[start + length] == chars[previousStart + length]) {
+                length++;
+            }
+
+            return length;
+        }
+
+        /**
+         * Returns the index of the first word after index that does not start with the
+         * first prefixLength characters of word index.
+         */
+        private int skipPrefix(int index, int prefixLength) {
+            int start = offsets[index];
+            int low = index + 1;
+            int step = 1;
+
+            // The skipped words are usually few so gallop forward before the binary search.
+            while (low + step < size() && sharesPrefix(low + step, start, prefixLength)) {
+                low += step + 1;
+                step *= 2;
+            }
+
+            int high = Math.min(low + step, size());
+
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+
+                if (sharesPrefix(middle, start, prefixLength)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            return low;
+        }
+
+        private boolean sharesPrefix(int index, int prefixStart, int prefixLength) {
+            int start = offsets[index];
+
+            if (offsets[index + 1] - start < prefixLength) {
+                return false;
+            }
+
+            for (int i = 0; i < prefixLength; i++) {
+                if (chars[start + i] != chars[prefixStart + i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.util.Arrays;
+
+/**
+ * Splits titles, authors and search strings into the lower case words that are used in the indexes.
+ *
+ * Words are separated by white space and punctuation. The input is read once, character by character, and the only
+ * allocations are the words themselves and the array that holds them. The same tokenizer is used when indexing and
+ * when searching so the words always match.
+ */
+final class Tokenizer {
+    private static final String[] NO_WORDS = new String[0];
+    private static final int ASCII = 128;
+    private static final boolean[] ASCII_SEPARATORS = new boolean[ASCII];
+
+    static {
+        for (char c = 0; c < ASCII; c++) {
+            ASCII_SEPARATORS[c] = isSeparator(c);
+        }
+    }
+
+    private Tokenizer() {
+
+    }
+
+    /**
+     * Splits the input into lower case words without punctuation.
+     *
+     * "With. Punctuation:Part II" becomes "with", "punctuation", "part" and "ii".
+     *
+     * @param input the string to split. May be null.
+     * @return the words in the order that they appear in the input.
+     */
+    static String[] tokenize(String input) {
+        if (input == null || input.isEmpty()) {
+            return NO_WORDS;
+        }
+
+        int length = input.length();
+        char[] lowerCase = new char[length];
+        String[] words = new String[Math.min(length / 2 + 1, 8)];
+        int numberOfWords = 0;
+        int wordStart = -1;
+
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? input.charAt(i) : ' ';
+            boolean separator = c < ASCII ? ASCII_SEPARATORS[c] : isSeparator(c);
+
+            if (separator) {
+                if (wordStart >= 0) {
+                    if (numberOfWords == words.length) {
+                        words = Arrays.copyOf(words, numberOfWords * 2);
+                    }
+
+                    words[numberOfWords++] = new String(lowerCase, wordStart, i - wordStart);
+                    wordStart = -1;
+                }
+            } else {
+                if (wordStart < 0) {
+                    wordStart = i;
+                }
+
+                lowerCase[i] = c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : Character.toLowerCase(c);
+            }
+        }
+
+        return numberOfWords == words.length ? words : Arrays.copyOf(words, numberOfWords);
+    }
+
+    /**
+     * Returns true for white space and for the characters that matches the regular expression \p{P}.
+     */
+    private static boolean isSeparator(char c) {
+        if (Character.isWhitespace(c)) {
+            return true;
+        }
+
+        switch (Character.getType(c)) {
+            case Character.CONNECTOR_PUNCTUATION:
+            case Character.DASH_PUNCTUATION:
+            case Character.START_PUNCTUATION:
+            case Character.END_PUNCTUATION:
+            case Character.INITIAL_QUOTE_PUNCTUATION:
+            case Character.FINAL_QUOTE_PUNCTUATION:
+            case Character.OTHER_PUNCTUATION:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
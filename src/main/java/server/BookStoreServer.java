@@ -0,0 +1,516 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package server;
+
+import static util.Print.flush;
+import static util.Print.print;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import inventory.Book;
+import inventory.BookList;
+import inventory.BuyResult;
+import inventory.SearchOptions;
+import inventory.StockReservations;
+import org.apache.commons.lang3.StringUtils;
+import shopping.Cart;
+import shopping.CartManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An embedded HTTP server that exposes a {@link BookList} and shopping carts as a JSON API. It is built on the
+ * HTTP server that is included in the JDK so it does not need anything else to run.
+ *
+ * <pre>
+ * GET  /books?q=&amp;all=&amp;offset=&amp;limit=               searches for books, or lists all books without q
+ * POST /books?title=&amp;author=&amp;price=&amp;quantity=       adds copies of a book to the inventory
+ * POST /buy?title=&amp;author=&amp;price=                    buys a copy of a book
+ * POST /carts                                         creates an empty cart and returns its id
+ * GET  /carts/{id}                                    returns the books in a cart
+ * POST /carts/{id}/books?title=&amp;author=&amp;price=       adds a book to a cart
+ * POST /carts/{id}/checkout                           buys all books in a cart or none, removes the cart if bought
+ * </pre>
+ *
+ * Parameters are read from the query string and, for POST requests, from a form encoded body. Errors are returned
+ * as an object with an error message and a 4xx or 5xx status. The message of a 500 Internal Server Error does not
+ * describe the failure, the failure is printed to the console instead.
+ *
+ * Carts are kept in memory by a {@link CartManager}. A cart that has not been used for 30 minutes is removed, and
+ * so is the least recently used cart when there are too many carts. If the server has {@link StockReservations} a
+ * copy of each book in a cart is reserved until the cart is checked out or removed.
+ *
+ * Requests are read by the thread that accepts the connections and are then handled by a fixed number of worker
+ * threads. Requests wait for a worker in a bounded queue and when the queue is full a request is answered with
+ * 503 Service Unavailable right away, so a burst of requests makes some clients retry instead of making all of
+ * them wait for longer and longer. The 503 responses are written by a thread of their own, so a slow client never
+ * holds up the thread that accepts the connections.
+ *
+ * Connections are kept alive between requests unless keep-alive is turned off. How long an idle connection is kept
+ * is decided by the JDK, see the sun.net.httpserver.idleInterval system property. The server turns on
+ * sun.net.httpserver.nodelay unless it has been set, otherwise the body of each response on a kept alive
+ * connection waits for the delayed acknowledgement of its headers, about 40 ms. Like all properties of the JDK's
+ * HTTP server it only has effect if it is set before the first server in the JVM is created.
+ */
+public class BookStoreServer implements Closeable {
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BODY_SIZE = 64 * 1024;
+    private static final int MAX_CARTS = 100000;
+    private static final int MAX_PENDING_REJECTIONS = 64;
+    private static final long CART_IDLE_MINUTES = 30;
+    private static final String CONTENT_TYPE = "application/json; charset=utf-8";
+    private static final String FORM_CONTENT_TYPE = "application/x-www-form-urlencoded";
+    private static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    private final BookList bookList;
+    private final boolean keepAlive;
+    private final CartManager carts;
+    private final ThreadPoolExecutor workers;
+    private final ThreadPoolExecutor rejections;
+    private final HttpServer server;
+    private final LongAdder rejectedRequests;
+
+    static {
+        if (System.getProperty(NO_DELAY_PROPERTY) == null) {
+            System.setProperty(NO_DELAY_PROPERTY, "true");
+        }
+    }
+
+    /**
+     * Creates a server. It does not accept any connections until it is started.
+     *
+     * @param bookList the inventory to serve.
+     * @param reservations the reservations of the inventory that the carts reserve copies with, or null if the carts
+     *                     should not reserve copies.
+     * @param address the address to listen to, port 0 picks a free port.
+     * @param workers the number of threads that handle requests.
+     * @param queueSize the number of requests that may wait for a worker before requests are rejected.
+     * @param keepAlive false if each connection should be closed after one request.
+     * @throws IOException if the server could not listen to the address.
+     */
+    public BookStoreServer(BookList bookList, StockReservations reservations, InetSocketAddress address, int workers,
+                           int queueSize, boolean keepAlive) throws IOException {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Workers must be a positive number {1, 2, 3...}");
+        }
+
+        if (queueSize < 0) {
+            throw new IllegalArgumentException("Queue size must be a natural number {0, 1, 2, 3...}");
+        }
+
+        BlockingQueue<Runnable> queue = queueSize == 0 ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(queueSize);
+        AtomicInteger threadNumber = new AtomicInteger();
+
+        this.bookList = bookList;
+        this.keepAlive = keepAlive;
+        this.carts = new CartManager(reservations, MAX_CARTS, CART_IDLE_MINUTES, TimeUnit.MINUTES);
+        this.rejectedRequests = new LongAdder();
+        this.workers = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS, queue,
+                runnable -> new Thread(runnable, "book-store-worker-" + threadNumber.incrementAndGet()));
+        this.rejections = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_PENDING_REJECTIONS),
+                runnable -> new Thread(runnable, "book-store-rejecter"));
+        this.server = HttpServer.create(address, 0);
+        this.server.createContext("/books", exchange -> dispatch(exchange, this::books));
+        this.server.createContext("/buy", exchange -> dispatch(exchange, this::buy));
+        this.server.createContext("/carts", exchange -> dispatch(exchange, this::carts));
+    }
+
+    /**
+     * Starts accepting connections.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Returns the port that the server listens to.
+     *
+     * @return the port.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Returns the number of requests that were answered with 503 since the server was created.
+     *
+     * @return the number of rejected requests.
+     */
+    public long getRejectedRequests() {
+        return rejectedRequests.sum();
+    }
+
+    /**
+     * Stops accepting connections and stops the workers. Requests that are being handled are completed.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        workers.shutdown();
+        rejections.shutdown();
+        carts.close();
+
+        try {
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+            rejections.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hands a request to a worker, or rejects it if all workers are busy and the queue is full. Called by the
+     * thread that accepts connections so it must not block, which writing the 503 response to a slow client could.
+     * If the thread that writes the 503 responses is also behind, the connection is closed without a response.
+     */
+    private void dispatch(HttpExchange exchange, Handler handler) {
+        try {
+            workers.execute(() -> handle(exchange, handler));
+        } catch (RejectedExecutionException e) {
+            rejectedRequests.increment();
+
+            try {
+                rejections.execute(() -> reject(exchange));
+            } catch (RejectedExecutionException busy) {
+                exchange.close();
+            }
+        }
+    }
+
+    private void reject(HttpExchange exchange) {
+        exchange.getResponseHeaders().set("Retry-After", "1");
+
+        try {
+            respond(exchange, error(HttpURLConnection.HTTP_UNAVAILABLE, "The server is busy, please try again later"));
+        } catch (IOException e) {
+            // The client has gone away, there is no one to tell.
+            exchange.close();
+        }
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) {
+        Response response;
+
+        try {
+            response = handler.handle(exchange, parameters(exchange));
+        } catch (IllegalArgumentException e) {
+            response = error(HttpURLConnection.HTTP_BAD_REQUEST, e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            // The details of the failure are logged, they are of no use to the client and may reveal internals.
+            print("Could not handle ", exchange.getRequestMethod(), " ", String.valueOf(exchange.getRequestURI()),
+                    ": ", String.valueOf(e));
+            flush();
+            response = error(HttpURLConnection.HTTP_INTERNAL_ERROR, "The request could not be handled");
+        }
+
+        try {
+            respond(exchange, response);
+        } catch (IOException e) {
+            // The client has gone away, there is no one to tell.
+            exchange.close();
+        }
+    }
+
+    private Response books(HttpExchange exchange, Map<String, String> parameters) {
+        if (!"/books".equals(exchange.getRequestURI().getPath())) {
+            return error(HttpURLConnection.HTTP_NOT_FOUND, "Not found");
+        }
+
+        Response response;
+
+        switch (exchange.getRequestMethod()) {
+            case "GET": {
+                int offset = intParameter(parameters, "offset", 0);
+                int limit = Math.min(intParameter(parameters, "limit", DEFAULT_PAGE_SIZE), MAX_PAGE_SIZE);
+                SearchOptions options = Boolean.parseBoolean(parameters.get("all")) ?
+                        SearchOptions.ALL_WORDS : SearchOptions.ANY_WORD;
+                Book[] books = bookList.list(parameters.get("q"), options, offset, limit);
+
+                StringBuilder json = new StringBuilder("{\"offset\":").append(offset).append(",\"books\":");
+                Json.appendBooks(json, Arrays.asList(books));
+                response = new Response(HttpURLConnection.HTTP_OK, json.append('}').toString());
+                break;
+            }
+            case "POST": {
+                Book book = bookParameter(parameters);
+                int quantity = intParameter(parameters, "quantity", 1);
+                bookList.add(book, quantity);
+
+                StringBuilder json = new StringBuilder("{\"book\":");
+                Json.appendBook(json, book);
+                json.append(",\"quantity\":").append(quantity).append('}');
+                response = new Response(HttpURLConnection.HTTP_CREATED, json.toString());
+                break;
+            }
+            default:
+                response = error(HttpURLConnection.HTTP_BAD_METHOD, "Method not allowed");
+        }
+
+        return response;
+    }
+
+    private Response buy(HttpExchange exchange, Map<String, String> parameters) {
+        if (!"/buy".equals(exchange.getRequestURI().getPath())) {
+            return error(HttpURLConnection.HTTP_NOT_FOUND, "Not found");
+        }
+
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            return error(HttpURLConnection.HTTP_BAD_METHOD, "Method not allowed");
+        }
+
+        BuyResult result = BuyResult.fromValue(bookList.buy(bookParameter(parameters))[0]);
+
+        return new Response(HttpURLConnection.HTTP_OK, "{\"result\":\"" + result.name() + "\"}");
+    }
+
+    private Response carts(HttpExchange exchange, Map<String, String> parameters) {
+        String[] path = StringUtils.split(exchange.getRequestURI().getPath(), '/');
+        String method = exchange.getRequestMethod();
+
+        if (path.length == 1 && "POST".equals(method)) {
+            String id = carts.create();
+
+            StringBuilder json = new StringBuilder("{\"id\":");
+            Json.appendString(json, id);
+            return new Response(HttpURLConnection.HTTP_CREATED, json.append('}').toString());
+        }
+
+        Cart cart = path.length > 1 ? carts.get(path[1]) : null;
+
+        if (cart == null) {
+            return error(HttpURLConnection.HTTP_NOT_FOUND, "Not found");
+        }
+
+        Response response;
+
+        if (path.length == 2 && "GET".equals(method)) {
+            response = cartContent(path[1], cart);
+        } else if (path.length == 3 && "books".equals(path[2]) && "POST".equals(method)) {
+            Book book = bookParameter(parameters);
+
+            synchronized (cart) {
+                cart.add(book);
+            }
+
+            response = cartContent(path[1], cart);
+        } else if (path.length == 3 && "checkout".equals(path[2]) && "POST".equals(method)) {
+            response = checkout(path[1], cart);
+        } else {
+            response = error(HttpURLConnection.HTTP_NOT_FOUND, "Not found");
+        }
+
+        return response;
+    }
+
+    private Response cartContent(String id, Cart cart) {
+        List<Book> books;
+        BigDecimal totalPrice;
+
+        synchronized (cart) {
+            books = cart.getContent();
+            totalPrice = cart.getTotalPrice();
+        }
+
+        StringBuilder json = new StringBuilder("{\"id\":");
+        Json.appendString(json, id);
+        json.append(",\"books\":");
+        Json.appendBooks(json, books);
+        json.append(",\"totalPrice\":").append(totalPrice.toPlainString()).append('}');
+
+        return new Response(HttpURLConnection.HTTP_OK, json.toString());
+    }
+
+    private Response checkout(String id, Cart cart) {
+        Book[] books;
+        int[] results;
+
+        // The cart is locked while it is bought so it is only checked out once. It is only removed when all books
+        // were bought, a cart that could not be bought keeps its books and reservations.
+        synchronized (cart) {
+            if (carts.get(id) != cart) {
+                return error(HttpURLConnection.HTTP_NOT_FOUND, "Not found");
+            }
+
+            books = cart.getContent().toArray(new Book[0]);
+            results = cart.buyAll(bookList);
+
+            if (results.length > 0 && results[0] == BuyResult.OK.toValue()) {
+                carts.remove(id, cart);
+            }
+        }
+        StringBuilder json = new StringBuilder("{\"results\":[");
+
+        for (int i = 0; i < books.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+
+            json.append("{\"book\":");
+            Json.appendBook(json, books[i]);
+            json.append(",\"result\":\"").append(BuyResult.fromValue(results[i]).name()).append("\"}");
+        }
+
+        return new Response(HttpURLConnection.HTTP_OK, json.append("]}").toString());
+    }
+
+    private void respond(HttpExchange exchange, Response response) throws IOException {
+        byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", CONTENT_TYPE);
+
+        if (!keepAlive) {
+            headers.set("Connection", "close");
+        }
+
+        exchange.sendResponseHeaders(response.status, body.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Map<String, String> parameters(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        addParameters(parameters, exchange.getRequestURI().getRawQuery());
+
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+
+        if ("POST".equals(exchange.getRequestMethod())
+                && (contentType == null || contentType.startsWith(FORM_CONTENT_TYPE))) {
+            addParameters(parameters, readBody(exchange));
+        }
+
+        return parameters;
+    }
+
+    private static void addParameters(Map<String, String> parameters, String encoded) throws IOException {
+        if (StringUtils.isEmpty(encoded)) {
+            return;
+        }
+
+        for (String parameter : StringUtils.split(encoded, '&')) {
+            int separator = parameter.indexOf('=');
+            String name = separator < 0 ? parameter : parameter.substring(0, separator);
+            String value = separator < 0 ? "" : parameter.substring(separator + 1);
+            parameters.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+
+        try (InputStream in = exchange.getRequestBody()) {
+            int read = in.read(buffer);
+
+            while (read != -1) {
+                body.write(buffer, 0, read);
+
+                if (body.size() > MAX_BODY_SIZE) {
+                    throw new IllegalArgumentException("The request body is larger than " + MAX_BODY_SIZE + " bytes");
+                }
+
+                read = in.read(buffer);
+            }
+        }
+
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static int intParameter(Map<String, String> parameters, String name, int defaultValue) {
+        String value = parameters.get(name);
+
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be an integer");
+        }
+    }
+
+    private static Book bookParameter(Map<String, String> parameters) {
+        String title = requiredParameter(parameters, "title");
+        String author = requiredParameter(parameters, "author");
+        String price = requiredParameter(parameters, "price");
+
+        try {
+            return new Book(title, author, new BigDecimal(price));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("price must be a number");
+        }
+    }
+
+    private static String requiredParameter(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+
+        if (value == null) {
+            throw new IllegalArgumentException(name + " is missing");
+        }
+
+        return value;
+    }
+
+    private static Response error(int status, String message) {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        Json.appendString(json, message);
+        return new Response(status, json.append('}').toString());
+    }
+
+    private interface Handler {
+        Response handle(HttpExchange exchange, Map<String, String> parameters) throws IOException;
+    }
+
+    private static final class Response {
+        private final int status;
+        private final String body;
+
+        private Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
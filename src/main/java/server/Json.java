@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package server;
+
+import inventory.Book;
+
+/**
+ * Writes the JSON documents that are returned by the {@link BookStoreServer}. The documents are small and have a
+ * fixed shape so they are written directly to a StringBuilder instead of through a general purpose library.
+ */
+final class Json {
+
+    private Json() {
+
+    }
+
+    /**
+     * Appends a book as an object with a title, an author and a price. The price is written as a number with the
+     * same scale as the price of the book, so it can be sent back to identify the book.
+     *
+     * @param json the document to append to.
+     * @param book the book.
+     */
+    static void appendBook(StringBuilder json, Book book) {
+        json.append("{\"title\":");
+        appendString(json, book.getTitle());
+        json.append(",\"author\":");
+        appendString(json, book.getAuthor());
+        json.append(",\"price\":").append(book.getPrice().toPlainString()).append('}');
+    }
+
+    /**
+     * Appends an array of books.
+     *
+     * @param json the document to append to.
+     * @param books the books.
+     */
+    static void appendBooks(StringBuilder json, Iterable<Book> books) {
+        json.append('[');
+        boolean first = true;
+
+        for (Book book : books) {
+            if (!first) {
+                json.append(',');
+            }
+
+            appendBook(json, book);
+            first = false;
+        }
+
+        json.append(']');
+    }
+
+    /**
+     * Appends a string with quotes and escapes, or null.
+     *
+     * @param json the document to append to.
+     * @param value the string, may be null.
+     */
+    static void appendString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+
+        json.append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+
+        json.append('"');
+    }
+}
@@ -7,7 +7,7 @@
  * "License"); you may not use this file except in compliance
  * with the License.  You may obtain a copy of the License at
  *
- *  http://www.apache.org/licenses/LICENSE-2.0
+ *   http://www.apache.org/licenses/LICENSE-2.0
  *
  * Unless required by applicable law or agreed to in writing,
  * software distributed under the License is distributed on an
@@ -15,40 +15,224 @@
  * KIND, either express or implied.  See the License for the
  * specific language governing permissions and limitations
  * under the License.
- *
  */
 
 package shopping;
 
 import inventory.Book;
+import inventory.BookList;
+import inventory.BuyResult;
+import inventory.Reservation;
+import inventory.StockReservations;
 
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A class that represents a users shopping cart.
+ *
+ * The cart keeps the number of copies of each book, in the order the books were first added, and the total price
+ * of all copies. Adding and removing a copy and getting the total price take the same time however many books there
+ * are in the cart. The total price is exact, it is the sum of the prices of the copies.
+ *
+ * If the cart is created with {@link StockReservations} a copy of each book that is added to the cart is reserved,
+ * and the copy is released when the book is removed from the cart.
+ *
+ * A cart is not thread safe.
  */
 public class Cart {
 
-    private List<Book> booksInCart;
+    private final StockReservations reservations;
+    private final Map<Book, Line> booksInCart;
+    private BigDecimal totalPrice;
+    private int numberOfBooks;
 
     public Cart() {
-        booksInCart = new ArrayList<>();
+        this(null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param reservations the reservations to reserve copies of the books in the cart with, or null if no copies
+     *                     should be reserved.
+     */
+    public Cart(StockReservations reservations) {
+        this.reservations = reservations;
+        this.booksInCart = new LinkedHashMap<>();
+        this.totalPrice = BigDecimal.ZERO;
     }
 
-    public void add(Book book) {
-        booksInCart.add(book);
+    /**
+     * Adds a copy of a book to the cart. The copy is added even if it could not be reserved.
+     *
+     * @param book the book.
+     * @return true if the copy was reserved.
+     */
+    public boolean add(Book book) {
+        Reservation reservation = reservations == null ? null : reservations.reserve(book);
+        Line line = booksInCart.get(book);
+
+        if (line == null) {
+            line = new Line();
+            booksInCart.put(book, line);
+        }
+
+        line.quantity++;
+
+        if (reservation != null) {
+            line.reservedCopies().add(reservation);
+        }
+
+        numberOfBooks++;
+
+        if (book.getPrice() != null) {
+            totalPrice = totalPrice.add(book.getPrice());
+        }
+
+        return reservation != null;
     }
 
+    /**
+     * Removes a copy of a book from the cart. A copy that is not reserved is removed before a reserved copy.
+     *
+     * @param book the book.
+     */
     public void remove(Book book) {
-        booksInCart.remove(book);
+        Line line = booksInCart.get(book);
+
+        if (line == null) {
+            return;
+        }
+
+        if (line.reservedCopies != null && line.reservedCopies.size() == line.quantity) {
+            reservations.release(line.reservedCopies.poll());
+        }
+
+        if (--line.quantity == 0) {
+            booksInCart.remove(book);
+        }
+
+        numberOfBooks--;
+
+        if (book.getPrice() != null) {
+            totalPrice = totalPrice.subtract(book.getPrice());
+        }
+    }
+
+    /**
+     * Removes all books from the cart and releases their reservations.
+     */
+    public void clear() {
+        for (Line line : booksInCart.values()) {
+            if (line.reservedCopies != null) {
+                line.reservedCopies.forEach(reservations::release);
+            }
+        }
+
+        booksInCart.clear();
+        numberOfBooks = 0;
+        totalPrice = BigDecimal.ZERO;
     }
 
+    /**
+     * Returns the books in the cart, one element for each copy.
+     *
+     * @return the books, in the order they were first added.
+     */
     public List<Book> getContent() {
-        return booksInCart;
+        List<Book> content = new ArrayList<>(numberOfBooks);
+
+        for (Map.Entry<Book, Line> entry : booksInCart.entrySet()) {
+            for (int i = 0; i < entry.getValue().quantity; i++) {
+                content.add(entry.getKey());
+            }
+        }
+
+        return content;
+    }
+
+    /**
+     * Returns the number of copies of a book in the cart.
+     *
+     * @param book the book.
+     * @return the number of copies, 0 if the book is not in the cart.
+     */
+    public int getQuantity(Book book) {
+        Line line = booksInCart.get(book);
+
+        return line == null ? 0 : line.quantity;
     }
 
-    public long getTotalPrice() {
-        return booksInCart.stream().mapToLong(book -> book.getPrice().longValue()).sum();
+    public int getNumberOfBooks() {
+        return numberOfBooks;
+    }
+
+    /**
+     * Returns the total price of all copies in the cart. Books without a price do not add to it.
+     *
+     * @return the total price.
+     */
+    public BigDecimal getTotalPrice() {
+        return totalPrice;
+    }
+
+    /**
+     * Buys all books in the cart or none of them and empties the cart if they were bought. The reserved copies are
+     * bought from the reservations.
+     *
+     * @param bookList the book list to buy from if the cart does not reserve copies.
+     * @return an array with a status for each book in {@link #getContent()}, see {@link BookList#buyAll(Book...)}.
+     */
+    public int[] buyAll(BookList bookList) {
+        Book[] books = new Book[numberOfBooks];
+        Reservation[] bookReservations = new Reservation[numberOfBooks];
+        int i = 0;
+
+        for (Map.Entry<Book, Line> entry : booksInCart.entrySet()) {
+            Line line = entry.getValue();
+            int reserved = i;
+
+            if (line.reservedCopies != null) {
+                for (Reservation reservation : line.reservedCopies) {
+                    bookReservations[reserved++] = reservation;
+                }
+            }
+
+            for (int copy = 0; copy < line.quantity; copy++) {
+                books[i++] = entry.getKey();
+            }
+        }
+
+        int[] results = reservations == null ? bookList.buyAll(books) : reservations.buyAll(books, bookReservations);
+
+        if (results.length > 0 && results[0] == BuyResult.OK.toValue()) {
+            booksInCart.clear();
+            numberOfBooks = 0;
+            totalPrice = BigDecimal.ZERO;
+        }
+
+        return results;
+    }
+
+    /**
+     * The copies of one book in the cart and the reservations of the copies that are reserved.
+     */
+    private static final class Line {
+        private int quantity;
+        private Deque<Reservation> reservedCopies;
+
+        private Deque<Reservation> reservedCopies() {
+            if (reservedCopies == null) {
+                reservedCopies = new ArrayDeque<>(1);
+            }
+
+            return reservedCopies;
+        }
     }
 }
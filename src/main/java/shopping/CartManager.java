@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package shopping;
+
+import static util.Print.flush;
+import static util.Print.print;
+
+import inventory.StockReservations;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the shopping carts of many concurrent sessions in memory, each identified by a random id.
+ *
+ * A cart that has not been used for the idle timeout is evicted by a background thread, and when there are more
+ * carts than the capacity the least recently used cart is evicted to make room for a new one. The reservations of
+ * an evicted cart are released.
+ *
+ * The carts are spread over several independently locked parts by the hash of the id. Each part keeps its carts in
+ * the order they were last used, so finding the idle carts only visits the carts that are evicted.
+ *
+ * Carts are not thread safe. A cart that is used by several threads must be synchronized on, which is what the
+ * cart manager does when it evicts a cart.
+ */
+public class CartManager implements Closeable {
+    private static final int MAX_STRIPES = 16;
+    private static final long SWEEP_PERIOD_MILLIS = 1000;
+
+    private final StockReservations reservations;
+    private final List<LinkedHashMap<String, Session>> stripes;
+    private final int stripeCapacity;
+    private final long idleTimeout;
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Constructor. Starts the background thread that evicts idle carts.
+     *
+     * @param reservations the reservations that the carts reserve copies with, or null if they should not reserve.
+     * @param capacity the maximum number of carts.
+     * @param idleTimeout the time that a cart is kept after it was last used.
+     * @param unit the unit of the idle timeout.
+     */
+    public CartManager(StockReservations reservations, int capacity, long idleTimeout, TimeUnit unit) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be a positive number {1, 2, 3...}");
+        }
+
+        if (idleTimeout <= 0) {
+            throw new IllegalArgumentException("Idle timeout must be a positive number {1, 2, 3...}");
+        }
+
+        int numberOfStripes = Math.min(MAX_STRIPES, capacity);
+
+        this.reservations = reservations;
+        this.stripes = new ArrayList<>(numberOfStripes);
+        this.stripeCapacity = capacity / numberOfStripes;
+        this.idleTimeout = unit.toNanos(idleTimeout);
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cart-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (int i = 0; i < numberOfStripes; i++) {
+            stripes.add(new LinkedHashMap<>(16, 0.75f, true));
+        }
+
+        this.executor.scheduleWithFixedDelay(this::evictIdleInBackground, SWEEP_PERIOD_MILLIS, SWEEP_PERIOD_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates an empty cart.
+     *
+     * @return the id of the cart.
+     */
+    public String create() {
+        String id = UUID.randomUUID().toString();
+        Map<String, Session> stripe = stripe(id);
+        Session evicted = null;
+
+        synchronized (stripe) {
+            stripe.put(id, new Session(new Cart(reservations), System.nanoTime()));
+
+            if (stripe.size() > stripeCapacity) {
+                Iterator<Session> eldest = stripe.values().iterator();
+                evicted = eldest.next();
+                eldest.remove();
+            }
+        }
+
+        if (evicted != null) {
+            clear(evicted.cart);
+        }
+
+        return id;
+    }
+
+    /**
+     * Returns a cart and marks it as used.
+     *
+     * @param id the id of the cart.
+     * @return the cart, or null if there is no cart with the id or it has been evicted.
+     */
+    public Cart get(String id) {
+        Map<String, Session> stripe = stripe(id);
+
+        synchronized (stripe) {
+            Session session = stripe.get(id);
+
+            if (session == null) {
+                return null;
+            }
+
+            session.lastUsed = System.nanoTime();
+
+            return session.cart;
+        }
+    }
+
+    /**
+     * Removes a cart, without releasing its reservations, if it has not already been removed.
+     *
+     * @param id the id of the cart.
+     * @param cart the cart.
+     * @return true if the cart was removed, false if it had already been removed or evicted.
+     */
+    public boolean remove(String id, Cart cart) {
+        Map<String, Session> stripe = stripe(id);
+
+        synchronized (stripe) {
+            Session session = stripe.get(id);
+
+            if (session == null || session.cart != cart) {
+                return false;
+            }
+
+            stripe.remove(id);
+
+            return true;
+        }
+    }
+
+    /**
+     * Returns the number of carts.
+     *
+     * @return the number of carts.
+     */
+    public int size() {
+        int size = 0;
+
+        for (Map<String, Session> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Stops evicting idle carts.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Evicts the carts that had been idle for longer than the idle timeout at the given time.
+     *
+     * @param now the time, from {@link System#nanoTime()}.
+     */
+    void evictIdle(long now) {
+        for (Map<String, Session> stripe : stripes) {
+            List<Cart> evicted = new ArrayList<>();
+
+            synchronized (stripe) {
+                Iterator<Session> sessions = stripe.values().iterator();
+
+                while (sessions.hasNext()) {
+                    Session session = sessions.next();
+
+                    if (now - session.lastUsed <= idleTimeout) {
+                        break;
+                    }
+
+                    evicted.add(session.cart);
+                    sessions.remove();
+                }
+            }
+
+            // The reservations are released outside of the stripe lock since a cart may be locked while it is used.
+            evicted.forEach(CartManager::clear);
+        }
+    }
+
+    private void evictIdleInBackground() {
+        try {
+            evictIdle(System.nanoTime());
+        } catch (RuntimeException e) {
+            // A failure must not stop the idle carts from being evicted later.
+            print("Could not evict the idle carts: ", String.valueOf(e));
+            flush();
+        }
+    }
+
+    private Map<String, Session> stripe(String id) {
+        int hash = id.hashCode();
+
+        return stripes.get(((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % stripes.size());
+    }
+
+    private static void clear(Cart cart) {
+        synchronized (cart) {
+            cart.clear();
+        }
+    }
+
+    /**
+     * A cart and the time it was last used. Only accessed while holding the lock of its stripe.
+     */
+    private static final class Session {
+        private final Cart cart;
+        private long lastUsed;
+
+        private Session(Cart cart, long lastUsed) {
+            this.cart = cart;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
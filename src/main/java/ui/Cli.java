@@ -20,27 +20,36 @@
 
 package ui;
 
+import static util.Print.flush;
 import static util.Print.print;
 
 import inventory.Book;
 import inventory.BookList;
 import inventory.BookInventoryDao;
-import inventory.BookInventoryParser;
 import inventory.BuyResult;
 import inventory.CsvBookInventoryParser;
 import inventory.HtmlBookListDao;
 import inventory.IndexedBookList;
+import inventory.InventoryRefresher;
+import inventory.SearchOptions;
+import inventory.StockReservations;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
+import server.BookStoreServer;
 import shopping.Cart;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The command line interface.
@@ -51,6 +60,8 @@ public class Cli {
     private static final String EXIT = "5";
     private static final String BUY_BOOK = "1";
     private static final String EXIT_BOOK_LIST_SUB_MENU = "2";
+    private static final String NEXT_PAGE = "3";
+    private static final String PREVIOUS_PAGE = "4";
     private static final String REMOVE_BOOK_FROM_CART = "1";
     private static final String BUY_ALL_BOOKS = "2";
     private static final String EXIT_CHECKOUT_SUB_MENU = "3";
@@ -59,6 +70,18 @@ public class Cli {
     private static final String SEARCH_FOR_BOOKS = "2";
     private static final String CHECKOUT = "3";
     private static final String ADMIN = "4";
+    private static final int PAGE_SIZE = 20;
+    private static final long REFRESH_PERIOD_MINUTES = 5;
+    private static final long RESERVATION_MINUTES = 15;
+    private static final String SERVE_OPTION = "--serve";
+    private static final int MAX_PORT = 65535;
+    private static final int SERVER_QUEUE_SIZE = 64;
+    private static final Path SNAPSHOT_FILE = Paths.get("bookstore.snapshot");
+    private static final Path JOURNAL_FILE = Paths.get("bookstore.journal");
+    private static final Path BASELINE_FILE = Paths.get("bookstore.baseline");
+    private static final long SNAPSHOT_MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final SearchOptions SEARCH_OPTIONS =
+            new SearchOptions(SearchOptions.Operator.AND, false, SearchOptions.MAX_EDITS);
 
     private static BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(System.in));
 
@@ -66,23 +89,63 @@ public class Cli {
 
     }
 
+    /**
+     * Starts the bookstore. Without arguments the bookstore is used from the console. With --serve and a port it is
+     * served over HTTP by a {@link BookStoreServer} instead, until the process is stopped.
+     *
+     * @param args nothing, or --serve and the port to listen to.
+     * @throws IOException if the inventory or the stock journal could not be read.
+     */
     public static void main(String[] args) throws IOException {
-        print("Loading data from ", BOOK_LIST_URL);
+        int port = -1;
+
+        if (args.length > 0) {
+            port = args.length == 2 && SERVE_OPTION.equals(args[0]) ? NumberUtils.toInt(args[1], -1) : -1;
+
+            if (port < 0 || port > MAX_PORT) {
+                print("Usage: java -jar tgba.jar [", SERVE_OPTION, " <port>]");
+                flush();
+                System.exit(1);
+            }
+        }
+
+        BookInventoryDao bookListDao = new HtmlBookListDao(new CsvBookInventoryParser());
+        IndexedBookList bookList = loadSnapshot(SNAPSHOT_FILE);
+        boolean loadedFromUrl = bookList == null;
+        InventoryRefresher refresher;
 
-        Cart cart = new Cart();
-        BookList bookList = new IndexedBookList();
-        BookInventoryParser bookInventoryParser = new CsvBookInventoryParser();
-        BookInventoryDao bookListDao = new HtmlBookListDao(bookInventoryParser);
-        Map<Book, Integer> bookData = null;
+        if (loadedFromUrl) {
+            bookList = new IndexedBookList();
+            refresher = new InventoryRefresher(bookList, bookListDao, BOOK_LIST_URL, BASELINE_FILE);
+            loadBookList(refresher);
+        } else {
+            // The inventory that the book list was last refreshed with is read from the baseline file. Without one
+            // the first refresh is compared with the copies in stock.
+            refresher = new InventoryRefresher(bookList, bookListDao, BOOK_LIST_URL, BASELINE_FILE);
+        }
 
         try {
-            bookData = bookListDao.bookInventory(BOOK_LIST_URL);
+            bookList.openJournal(JOURNAL_FILE);
         } catch (IOException e) {
-            print("Could not read the book data from URL ", BOOK_LIST_URL);
+            print("Could not open the stock journal ", JOURNAL_FILE.toString());
             throw e;
         }
 
-        bookData.forEach(bookList::add);
+        if (loadedFromUrl) {
+            writeSnapshot(bookList);
+        }
+
+        refresher.start(REFRESH_PERIOD_MINUTES, TimeUnit.MINUTES);
+
+        StockReservations reservations = new StockReservations(bookList, RESERVATION_MINUTES, TimeUnit.MINUTES);
+
+        if (port >= 0) {
+            serve(bookList, reservations, refresher, port);
+            return;
+        }
+
+        Cart cart = new Cart(reservations);
+
         print("Data loaded. Bookstore is running at maximum efficiency!");
         print("\nWelcome to the greatest bookstore around");
 
@@ -91,25 +154,20 @@ public class Cli {
 
         while (!StringUtils.equals(input, EXIT)) {
             printMenu();
-            input = bufferedReader.readLine();
+            input = readLine();
 
 
             switch (input) {
-                case LIST_ALL_BOOKS: {
-                    Book[] books = bookList.list(null);
-                    printBookList(books);
-                    bookListSubMenu(books, cart);
+                case LIST_ALL_BOOKS:
+                    bookListSubMenu(bookList, null, cart);
                     break;
-                }
                 case SEARCH_FOR_BOOKS: {
                     print("Title:");
-                    String title = bufferedReader.readLine();
+                    String title = readLine();
                     print("Author:");
-                    String author = bufferedReader.readLine();
-                    Book[] books = bookList.list(StringUtils.trimToEmpty(title) +
-                            " " + StringUtils.trimToEmpty(author));
-                    printBookList(books);
-                    bookListSubMenu(books, cart);
+                    String author = readLine();
+                    bookListSubMenu(bookList, StringUtils.trimToEmpty(title) + " " + StringUtils.trimToEmpty(author),
+                            cart);
                     break;
                 }
                 case CHECKOUT:
@@ -125,33 +183,106 @@ public class Cli {
             }
         }
 
+        stop(bookList, reservations, refresher);
+
         print("Sad to see you go. Hope you come back soon.");
+        flush();
         System.exit(0);
     }
 
-    private static void bookListSubMenu(Book[] books, Cart cart) throws IOException {
+    /**
+     * Serves the book list over HTTP. The server threads keep running when this method returns, and the server is
+     * stopped and the inventory saved when the process is stopped.
+     */
+    private static void serve(IndexedBookList bookList, StockReservations reservations, InventoryRefresher refresher,
+                              int port) throws IOException {
+        BookStoreServer server = new BookStoreServer(bookList, reservations, new InetSocketAddress(port),
+                Runtime.getRuntime().availableProcessors() * 2, SERVER_QUEUE_SIZE, true);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+
+            try {
+                stop(bookList, reservations, refresher);
+            } catch (IOException e) {
+                print("Could not close the stock journal ", JOURNAL_FILE.toString(), ": ", e.getMessage());
+            }
+
+            flush();
+        }, "book-store-shutdown"));
+
+        server.start();
+        print("Data loaded. Bookstore is serving at port ", String.valueOf(server.getPort()));
+        flush();
+    }
+
+    /**
+     * Stops refreshing the inventory and expiring reservations, and saves the inventory.
+     */
+    private static void stop(IndexedBookList bookList, StockReservations reservations, InventoryRefresher refresher)
+            throws IOException {
+        refresher.close();
+        reservations.close();
+        writeSnapshot(bookList);
+        bookList.closeJournal();
+    }
+
+    /**
+     * Lets the user page through the books that matches the search string, or all books if it is null, and add
+     * them to the cart. Only one page of books is fetched from the book list at a time.
+     */
+    private static void bookListSubMenu(BookList bookList, String searchString, Cart cart) throws IOException {
         String input;
+        int offset = 0;
+        Book[] books = bookList.list(searchString, SEARCH_OPTIONS, offset, PAGE_SIZE);
+        printBookList(books, offset);
 
         do {
             printBookListSubMenu();
 
-            input = bufferedReader.readLine();
+            input = readLine();
             switch (input) {
                 case BUY_BOOK:
                     print("Enter the book number: ");
-                    String bookInput = bufferedReader.readLine();
+                    String bookInput = readLine();
 
                     if (NumberUtils.isDigits(bookInput)) {
-                        int bookNumber = Integer.parseInt(bookInput) - 1;
+                        int bookNumber = Integer.parseInt(bookInput) - 1 - offset;
 
                         if (bookNumber >= 0 && bookNumber < books.length) {
-                            cart.add(books[bookNumber]);
-                            print("Book ", books[bookNumber].getTitle(), " added to cart");
+                            if (cart.add(books[bookNumber])) {
+                                print("Book ", books[bookNumber].getTitle(), " added to cart");
+                            } else {
+                                print("Book ", books[bookNumber].getTitle(),
+                                        " added to cart but it is not in stock right now");
+                            }
                         } else {
                             print ("Not a valid book number");
                         }
                     }
                     break;
+                case NEXT_PAGE: {
+                    Book[] nextPage = books.length < PAGE_SIZE ? new Book[0]
+                            : bookList.list(searchString, SEARCH_OPTIONS, offset + PAGE_SIZE, PAGE_SIZE);
+
+                    if (nextPage.length > 0) {
+                        offset += PAGE_SIZE;
+                        books = nextPage;
+                        printBookList(books, offset);
+                    } else {
+                        print("No more books");
+                    }
+                    break;
+                }
+                case PREVIOUS_PAGE:
+                    if (offset > 0) {
+                        offset -= PAGE_SIZE;
+                        books = bookList.list(searchString, SEARCH_OPTIONS, offset, PAGE_SIZE);
+                        printBookList(books, offset);
+                    } else {
+                        print("Already at the first page");
+                    }
+                    break;
                 case EXIT_BOOK_LIST_SUB_MENU:
                     break;
                 default:
@@ -160,10 +291,70 @@ public class Cli {
         } while (!StringUtils.equals(EXIT_BOOK_LIST_SUB_MENU, input));
     }
 
+    /**
+     * Reads the inventory from the snapshot that was written the last time the inventory was loaded from
+     * {@link #BOOK_LIST_URL}, unless it is missing, unreadable, corrupt or too old.
+     *
+     * @param file the snapshot file.
+     * @return the inventory or null if it must be loaded from {@link #BOOK_LIST_URL}.
+     */
+    static IndexedBookList loadSnapshot(Path file) {
+        try {
+            long age = System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis();
+
+            if (age > SNAPSHOT_MAX_AGE_MILLIS) {
+                print("The snapshot ", file.toString(), " is out of date");
+                return null;
+            }
+
+            print("Loading data from ", file.toString());
+            return IndexedBookList.readSnapshot(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            print("Could not read the snapshot ", file.toString(), ": ", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Loads the inventory from {@link #BOOK_LIST_URL} into an empty book list. The refresher adds the books in
+     * batches while the inventory is read and remembers the quantities to compare them with later versions.
+     *
+     * @param refresher the refresher of the empty book list.
+     * @throws IOException if the inventory could not be read.
+     */
+    private static void loadBookList(InventoryRefresher refresher) throws IOException {
+        print("Loading data from ", BOOK_LIST_URL);
+
+        try {
+            refresher.refresh();
+        } catch (IOException e) {
+            print("Could not read the book data from URL ", BOOK_LIST_URL);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a snapshot of the inventory, which also removes the changes that are part of it from the journal.
+     * The next start reads the snapshot instead of loading the inventory from {@link #BOOK_LIST_URL}.
+     *
+     * @param bookList the inventory.
+     */
+    private static void writeSnapshot(IndexedBookList bookList) {
+        try {
+            bookList.writeSnapshot(SNAPSHOT_FILE);
+        } catch (IOException e) {
+            print("Could not write the snapshot ", SNAPSHOT_FILE.toString(), ": ", e.getMessage());
+        }
+    }
+
     private static void printBookListSubMenu() {
         print("***************************************");
         print("* 1. Buy book                         *");
         print("* 2. Back                             * ");
+        print("* 3. Next page                        *");
+        print("* 4. Previous page                    *");
         print("***************************************");
         print("Make your choice: ");
     }
@@ -177,19 +368,19 @@ public class Cli {
 
             books.forEach(book -> print(String.valueOf(++i[0]), ": ", book.toString()));
 
-            print("Total price of all books: ", String.valueOf(cart.getTotalPrice()), "\n");
+            print("Total price of all books: ", cart.getTotalPrice().toPlainString(), "\n");
             print("***************************************");
             print("* 1. Remove book from cart            *");
             print("* 2. Buy all books                    *");
             print("* 3. Back                             *");
             print("***************************************");
             print("Make your choice: ");
-            input = bufferedReader.readLine();
+            input = readLine();
 
             switch (input) {
                 case REMOVE_BOOK_FROM_CART:
                     print("Enter the book number: ");
-                    String bookInput = bufferedReader.readLine();
+                    String bookInput = readLine();
 
                     if (NumberUtils.isDigits(bookInput)) {
                         int bookNumber = Integer.parseInt(bookInput) - 1;
@@ -206,14 +397,18 @@ public class Cli {
                     break;
                 case BUY_ALL_BOOKS:
                     Book[] bookArray = books.toArray(new Book[books.size()]);
-                    int[] results = bookList.buy(bookArray);
+                    int[] results = cart.buyAll(bookList);
+                    boolean bought = results.length > 0 && results[0] == BuyResult.OK.toValue();
 
                     for (int j = 0; j < results.length; j++) {
                         int result = results[j];
                         Book book = bookArray[j];
                         BuyResult buyResult = BuyResult.fromValue(result);
                         print(String.valueOf(j + 1), ": ", book.getTitle(), " ", buyResult.toString());
-                        cart.remove(book);
+                    }
+
+                    if (results.length > 0 && !bought) {
+                        print("Nothing was bought. Remove the books that could not be bought and try again.");
                     }
 
                     break;
@@ -236,14 +431,14 @@ public class Cli {
             print("* 2. Back                             *");
             print("***************************************");
 
-            input = bufferedReader.readLine();
+            input = readLine();
             switch (input) {
                 case "1":
                     print("Title: ");
-                    String title = bufferedReader.readLine();
+                    String title = readLine();
 
                     print("Author: ");
-                    String author = bufferedReader.readLine();
+                    String author = readLine();
 
                     BigDecimal price = new BigDecimal(0);
                     boolean isValidNumber;
@@ -252,7 +447,7 @@ public class Cli {
                         print("Price: ");
 
                         try {
-                            price = new BigDecimal(bufferedReader.readLine());
+                            price = new BigDecimal(readLine());
                             isValidNumber = true;
                         } catch (NumberFormatException e) {
                             print("Not a valid number. Valid format is " + FLOATING_NUMBER_REGEX);
@@ -265,7 +460,7 @@ public class Cli {
                         print("Quantity:");
 
                         try {
-                            quantity = Integer.parseInt(bufferedReader.readLine());
+                            quantity = Integer.parseInt(readLine());
                             isValidNumber = quantity >= 0;
                         } catch (NumberFormatException e) {
                             isValidNumber = false;
@@ -289,6 +484,14 @@ public class Cli {
         } while (!StringUtils.equals("2", input));
     }
 
+    /**
+     * Flushes everything that has been printed, so the user can see what is asked for, and reads a line of input.
+     */
+    private static String readLine() throws IOException {
+        flush();
+        return bufferedReader.readLine();
+    }
+
     private static void printMenu() {
         print("***************************************");
         print("* 1. List all books                   *");
@@ -300,9 +503,9 @@ public class Cli {
         print("Make your choice: ");
     }
 
-    private static void printBookList(Book[] books) {
+    private static void printBookList(Book[] books, int offset) {
         if (books.length > 0) {
-            final int[] i = {0};
+            final int[] i = {offset};
             Arrays.stream(books).forEachOrdered(book -> print(String.valueOf(++i[0]), ":", book.toString()));
         } else {
             print("No books found");
@@ -20,25 +20,68 @@
 
 package util;
 
-import java.util.Arrays;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
 
 /**
  * A class that holds a static print method (akin to the print in python3) that can be imported to
  * simplify console logging.
+ *
+ * The output is buffered and only written to the console when the buffer is full or when {@link #flush()} is
+ * called, so printing many lines costs a few large writes instead of one synchronized and flushed write per
+ * fragment. Callers must flush before they wait for input from the user, or whatever was printed may not be
+ * visible yet. The output is also flushed when the JVM exits.
  */
 public class Print {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    private static final Writer OUT = new BufferedWriter(
+            new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), Charset.defaultCharset()), BUFFER_SIZE);
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(Print::flush, "print-flusher"));
+    }
 
     private Print() {
 
     }
 
     /**
-     * Prints the strings in the varargs on at a time and then prints a new line.
+     * Prints the strings in the varargs on at a time and then prints a new line. The line is written to the
+     * buffer as a whole so lines that are printed from different threads are never mixed.
      *
      * @param toPrint the varargs containing the strings to print.
      */
     public static void print(String... toPrint) {
-        Arrays.stream(toPrint).forEachOrdered(System.out::print);
-        System.out.println();
+        synchronized (OUT) {
+            try {
+                for (String fragment : toPrint) {
+                    OUT.write(String.valueOf(fragment));
+                }
+
+                OUT.write(LINE_SEPARATOR);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Writes everything that has been printed to the console.
+     */
+    public static void flush() {
+        synchronized (OUT) {
+            try {
+                OUT.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
     }
 }
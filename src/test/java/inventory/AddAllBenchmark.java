@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares loading an inventory into an {@link IndexedBookList} one book at a time with
+ * {@link IndexedBookList#add(Book, int)} and all at once with {@link IndexedBookList#addAll(Map)}. Not a unit test,
+ * run it with
+ *
+ * <pre>
+ * java inventory.AddAllBenchmark [books] [rounds]
+ * </pre>
+ *
+ * Each round loads the same made up books into two new book lists, one per method. The book lists of the previous
+ * measurement are collected before each measurement, so they are not part of its time. The first round warms up the
+ * JVM.
+ */
+public class AddAllBenchmark {
+    private static final int COPIES = 10;
+
+    private AddAllBenchmark() {
+
+    }
+
+    public static void main(String[] args) {
+        int numberOfBooks = SyntheticCatalog.argument(args, 0, 1000000);
+        int rounds = SyntheticCatalog.argument(args, 1, 3);
+
+        Book[] books = SyntheticCatalog.books(numberOfBooks, SyntheticCatalog.words());
+        Map<Book, Integer> inventory = new LinkedHashMap<>();
+
+        for (Book book : books) {
+            inventory.put(book, COPIES);
+        }
+
+        System.out.printf("%,d books%n", numberOfBooks);
+
+        for (int round = 1; round <= rounds; round++) {
+            System.gc();
+            long start = System.nanoTime();
+            IndexedBookList oneAtATime = new IndexedBookList();
+
+            for (Book book : books) {
+                oneAtATime.add(book, COPIES);
+            }
+
+            long addNanos = System.nanoTime() - start;
+            oneAtATime = null;
+            System.gc();
+            start = System.nanoTime();
+            new IndexedBookList().addAll(inventory);
+            long addAllNanos = System.nanoTime() - start;
+
+            System.out.printf("round %d: add %,6d ms, addAll %,6d ms, %.1f times faster%n", round,
+                    addNanos / 1000000, addAllNanos / 1000000, (double) addNanos / addAllNanos);
+        }
+    }
+}
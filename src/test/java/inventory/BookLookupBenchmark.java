@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import com.sun.management.ThreadMXBean;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the cost of looking up the stock of a book with the cached hash code of {@link Book} and with the
+ * {@link HashCodeBuilder} and {@link EqualsBuilder} that it used before. Not a unit test, run it with
+ *
+ * <pre>
+ * java inventory.BookLookupBenchmark [books] [seconds]
+ * </pre>
+ *
+ * The books are put in a {@code ConcurrentHashMap} of stock counters, like the stockedCopies map of
+ * {@link IndexedBookList} before the counters were moved to arrays, and looked up by one thread with books that
+ * are equal but not the same instances, as when a book is parsed from a request. The lookup of the copies in stock
+ * of an {@link IndexedBookList}, which finds the id of the book in its book store, is measured as well. The bytes
+ * that a lookup allocates are read from the HotSpot thread bean.
+ */
+public class BookLookupBenchmark {
+    private static final int ALLOCATION_LOOKUPS = 1000000;
+
+    private BookLookupBenchmark() {
+
+    }
+
+    public static void main(String[] args) throws Exception {
+        int numberOfBooks = SyntheticCatalog.argument(args, 0, 100000);
+        int seconds = SyntheticCatalog.argument(args, 1, 3);
+
+        Book[] books = SyntheticCatalog.books(numberOfBooks, SyntheticCatalog.words());
+        Book[] probes = new Book[books.length];
+        LegacyBook[] legacyBooks = new LegacyBook[books.length];
+        LegacyBook[] legacyProbes = new LegacyBook[books.length];
+        Map<Book, AtomicInteger> stock = new ConcurrentHashMap<>();
+        Map<LegacyBook, AtomicInteger> legacyStock = new ConcurrentHashMap<>();
+        IndexedBookList bookList = new IndexedBookList(0);
+
+        for (int i = 0; i < books.length; i++) {
+            probes[i] = copy(books[i]);
+            legacyBooks[i] = new LegacyBook(books[i].getTitle(), books[i].getAuthor(), books[i].getPrice());
+            legacyProbes[i] = new LegacyBook(probes[i].getTitle(), probes[i].getAuthor(), probes[i].getPrice());
+            stock.put(books[i], new AtomicInteger(1));
+            legacyStock.put(legacyBooks[i], new AtomicInteger(1));
+            bookList.add(books[i], 1);
+        }
+
+        Runnable legacyLookup =
+                () -> legacyStock.get(legacyProbes[ThreadLocalRandom.current().nextInt(legacyProbes.length)]);
+        Runnable lookup = () -> stock.get(probes[ThreadLocalRandom.current().nextInt(probes.length)]);
+        Runnable bookListLookup =
+                () -> bookList.getCopiesOfBookInStock(probes[ThreadLocalRandom.current().nextInt(probes.length)]);
+
+        System.out.printf("%,d books, %d seconds per measurement%n", numberOfBooks, seconds);
+        report("map with builder hash and equals:", legacyLookup, seconds);
+        report("map with cached hash:            ", lookup, seconds);
+        report("IndexedBookList copies in stock: ", bookListLookup, seconds);
+    }
+
+    /**
+     * Prints the time of a lookup, measured after a warm up, and the bytes that a lookup allocates after that.
+     */
+    private static void report(String name, Runnable lookup, int seconds) throws Exception {
+        double lookups = SyntheticCatalog.throughput(1, seconds, lookup);
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+        for (int i = 0; i < ALLOCATION_LOOKUPS; i++) {
+            lookup.run();
+        }
+
+        long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+        System.out.printf("%s %6.0f ns and %5.1f bytes allocated per lookup%n",
+                name, 1e9 / lookups, allocated / (double) ALLOCATION_LOOKUPS);
+    }
+
+    /**
+     * Returns an equal book whose strings and price are other instances.
+     */
+    private static Book copy(Book book) {
+        return new Book(new String(book.getTitle().toCharArray()), new String(book.getAuthor().toCharArray()),
+                new BigDecimal(book.getPrice().toString()));
+    }
+
+    /**
+     * A book with the hash code and equals that {@link Book} had before the hash code was cached.
+     */
+    private static final class LegacyBook {
+        private final String title;
+        private final String author;
+        private final BigDecimal price;
+
+        private LegacyBook(String title, String author, BigDecimal price) {
+            this.title = title;
+            this.author = author;
+            this.price = price;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+
+            LegacyBook other = (LegacyBook) obj;
+
+            EqualsBuilder eb = new EqualsBuilder();
+            eb.append(title, other.title);
+            eb.append(author, other.author);
+            eb.append(price, other.price);
+
+            return eb.isEquals();
+        }
+
+        @Override
+        public int hashCode() {
+            HashCodeBuilder hb = new HashCodeBuilder();
+            hb.append(title);
+            hb.append(author);
+            hb.append(price);
+
+            return hb.toHashCode();
+        }
+    }
+}
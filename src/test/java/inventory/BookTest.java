@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+/**
+ * Test classes for {@link Book}
+ */
+public class BookTest {
+
+    @Test
+    public void equalBooks() {
+        Book book = new Book("Title", "Author", new BigDecimal("762.00"));
+        Book other = new Book(new String("Title"), new String("Author"), new BigDecimal("762.00"));
+
+        Assert.assertEquals("Books with the same fields were not equal", book, other);
+        Assert.assertEquals("Equal books had different hash codes", book.hashCode(), other.hashCode());
+    }
+
+    @Test
+    public void differentBooks() {
+        Book book = new Book("Title", "Author", new BigDecimal("762.00"));
+
+        Assert.assertNotEquals(book, new Book("Other Title", "Author", new BigDecimal("762.00")));
+        Assert.assertNotEquals(book, new Book("Title", "Other Author", new BigDecimal("762.00")));
+        Assert.assertNotEquals(book, new Book("Title", "Author", new BigDecimal("762.50")));
+        Assert.assertNotEquals(book, null);
+    }
+
+    @Test
+    public void priceInCents() {
+        Book book = new Book("Title", "Author", 76250L);
+
+        Assert.assertEquals("The price was not created from cents", new BigDecimal("762.50"), book.getPrice());
+        Assert.assertEquals("The price was not converted to cents", 76250L, book.getPriceInCents());
+        Assert.assertEquals("The price was not rounded to cents", 10041L,
+                new Book("Title", "Author", new BigDecimal("100.405")).getPriceInCents());
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures how the throughput of {@link IndexedBookList#buy(Book...)} changes with the size of the catalog. Not a
+ * unit test, run it with
+ *
+ * <pre>
+ * java inventory.BuyScalingBenchmark [max books] [seconds]
+ * </pre>
+ *
+ * Catalogs of 1 000, 10 000 and so on up to max books are loaded with made up books, and one thread buys random
+ * books from each of them. A purchase looks the book up by its hash, so its cost does not grow with the catalog,
+ * but random books of a large catalog are rarely in the CPU caches. The purchases are therefore also measured for
+ * the same 1 000 books in every catalog, which should give about the same throughput for every size. The books are
+ * added in batches so only the books themselves and the book list have to fit in the heap, for 10 000 000 books run
+ * it with -Xmx4500m.
+ */
+public class BuyScalingBenchmark {
+    private static final int COPIES = 1000000000;
+    private static final int HOT_BOOKS = 1000;
+    private static final int BATCH_SIZE = 100000;
+
+    private BuyScalingBenchmark() {
+
+    }
+
+    public static void main(String[] args) throws Exception {
+        int maxBooks = SyntheticCatalog.argument(args, 0, 10000000);
+        int seconds = SyntheticCatalog.argument(args, 1, 3);
+        String[] words = SyntheticCatalog.words();
+
+        System.out.printf("up to %d books, %d seconds per catalog%n", maxBooks, seconds);
+
+        for (int numberOfBooks = 1000; numberOfBooks <= maxBooks; numberOfBooks *= 10) {
+            Book[] books = SyntheticCatalog.books(numberOfBooks, words);
+            IndexedBookList bookList = new IndexedBookList(0);
+
+            for (int batch = 0; batch < books.length; batch += BATCH_SIZE) {
+                Map<Book, Integer> inventory = new LinkedHashMap<>();
+
+                for (int i = batch; i < Math.min(books.length, batch + BATCH_SIZE); i++) {
+                    inventory.put(books[i], COPIES);
+                }
+
+                bookList.addAll(inventory);
+            }
+
+            System.gc();
+
+            double buys = SyntheticCatalog.throughput(1, seconds,
+                    () -> bookList.buy(books[ThreadLocalRandom.current().nextInt(books.length)]));
+            double hotBuys = SyntheticCatalog.throughput(1, seconds,
+                    () -> bookList.buy(books[ThreadLocalRandom.current().nextInt(HOT_BOOKS)]));
+
+            System.out.printf("%,11d books: random books %,10.0f buys/s, %,10.0f buys/s of the same %d books%n",
+                    numberOfBooks, buys, hotBuys, HOT_BOOKS);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures the throughput of {@link IndexedBookList#buy(Book...)} when many threads buy at the same time. Not a
+ * unit test, run it with
+ *
+ * <pre>
+ * java inventory.ConcurrentBuyBenchmark [books] [max threads] [seconds]
+ * </pre>
+ *
+ * The purchases are measured with 1, 2, 4 and so on up to max threads, once for random books of the catalog and
+ * once for the same book, where every purchase competes for the same counter. Purchases of different books never
+ * wait for each other, so the throughput of random books should grow with the number of cores.
+ */
+public class ConcurrentBuyBenchmark {
+    private static final int COPIES = 1000000000;
+
+    private ConcurrentBuyBenchmark() {
+
+    }
+
+    public static void main(String[] args) throws Exception {
+        int numberOfBooks = SyntheticCatalog.argument(args, 0, 100000);
+        int maxThreads = SyntheticCatalog.argument(args, 1, 64);
+        int seconds = SyntheticCatalog.argument(args, 2, 2);
+
+        Book[] books = SyntheticCatalog.books(numberOfBooks, SyntheticCatalog.words());
+        IndexedBookList bookList = new IndexedBookList(0);
+        Map<Book, Integer> inventory = new LinkedHashMap<>();
+
+        for (Book book : books) {
+            inventory.put(book, COPIES);
+        }
+
+        bookList.addAll(inventory);
+
+        System.out.printf("%d books, %d seconds per measurement, %d cores%n",
+                numberOfBooks, seconds, Runtime.getRuntime().availableProcessors());
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            double randomBuys = SyntheticCatalog.throughput(threads, seconds,
+                    () -> bookList.buy(books[ThreadLocalRandom.current().nextInt(books.length)]));
+            double sameBookBuys = SyntheticCatalog.throughput(threads, seconds, () -> bookList.buy(books[0]));
+
+            System.out.printf("%2d threads: %,11.0f buys/s of random books, %,11.0f buys/s of the same book%n",
+                    threads, randomBuys, sameBookBuys);
+        }
+    }
+}
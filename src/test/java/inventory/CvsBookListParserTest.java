@@ -75,6 +75,26 @@ public class CvsBookListParserTest {
         Assert.assertEquals("Parsing failed when parsing data with invalid price string", 6, bookList.size());
     }
 
+    @Test
+    public void parseCvsIntoBookList() throws Exception {
+        testData = getTestData("bookstoredata.txt");
+        IndexedBookList bookList = new IndexedBookList();
+        uut.parse(testData, bookList::add);
+        Assert.assertEquals("The parser failed to stream all books", 7, bookList.list(null).length);
+    }
+
+    @Test
+    public void parseCvsSharesRepeatedStrings() throws Exception {
+        testData = getTestData("bookstoredata.txt");
+        Book[] books = uut.parse(testData).keySet().stream()
+                .filter(book -> book.getAuthor().equals("Cunning Bastard"))
+                .toArray(Book[]::new);
+
+        Assert.assertEquals("The test data did not contain two books by the same author", 2, books.length);
+        Assert.assertSame("The author was not shared", books[0].getAuthor(), books[1].getAuthor());
+        Assert.assertSame("The title was not shared", books[0].getTitle(), books[1].getTitle());
+    }
+
     private InputStreamReader getTestData(String fileName) throws Exception {
         InputStream fis = this.getClass().getResourceAsStream(fileName);
         return new InputStreamReader(fis, "UTF-8");
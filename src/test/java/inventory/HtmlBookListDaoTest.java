@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+
+/**
+ * Test classes for {@link HtmlBookListDao}
+ */
+public class HtmlBookListDaoTest {
+    private static final String INVENTORY = "Test Title;Test Author;100.40;10\nAnother Title;Another Author;10.50;3\n";
+
+    @Test
+    public void readInventory() throws Exception {
+        try (InventoryServer server = new InventoryServer(INVENTORY, true)) {
+            Map<Book, Integer> bookList = new HtmlBookListDao(new CsvBookInventoryParser()).bookInventory(server.url());
+            Assert.assertEquals("The dao failed to read all books", 2, bookList.size());
+        }
+    }
+
+    @Test
+    public void unchangedInventoryIsNotReadWithEntityTag() throws Exception {
+        try (InventoryServer server = new InventoryServer(INVENTORY, true)) {
+            readIfModifiedTwice(server);
+        }
+    }
+
+    @Test
+    public void unchangedInventoryIsNotReadWithLastModified() throws Exception {
+        try (InventoryServer server = new InventoryServer(INVENTORY, false)) {
+            readIfModifiedTwice(server);
+        }
+    }
+
+    private static void readIfModifiedTwice(InventoryServer server) throws Exception {
+        HtmlBookListDao uut = new HtmlBookListDao(new CsvBookInventoryParser());
+
+        Assert.assertTrue("The first read was not made", uut.bookInventoryIfModified(server.url(), (b, q) -> { }));
+        Assert.assertFalse("An unchanged inventory was read", uut.bookInventoryIfModified(server.url(), (b, q) -> {
+            Assert.fail("A book was passed to the consumer for an unchanged inventory");
+        }));
+
+        server.setInventory(INVENTORY + "New Title;New Author;1.00;1\n");
+        int[] books = new int[1];
+        Assert.assertTrue("A changed inventory was not read",
+                uut.bookInventoryIfModified(server.url(), (book, quantity) -> books[0]++));
+        Assert.assertEquals("The changed inventory was not read as expected", 3, books[0]);
+        Assert.assertEquals("The number of full responses was not as expected", 2, server.fullResponses());
+        Assert.assertEquals("The number of not modified responses was not as expected", 1,
+                server.notModifiedResponses());
+    }
+}
@@ -19,11 +19,31 @@
 
 package inventory;
 
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 /**
  * Test classes for {@link IndexedBookList}
@@ -31,6 +51,8 @@ import java.math.BigDecimal;
 public class IndexedBookListTest {
 
     private IndexedBookList uut;
+    private Path snapshot;
+    private Path journal;
 
     @Before
     public void setup() {
@@ -40,6 +62,18 @@ public class IndexedBookListTest {
 
     }
 
+    @After
+    public void tearDown() throws IOException {
+        if (snapshot != null) {
+            Files.deleteIfExists(snapshot);
+        }
+
+        if (journal != null) {
+            uut.closeJournal();
+            Files.deleteIfExists(journal);
+        }
+    }
+
     @Test
     public void addBook() {
         Book[] searchResult = uut.list(null);
@@ -100,6 +134,411 @@ public class IndexedBookListTest {
         Assert.assertEquals("No match should be an empty book array", 0, searchResult.length);
     }
 
+    @Test
+    public void searchWithAllWords() {
+        addRingBooks();
+
+        Book[] searchResult = uut.list("the lord of the rings", SearchOptions.ALL_WORDS, 10);
+        Assert.assertEquals("Search with all words did not intersect the words", 1, searchResult.length);
+        Assert.assertEquals("The wrong book was found", "The Lord of the Rings", searchResult[0].getTitle());
+    }
+
+    @Test
+    public void searchIsRanked() {
+        addRingBooks();
+
+        Book[] searchResult = uut.list("rings tolkien", SearchOptions.ANY_WORD, 10);
+        Assert.assertEquals("Search with any word did not find all books", 3, searchResult.length);
+        Assert.assertEquals("The book matching both words was not ranked first",
+                "The Lord of the Rings", searchResult[0].getTitle());
+    }
+
+    @Test
+    public void searchWithLimit() {
+        addRingBooks();
+
+        Book[] searchResult = uut.list("the", SearchOptions.ANY_WORD, 2);
+        Assert.assertEquals("The limit was not respected", 2, searchResult.length);
+
+        searchResult = uut.list(null, SearchOptions.ANY_WORD, 2);
+        Assert.assertEquals("The limit was not respected when listing all books", 2, searchResult.length);
+    }
+
+    @Test
+    public void listPages() {
+        addRingBooks();
+        Book[] allBooks = uut.list(null);
+
+        Book[] page = uut.list(null, SearchOptions.ANY_WORD, 2, 2);
+        Assert.assertArrayEquals("The second page of all books was not as expected",
+                Arrays.copyOfRange(allBooks, 2, 4), page);
+
+        page = uut.list(null, SearchOptions.ANY_WORD, 4, 2);
+        Assert.assertArrayEquals("The last page of all books was not as expected",
+                Arrays.copyOfRange(allBooks, 4, 5), page);
+
+        page = uut.list(null, SearchOptions.ANY_WORD, 10, 2);
+        Assert.assertEquals("A page beyond the last book was not empty", 0, page.length);
+    }
+
+    @Test
+    public void searchPages() {
+        addRingBooks();
+        Book[] allMatches = uut.list("the", SearchOptions.ANY_WORD, 10);
+
+        Book[] page = uut.list("the", SearchOptions.ANY_WORD, 1, 2);
+        Assert.assertArrayEquals("The second page of the search was not as expected",
+                Arrays.copyOfRange(allMatches, 1, 3), page);
+
+        page = uut.list("the", SearchOptions.ANY_WORD, allMatches.length, 2);
+        Assert.assertEquals("A page beyond the last match was not empty", 0, page.length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void listWithNegativeOffset() {
+        uut.list(null, SearchOptions.ANY_WORD, -1, 2);
+    }
+
+    @Test
+    public void streamBooks() {
+        addRingBooks();
+        Stream<Book> books = uut.stream();
+
+        uut.add(new Book("Added After", "Stream Author", new BigDecimal(10)), 1);
+
+        Assert.assertArrayEquals("The stream did not contain the books that were added before it",
+                Arrays.copyOfRange(uut.list(null), 0, 5), books.toArray(Book[]::new));
+    }
+
+    @Test
+    public void searchWithPrefix() {
+        addRingBooks();
+        SearchOptions prefixMatching = new SearchOptions(SearchOptions.Operator.AND, true, 0);
+
+        Book[] searchResult = uut.list("tolk", prefixMatching, 10);
+        Assert.assertEquals("Search with a prefix did not find all books", 2, searchResult.length);
+
+        searchResult = uut.list("tolk", SearchOptions.ALL_WORDS, 10);
+        Assert.assertEquals("A prefix matched without prefix matching", 0, searchResult.length);
+    }
+
+    @Test
+    public void searchWithTypo() {
+        addRingBooks();
+        SearchOptions fuzzyMatching = new SearchOptions(SearchOptions.Operator.AND, false, SearchOptions.MAX_EDITS);
+
+        Book[] searchResult = uut.list("tolkein hobit", fuzzyMatching, 10);
+        Assert.assertEquals("Search with typos did not find the book", 1, searchResult.length);
+        Assert.assertEquals("The wrong book was found", "The Hobbit", searchResult[0].getTitle());
+    }
+
+    @Test
+    public void exactMatchRanksAboveTypo() {
+        uut.add(new Book("Wedding Rings", "Some Author", new BigDecimal(10)), 1);
+        uut.add(new Book("Wedding Kings", "Some Author", new BigDecimal(10)), 1);
+        SearchOptions fuzzyMatching = new SearchOptions(SearchOptions.Operator.AND, false, SearchOptions.MAX_EDITS);
+
+        Book[] searchResult = uut.list("kings", fuzzyMatching, 10);
+        Assert.assertEquals("Search with typos did not find both books", 2, searchResult.length);
+        Assert.assertEquals("The exact match was not ranked first", "Wedding Kings", searchResult[0].getTitle());
+    }
+
+    @Test
+    public void addAll() {
+        Map<Book, Integer> books = new LinkedHashMap<>();
+        books.put(new Book("Test Title", "Test Author", new BigDecimal(100.4)), 5);
+        books.put(new Book("The Lord of the Rings", "J.R.R. Tolkien", new BigDecimal(300)), 2);
+        books.put(new Book("The Hobbit", "J.R.R. Tolkien", new BigDecimal(150)), 1);
+
+        uut.addAll(books);
+
+        Assert.assertEquals("The new books were not added as expected", 3, uut.list(null).length);
+        Assert.assertEquals("The copies of an existing book were not added", 15,
+                uut.getCopiesOfBookInStock(new Book("Test Title", "Test Author", new BigDecimal(100.4))));
+        Assert.assertEquals("The copies of a new book were not added", 2,
+                uut.getCopiesOfBookInStock(new Book("The Lord of the Rings", "J.R.R. Tolkien", new BigDecimal(300))));
+
+        Book[] searchResult = uut.list("tolkien hobbit", SearchOptions.ALL_WORDS, 10);
+        Assert.assertEquals("A book added in a batch was not searchable", 1, searchResult.length);
+        Assert.assertEquals("The wrong book was found", "The Hobbit", searchResult[0].getTitle());
+    }
+
+    @Test
+    public void addAllIndexesLikeAdd() {
+        IndexedBookList oneByOne = new IndexedBookList();
+        Map<Book, Integer> books = new LinkedHashMap<>();
+
+        for (int i = 0; i < 5000; i++) {
+            Book book = new Book("Title " + i + " Volume " + (i % 7), "Author " + (i % 300), new BigDecimal(i));
+            books.put(book, i % 3);
+            oneByOne.add(book, i % 3);
+        }
+
+        uut.addAll(books);
+        uut.add(new Book("Title 1 Volume 1", "Late Author", new BigDecimal(1)), 1);
+        oneByOne.add(new Book("Test Title", "Test Author", new BigDecimal(100.4)), 10);
+        oneByOne.add(new Book("Title 1 Volume 1", "Late Author", new BigDecimal(1)), 1);
+        SearchOptions fuzzyMatching = new SearchOptions(SearchOptions.Operator.OR, true, 1);
+
+        for (String search : new String[] {"volume 3", "author 42", "title 1", "autor 7", "late"}) {
+            Assert.assertEquals("The batch index did not find the same books for " + search,
+                    oneByOne.list(search, fuzzyMatching, Integer.MAX_VALUE).length,
+                    uut.list(search, fuzzyMatching, Integer.MAX_VALUE).length);
+        }
+    }
+
+    @Test
+    public void addAllWithNegativeQuantityAddsNothing() {
+        Map<Book, Integer> books = new LinkedHashMap<>();
+        books.put(new Book("Another title", "Another Author", new BigDecimal(10)), 1);
+        books.put(new Book("Negative title", "Another Author", new BigDecimal(10)), -1);
+
+        try {
+            uut.addAll(books);
+            Assert.fail("A negative quantity was accepted");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("A book was added from a rejected batch", 1, uut.list(null).length);
+        }
+    }
+
+    @Test
+    public void readSnapshot() throws IOException {
+        addRingBooks();
+        uut.buy(new Book("The Hobbit", "J.R.R. Tolkien", new BigDecimal(150)));
+        snapshot = Files.createTempFile("inventory", ".snapshot");
+
+        uut.writeSnapshot(snapshot);
+        IndexedBookList readList = IndexedBookList.readSnapshot(snapshot);
+
+        Assert.assertArrayEquals("The books in the snapshot were not as expected", uut.list(null), readList.list(null));
+        Assert.assertEquals("The copies in stock in the snapshot were not as expected", 0,
+                readList.getCopiesOfBookInStock(new Book("The Hobbit", "J.R.R. Tolkien", new BigDecimal(150))));
+        SearchOptions fuzzyMatching = new SearchOptions(SearchOptions.Operator.OR, true, SearchOptions.MAX_EDITS);
+
+        for (String search : new String[] {"the lord of the rings", "tolkein", "sat", "test title"}) {
+            Assert.assertArrayEquals("The index in the snapshot did not find the same books for " + search,
+                    uut.list(search, fuzzyMatching, 10), readList.list(search, fuzzyMatching, 10));
+        }
+
+        readList.add(new Book("The Silmarillion", "J.R.R. Tolkien", new BigDecimal(200)), 1);
+        Assert.assertEquals("A book could not be added after reading the snapshot", 3,
+                readList.list("tolkien", SearchOptions.ALL_WORDS, 10).length);
+    }
+
+    @Test
+    public void offHeapBookList() throws IOException {
+        IndexedBookList offHeap = new IndexedBookList(0, true);
+        offHeap.add(new Book("Test Title", "Test Author", new BigDecimal(100.4)), 10);
+        uut = offHeap;
+        addRingBooks();
+        Book hobbit = new Book("The Hobbit", "J.R.R. Tolkien", new BigDecimal(150));
+
+        Assert.assertEquals("The search of the off heap books was not as expected",
+                "The Lord of the Rings", offHeap.list("rings tolkien", SearchOptions.ANY_WORD, 10)[0].getTitle());
+        Assert.assertArrayEquals("The off heap book was not bought", new int[] {BuyResult.OK.toValue(),
+                BuyResult.NOT_IN_STOCK.toValue()}, offHeap.buy(hobbit, hobbit));
+
+        snapshot = Files.createTempFile("inventory", ".snapshot");
+        offHeap.writeSnapshot(snapshot);
+        IndexedBookList readList = IndexedBookList.readSnapshot(snapshot, true);
+
+        Assert.assertArrayEquals("The books in the snapshot were not as expected",
+                offHeap.list(null), readList.list(null));
+        Assert.assertEquals("The copies in stock in the snapshot were not as expected",
+                0, readList.getCopiesOfBookInStock(hobbit));
+    }
+
+    @Test(expected = IOException.class)
+    public void readInvalidSnapshot() throws IOException {
+        snapshot = Files.createTempFile("inventory", ".snapshot");
+        Files.write(snapshot, "Test Title;Test Author;100.40;10".getBytes("UTF-8"));
+
+        IndexedBookList.readSnapshot(snapshot);
+    }
+
+    @Test
+    public void readSnapshotWithCorruptStringIndex() throws IOException {
+        snapshot = Files.createTempFile("inventory", ".snapshot");
+        uut.writeSnapshot(snapshot);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        // Skips the magic number, the version, the journal sequence and the string table to the title of the book.
+        buffer.position(2 * Integer.BYTES + Long.BYTES);
+        int numberOfStrings = buffer.getInt();
+
+        for (int i = 0; i < numberOfStrings; i++) {
+            int length = buffer.getInt();
+            buffer.position(buffer.position() + Math.max(length, 0));
+        }
+
+        buffer.position(buffer.position() + Integer.BYTES);
+        buffer.putInt(numberOfStrings);
+        Files.write(snapshot, bytes);
+
+        try {
+            IndexedBookList.readSnapshot(snapshot);
+            Assert.fail("A snapshot with a corrupt string index was read");
+        } catch (IOException e) {
+            Assert.assertTrue("The message was not as expected: " + e.getMessage(),
+                    e.getMessage().endsWith("is corrupt, the string table has no string " + numberOfStrings));
+        }
+    }
+
+    @Test
+    public void journalIsReplayed() throws IOException {
+        Book book = new Book("Test Title", "Test Author", new BigDecimal(100.4));
+        Book newBook = new Book("The Hobbit", "J.R.R. Tolkien", new BigDecimal(150));
+        journal = Files.createTempFile("stock", ".journal");
+        uut.openJournal(journal);
+
+        uut.buy(book, book);
+        uut.add(newBook, 3);
+        uut.buy(newBook);
+        uut.closeJournal();
+
+        IndexedBookList restarted = new IndexedBookList();
+        restarted.add(book, 10);
+        restarted.openJournal(journal);
+
+        Assert.assertEquals("The purchases were not replayed", 8, restarted.getCopiesOfBookInStock(book));
+        Assert.assertEquals("The added book was not replayed", 2, restarted.getCopiesOfBookInStock(newBook));
+        Assert.assertEquals("The added book was not indexed", 1, restarted.list("hobbit").length);
+        restarted.closeJournal();
+    }
+
+    @Test
+    public void cancelledPurchaseIsReplayed() throws IOException {
+        Book book = new Book("Test Title", "Test Author", new BigDecimal(100.4));
+        journal = Files.createTempFile("stock", ".journal");
+        uut.openJournal(journal);
+
+        uut.buyAll(book, book, book);
+        uut.cancelPurchase(book, book);
+        Assert.assertEquals("The copies of the cancelled purchase were not given back",
+                9, uut.getCopiesOfBookInStock(book));
+        Assert.assertArrayEquals("The book was added again", new Book[] {book}, uut.list(null));
+        uut.closeJournal();
+
+        IndexedBookList restarted = new IndexedBookList();
+        restarted.add(book, 10);
+        restarted.openJournal(journal);
+
+        Assert.assertEquals("The cancelled purchase was not replayed", 9, restarted.getCopiesOfBookInStock(book));
+        restarted.closeJournal();
+    }
+
+    @Test
+    public void changesAreUndoneWhenJournalFails() throws Exception {
+        Book book = new Book("Test Title", "Test Author", new BigDecimal(100.4));
+        journal = Files.createTempFile("stock", ".journal");
+        uut.openJournal(journal);
+        uut.buy(book);
+
+        // Closing the file under the journal makes the next flush fail.
+        Field journalField = IndexedBookList.class.getDeclaredField("journal");
+        journalField.setAccessible(true);
+        Field channelField = StockJournal.class.getDeclaredField("channel");
+        channelField.setAccessible(true);
+        ((FileChannel) channelField.get(journalField.get(uut))).close();
+
+        List<Callable<?>> changes = Arrays.asList(
+                () -> uut.buy(book),
+                () -> uut.buyAll(book, book),
+                () -> uut.remove(book, 3),
+                () -> {
+                    uut.add(book, 3);
+                    return null;
+                });
+
+        for (Callable<?> change : changes) {
+            try {
+                change.call();
+                Assert.fail("A change was made although the journal could not be written");
+            } catch (UncheckedIOException e) {
+                Assert.assertEquals("The failed change was not undone", 9, uut.getCopiesOfBookInStock(book));
+            }
+        }
+
+        try {
+            uut.closeJournal();
+            Assert.fail("The journal was closed without a failure");
+        } catch (IOException e) {
+            // The journal reports the failure when it is closed as well.
+        }
+
+        IndexedBookList restarted = new IndexedBookList();
+        restarted.add(book, 10);
+        restarted.openJournal(journal);
+
+        Assert.assertEquals("The journal did not contain only the changes that were kept",
+                uut.getCopiesOfBookInStock(book), restarted.getCopiesOfBookInStock(book));
+        restarted.closeJournal();
+    }
+
+    @Test
+    public void snapshotIsCheckpoint() throws IOException {
+        Book book = new Book("Test Title", "Test Author", new BigDecimal(100.4));
+        snapshot = Files.createTempFile("inventory", ".snapshot");
+        journal = Files.createTempFile("stock", ".journal");
+        uut.openJournal(journal);
+
+        uut.buy(book);
+        uut.writeSnapshot(snapshot);
+        uut.buy(book);
+        uut.closeJournal();
+
+        IndexedBookList restarted = IndexedBookList.readSnapshot(snapshot);
+        Assert.assertEquals("The snapshot did not contain the first purchase", 9,
+                restarted.getCopiesOfBookInStock(book));
+
+        restarted.openJournal(journal);
+        Assert.assertEquals("The journal was not replayed on top of the snapshot", 8,
+                restarted.getCopiesOfBookInStock(book));
+        restarted.closeJournal();
+    }
+
+    @Test
+    public void repeatedSearchIsCached() {
+        addRingBooks();
+
+        Book[] first = uut.list("The Lord of the Rings", SearchOptions.ALL_WORDS, 10);
+        Book[] second = uut.list("the lord, of THE rings!", SearchOptions.ALL_WORDS, 10);
+
+        Assert.assertArrayEquals("The cached result was not as expected", first, second);
+        Assert.assertNotSame("The cached array was shared", first, second);
+        Assert.assertEquals("The normalized search was not a cache hit", 1, uut.getQueryCacheHits());
+        Assert.assertEquals("The first search was not a cache miss", 1, uut.getQueryCacheMisses());
+
+        uut.list("The Lord of the Rings", SearchOptions.ALL_WORDS, 5);
+        uut.list("The Lord of the Rings", SearchOptions.ANY_WORD, 10);
+        Assert.assertEquals("A search with another limit or options was a cache hit", 3, uut.getQueryCacheMisses());
+    }
+
+    @Test
+    public void addingBookInvalidatesCachedSearches() {
+        addRingBooks();
+        Assert.assertEquals("The search result was not as expected", 2, uut.list("tolkien").length);
+
+        uut.add(new Book("The Silmarillion", "J.R.R. Tolkien", new BigDecimal(200)), 1);
+        Assert.assertEquals("The added book was not found", 3, uut.list("tolkien").length);
+
+        uut.add(new Book("The Silmarillion", "J.R.R. Tolkien", new BigDecimal(200)), 1);
+        uut.buy(new Book("The Hobbit", "J.R.R. Tolkien", new BigDecimal(150)));
+        Assert.assertEquals("The search result was not as expected", 3, uut.list("tolkien").length);
+        Assert.assertEquals("Changing the stock invalidated the cached search", 1, uut.getQueryCacheHits());
+    }
+
+    @Test
+    public void searchWithoutQueryCache() {
+        uut = new IndexedBookList(0);
+        addRingBooks();
+
+        uut.list("tolkien");
+        Assert.assertEquals("The search result was not as expected", 2, uut.list("tolkien").length);
+        Assert.assertEquals("A search was cached without a cache", 0, uut.getQueryCacheHits());
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void addNegativeQuantity() {
         Book book = new Book("Another title", "Another Author", new BigDecimal(10));
@@ -122,6 +561,82 @@ public class IndexedBookListTest {
         Assert.assertArrayEquals(new int[] {2}, actuals);
     }
 
+    @Test
+    public void buyEqualButNotIdenticalBook() {
+        Book book = new Book("Test Title", "Test Author", new BigDecimal(100.4));
+        int[] actuals = uut.buy(book);
+        Assert.assertArrayEquals("An equal book instance was not found", new int[] {0}, actuals);
+    }
+
+    @Test
+    public void buyAllBooks() {
+        Book book = new Book("Test Title", "Test Author", new BigDecimal(100.4));
+        Book hobbit = new Book("The Hobbit", "J.R.R. Tolkien", new BigDecimal(150));
+        uut.add(hobbit, 2);
+
+        int[] actuals = uut.buyAll(book, hobbit, book, book, hobbit);
+
+        Assert.assertArrayEquals("Buy all array was not as expected", new int[] {0, 0, 0, 0, 0}, actuals);
+        Assert.assertEquals("The copies in stock were not as expected", 7, uut.getCopiesOfBookInStock(book));
+        Assert.assertEquals("The copies in stock were not as expected", 0, uut.getCopiesOfBookInStock(hobbit));
+    }
+
+    @Test
+    public void buyAllBuysNothingIfOneBookIsNotInStock() {
+        Book book = new Book("Test Title", "Test Author", new BigDecimal(100.4));
+        Book hobbit = new Book("The Hobbit", "J.R.R. Tolkien", new BigDecimal(150));
+        uut.add(hobbit, 2);
+
+        int[] actuals = uut.buyAll(book, hobbit, hobbit, hobbit);
+
+        Assert.assertArrayEquals("Buy all array was not as expected", new int[] {
+                BuyResult.CANCELLED.toValue(), BuyResult.NOT_IN_STOCK.toValue(),
+                BuyResult.NOT_IN_STOCK.toValue(), BuyResult.NOT_IN_STOCK.toValue()}, actuals);
+        Assert.assertEquals("The copies in stock were not as expected", 10, uut.getCopiesOfBookInStock(book));
+        Assert.assertEquals("The copies in stock were not as expected", 2, uut.getCopiesOfBookInStock(hobbit));
+    }
+
+    @Test
+    public void buyAllBuysNothingIfOneBookDoesNotExist() {
+        Book book = new Book("Test Title", "Test Author", new BigDecimal(100.4));
+
+        int[] actuals = uut.buyAll(book, new Book("not", "in stock", new BigDecimal(100)));
+
+        Assert.assertArrayEquals("Buy all array was not as expected", new int[] {
+                BuyResult.CANCELLED.toValue(), BuyResult.DOES_NOT_EXIST.toValue()}, actuals);
+        Assert.assertEquals("The copies in stock were not as expected", 10, uut.getCopiesOfBookInStock(book));
+    }
+
+    @Test
+    public void buyAllIsJournaled() throws IOException {
+        Book book = new Book("Test Title", "Test Author", new BigDecimal(100.4));
+        journal = Files.createTempFile("stock", ".journal");
+        uut.openJournal(journal);
+
+        uut.buyAll(book, book, book);
+        uut.buyAll(book, new Book("not", "in stock", new BigDecimal(100)));
+        uut.closeJournal();
+
+        IndexedBookList restarted = new IndexedBookList();
+        restarted.add(book, 10);
+        restarted.openJournal(journal);
+
+        Assert.assertEquals("The purchases were not replayed", 7, restarted.getCopiesOfBookInStock(book));
+        restarted.closeJournal();
+    }
+
+    @Test
+    public void removeCopies() {
+        Book book = new Book("Test Title", "Test Author", new BigDecimal(100.4));
+
+        Assert.assertEquals("The copies were not removed", 4, uut.remove(book, 4));
+        Assert.assertEquals("The copies in stock were not as expected", 6, uut.getCopiesOfBookInStock(book));
+        Assert.assertEquals("More copies than in stock were removed", 6, uut.remove(book, 8));
+        Assert.assertEquals("The book was removed from the inventory", 1, uut.list("title").length);
+        Assert.assertEquals("Copies of a book that does not exist were removed", 0,
+                uut.remove(new Book("not", "in stock", new BigDecimal(100)), 1));
+    }
+
     @Test
     public void buyAllCopiesOfOneBook() {
         Book book = new Book("Test Title", "Test Author", new BigDecimal(100.4));
@@ -135,4 +650,117 @@ public class IndexedBookListTest {
         uut.buy(book);
         Assert.assertTrue("Negative number of books in the inventory", uut.getCopiesOfBookInStock(book) == 0);
     }
+
+    @Test
+    public void concurrentBuyDoesNotOversell() throws Exception {
+        Book book = new Book("Contended Title", "Popular Author", new BigDecimal(10));
+        uut.add(book, 1000);
+
+        int sold = runConcurrently(8, () -> {
+            int bought = 0;
+
+            for (int i = 0; i < 500; i++) {
+                if (uut.buy(book)[0] == BuyResult.OK.toValue()) {
+                    bought++;
+                }
+            }
+
+            return bought;
+        });
+
+        Assert.assertEquals("Copies were oversold or lost", 1000, sold);
+        Assert.assertEquals("Stock was not emptied", 0, uut.getCopiesOfBookInStock(book));
+    }
+
+    @Test
+    public void concurrentAddAndBuyKeepsStockConsistent() throws Exception {
+        Book book = new Book("Restocked Title", "Popular Author", new BigDecimal(10));
+        uut.add(book, 0);
+
+        int sold = runConcurrently(8, () -> {
+            int bought = 0;
+
+            for (int i = 0; i < 500; i++) {
+                uut.add(book, 1);
+
+                if (uut.buy(book)[0] == BuyResult.OK.toValue()) {
+                    bought++;
+                }
+            }
+
+            return bought;
+        });
+
+        Assert.assertEquals("Stock does not match the number of added and bought copies",
+                8 * 500 - sold, uut.getCopiesOfBookInStock(book));
+    }
+
+    @Test
+    public void searchWhileAddingBooks() throws Exception {
+        int booksToAdd = 2000;
+        AtomicBoolean writerStarted = new AtomicBoolean();
+
+        int searches = runConcurrently(4, () -> {
+            if (writerStarted.compareAndSet(false, true)) {
+                for (int i = 0; i < booksToAdd; i++) {
+                    uut.add(new Book("Shared Title " + i, "Concurrent Author", new BigDecimal(i)), 1);
+                }
+                return 0;
+            }
+
+            int previousHits = 0;
+            int searchCount = 0;
+
+            while (previousHits < booksToAdd) {
+                Book[] searchResult = uut.list("concurrent");
+                Assert.assertTrue("A search returned fewer books than an earlier search",
+                        searchResult.length >= previousHits);
+
+                for (Book book : searchResult) {
+                    Assert.assertNotNull("A search returned an unpublished book", book);
+                }
+
+                previousHits = searchResult.length;
+                searchCount++;
+            }
+
+            return searchCount;
+        });
+
+        Assert.assertTrue("No searches were made", searches > 0);
+        Assert.assertEquals("Not all books were added", booksToAdd + 1, uut.list(null).length);
+    }
+
+    private void addRingBooks() {
+        uut.add(new Book("The Lord of the Rings", "J.R.R. Tolkien", new BigDecimal(300)), 1);
+        uut.add(new Book("The Hobbit", "J.R.R. Tolkien", new BigDecimal(150)), 1);
+        uut.add(new Book("The Rings of Saturn", "W.G. Sebald", new BigDecimal(120)), 1);
+        uut.add(new Book("The Lord of the Flies", "William Golding", new BigDecimal(90)), 1);
+    }
+
+    private static int runConcurrently(int threads, Callable<Integer> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+
+            start.countDown();
+
+            int sum = 0;
+            for (Future<Integer> future : futures) {
+                sum += future.get();
+            }
+
+            return sum;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Compares how fast a local inventory file is read by {@link HtmlBookListDao} with {@link CsvBookInventoryParser},
+ * which reads through a {@link java.io.Reader}, and by {@link MappedFileBookInventoryDao}. Not a unit test, run it
+ * with
+ *
+ * <pre>
+ * java inventory.InventoryLoadBenchmark [rows] [rounds] [max threads]
+ * </pre>
+ *
+ * A temporary inventory file with the given number of rows of made up books is written first and deleted at the
+ * end. Each round reads it through the reader, through the mapped file on one thread and through the mapped file
+ * split over 1, 2, 4 and so on up to max threads, see {@link MappedFileBookInventoryDao#withParallelism(int)}. The
+ * first round warms up the JVM and the page cache.
+ */
+public class InventoryLoadBenchmark {
+    private InventoryLoadBenchmark() {
+
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = SyntheticCatalog.argument(args, 0, 1000000);
+        int rounds = SyntheticCatalog.argument(args, 1, 3);
+        int maxThreads = SyntheticCatalog.argument(args, 2, 16);
+        Path file = Files.createTempFile("inventory", ".csv");
+
+        try {
+            writeInventory(file, rows);
+            double megabytes = Files.size(file) / 1e6;
+            String url = file.toUri().toString();
+
+            System.out.printf("%,d rows, %.0f MB, %d cores%n", rows, megabytes,
+                    Runtime.getRuntime().availableProcessors());
+
+            for (int round = 1; round <= rounds; round++) {
+                double reader = megabytesPerSecond(megabytes, new HtmlBookListDao(new CsvBookInventoryParser()), url);
+                double mapped = megabytesPerSecond(megabytes, new MappedFileBookInventoryDao(), url);
+                StringBuilder parallel = new StringBuilder();
+
+                for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                    parallel.append(String.format(", %d threads %4.0f", threads, megabytesPerSecond(megabytes,
+                            MappedFileBookInventoryDao.withParallelism(threads), url)));
+                }
+
+                System.out.printf("round %d MB/s: reader %4.0f, mapped %4.0f%s%n", round, reader, mapped, parallel);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static double megabytesPerSecond(double megabytes, BookInventoryDao dao, String url) throws IOException {
+        long[] copies = new long[1];
+        long start = System.nanoTime();
+        dao.bookInventory(url, (book, quantity) -> copies[0] += quantity);
+
+        return megabytes / ((System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Writes rows with a title of three words, an author of two words, a price and a quantity. A few prices have a
+     * thousand separator like in the real inventory.
+     */
+    private static void writeInventory(Path file, int rows) throws IOException {
+        String[] words = SyntheticCatalog.words();
+        Random random = new Random(2);
+
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < rows; i++) {
+                out.write(words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)] + " "
+                        + words[random.nextInt(words.length)] + ";" + words[random.nextInt(words.length)] + " "
+                        + words[random.nextInt(words.length)] + ";");
+                int cents = random.nextInt(200000);
+                out.write(cents >= 100000 ? String.format("%d,%03d.%02d", cents / 100000, cents / 100 % 1000,
+                        cents % 100) : String.format("%d.%02d", cents / 100, cents % 100));
+                out.write(";" + (1 + random.nextInt(20)));
+                out.newLine();
+            }
+        }
+    }
+}
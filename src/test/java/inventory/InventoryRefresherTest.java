@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test classes for {@link InventoryRefresher}
+ */
+public class InventoryRefresherTest {
+    private static final Book TEST_BOOK = new Book("Test Title", "Test Author", new BigDecimal("100.40"));
+    private static final Book ANOTHER_BOOK = new Book("Another Title", "Another Author", new BigDecimal("10.50"));
+    private static final Book NEW_BOOK = new Book("New Title", "New Author", new BigDecimal("1.00"));
+
+    private InventoryServer server;
+    private IndexedBookList bookList;
+    private InventoryRefresher uut;
+    private Path baseline;
+    private Path snapshot;
+
+    @Before
+    public void setup() throws IOException {
+        server = new InventoryServer("Test Title;Test Author;100.40;10\nAnother Title;Another Author;10.50;3\n", true);
+        bookList = new IndexedBookList();
+        uut = new InventoryRefresher(bookList, new HtmlBookListDao(new CsvBookInventoryParser()), server.url());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        uut.close();
+        server.close();
+
+        for (Path file : new Path[] {baseline, snapshot}) {
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    public void firstRefreshLoadsInventory() throws IOException {
+        Assert.assertTrue("The inventory was not read", uut.refresh());
+        Assert.assertEquals("Not all books were added", 2, bookList.list(null).length);
+        Assert.assertEquals("The copies were not added", 10, bookList.getCopiesOfBookInStock(TEST_BOOK));
+    }
+
+    @Test
+    public void unchangedInventoryIsNotApplied() throws IOException {
+        uut.refresh();
+
+        Assert.assertFalse("An unchanged inventory was applied", uut.refresh());
+        Assert.assertEquals("The copies were added again", 10, bookList.getCopiesOfBookInStock(TEST_BOOK));
+    }
+
+    @Test
+    public void differencesAreApplied() throws IOException {
+        uut.refresh();
+        bookList.buy(TEST_BOOK, TEST_BOOK);
+        server.setInventory("Test Title;Test Author;100.40;12\nNew Title;New Author;1.00;4\n");
+
+        Assert.assertTrue("The changed inventory was not read", uut.refresh());
+        Assert.assertEquals("The new copies were not added to the copies that were left", 10,
+                bookList.getCopiesOfBookInStock(TEST_BOOK));
+        Assert.assertEquals("The removed book still has copies", 0, bookList.getCopiesOfBookInStock(ANOTHER_BOOK));
+        Assert.assertEquals("The new book was not added", 4, bookList.getCopiesOfBookInStock(NEW_BOOK));
+        Assert.assertEquals("The new book was not searchable", 1, bookList.list("new").length);
+
+        server.setInventory("Test Title;Test Author;100.40;5\nNew Title;New Author;1.00;4\n");
+        uut.refresh();
+        Assert.assertEquals("The copies were not removed", 3, bookList.getCopiesOfBookInStock(TEST_BOOK));
+    }
+
+    @Test
+    public void firstInventoryIsComparedWithStock() throws IOException {
+        bookList.add(TEST_BOOK, 1);
+
+        Assert.assertTrue("The inventory was not read", uut.refresh());
+        Assert.assertEquals("The stock was not brought up to the inventory", 10,
+                bookList.getCopiesOfBookInStock(TEST_BOOK));
+        Assert.assertEquals("The new book was not added", 3, bookList.getCopiesOfBookInStock(ANOTHER_BOOK));
+
+        bookList.buy(TEST_BOOK);
+        server.setInventory("Test Title;Test Author;100.40;11\nAnother Title;Another Author;10.50;3\n");
+        uut.refresh();
+        Assert.assertEquals("The difference was not applied", 10, bookList.getCopiesOfBookInStock(TEST_BOOK));
+    }
+
+    @Test
+    public void duplicateBooksAreSummed() throws IOException {
+        server.setInventory("Test Title;Test Author;100.40;4\nTest Title;Test Author;100.40;6\n");
+        uut.refresh();
+        Assert.assertEquals("The copies were not summed", 10, bookList.getCopiesOfBookInStock(TEST_BOOK));
+
+        server.setInventory("Test Title;Test Author;100.40;4\nTest Title;Test Author;100.40;4\n");
+        uut.refresh();
+        Assert.assertEquals("The copies were not summed", 8, bookList.getCopiesOfBookInStock(TEST_BOOK));
+    }
+
+    @Test
+    public void baselineIsKeptAcrossRestarts() throws IOException {
+        baseline = Files.createTempFile("inventory", ".baseline");
+        Files.delete(baseline);
+        snapshot = Files.createTempFile("inventory", ".snapshot");
+        InventoryRefresher refresher = new InventoryRefresher(bookList,
+                new HtmlBookListDao(new CsvBookInventoryParser()), server.url(), baseline);
+        refresher.refresh();
+        refresher.close();
+        bookList.buy(TEST_BOOK, TEST_BOOK);
+        bookList.writeSnapshot(snapshot);
+
+        IndexedBookList restarted = IndexedBookList.readSnapshot(snapshot);
+        server.setInventory("Test Title;Test Author;100.40;12\nAnother Title;Another Author;10.50;3\n");
+        refresher = new InventoryRefresher(restarted, new HtmlBookListDao(new CsvBookInventoryParser()),
+                server.url(), baseline);
+        refresher.refresh();
+        refresher.close();
+
+        Assert.assertEquals("The sold copies were added back", 10, restarted.getCopiesOfBookInStock(TEST_BOOK));
+    }
+
+    @Test
+    public void baselineOfAnotherBookListIsNotUsed() throws IOException {
+        baseline = Files.createTempFile("inventory", ".baseline");
+        Files.delete(baseline);
+        InventoryRefresher refresher = new InventoryRefresher(bookList,
+                new HtmlBookListDao(new CsvBookInventoryParser()), server.url(), baseline);
+        refresher.refresh();
+        refresher.close();
+
+        IndexedBookList empty = new IndexedBookList();
+        refresher = new InventoryRefresher(empty, new HtmlBookListDao(new CsvBookInventoryParser()), server.url(),
+                baseline);
+        refresher.refresh();
+        refresher.close();
+
+        Assert.assertEquals("The inventory was not loaded", 10, empty.getCopiesOfBookInStock(TEST_BOOK));
+    }
+
+    @Test
+    public void refreshInBackground() throws Exception {
+        uut.refresh();
+        server.setInventory("Test Title;Test Author;100.40;10\nNew Title;New Author;1.00;4\n");
+
+        uut.start(10, TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < 500 && bookList.list("new").length == 0; i++) {
+            Thread.sleep(10);
+        }
+
+        Assert.assertEquals("The inventory was not refreshed in the background", 1, bookList.list("new").length);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local HTTP server that serves a book inventory in place of the real one. It answers conditional requests
+ * with an ETag, or with Last-Modified if ETags are turned off, like a static file server.
+ */
+class InventoryServer implements Closeable {
+    private static final String PATH = "/bookstoredata.txt";
+    private static final String LAST_MODIFIED = "Thu, 01 Jan 2026 00:00:0%d GMT";
+
+    private final HttpServer server;
+    private final AtomicInteger fullResponses;
+    private final AtomicInteger notModifiedResponses;
+    private final boolean entityTags;
+    private volatile String inventory;
+    private volatile int version;
+
+    InventoryServer(String inventory, boolean entityTags) throws IOException {
+        this.inventory = inventory;
+        this.entityTags = entityTags;
+        this.fullResponses = new AtomicInteger();
+        this.notModifiedResponses = new AtomicInteger();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.createContext(PATH, exchange -> {
+            int currentVersion = version;
+            String entityTag = "\"" + currentVersion + "\"";
+            String lastModified = String.format(LAST_MODIFIED, currentVersion);
+            boolean notModified = entityTags ?
+                    entityTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match")) :
+                    lastModified.equals(exchange.getRequestHeaders().getFirst("If-Modified-Since"));
+
+            if (entityTags) {
+                exchange.getResponseHeaders().add("ETag", entityTag);
+            } else {
+                exchange.getResponseHeaders().add("Last-Modified", lastModified);
+            }
+
+            if (notModified) {
+                notModifiedResponses.incrementAndGet();
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+            } else {
+                fullResponses.incrementAndGet();
+                byte[] body = this.inventory.getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, body.length);
+
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+
+            exchange.close();
+        });
+        this.server.start();
+    }
+
+    String url() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + PATH;
+    }
+
+    void setInventory(String inventory) {
+        this.inventory = inventory;
+        version++;
+    }
+
+    int fullResponses() {
+        return fullResponses.get();
+    }
+
+    int notModifiedResponses() {
+        return notModifiedResponses.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
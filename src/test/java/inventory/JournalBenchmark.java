@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures the checkout throughput of an {@link IndexedBookList} with and without a stock journal. Not a unit
+ * test, run it with
+ *
+ * <pre>
+ * java inventory.JournalBenchmark [books] [max threads] [seconds] [books per checkout]
+ * </pre>
+ *
+ * Each checkout buys a few random books with {@link IndexedBookList#buyAll(Book...)}. The checkouts are measured
+ * with 1, 2, 4 and so on up to max threads. With the journal every checkout waits until its changes have been
+ * flushed to disk, and threads that wait at the same time share one flush, so the difference shrinks as the
+ * number of threads grows. The journal is written to a temporary file in the default temporary directory, which
+ * should be on the disk that the journal of the store would be on.
+ */
+public class JournalBenchmark {
+    private static final int COPIES = 1000000000;
+
+    private JournalBenchmark() {
+
+    }
+
+    public static void main(String[] args) throws Exception {
+        int numberOfBooks = SyntheticCatalog.argument(args, 0, 100000);
+        int maxThreads = SyntheticCatalog.argument(args, 1, 64);
+        int seconds = SyntheticCatalog.argument(args, 2, 2);
+        int booksPerCheckout = SyntheticCatalog.argument(args, 3, 3);
+
+        Book[] books = SyntheticCatalog.books(numberOfBooks, SyntheticCatalog.words());
+        IndexedBookList withoutJournal = bookList(books);
+        IndexedBookList withJournal = bookList(books);
+        Path journal = Files.createTempFile("inventory", ".journal");
+
+        try {
+            withJournal.openJournal(journal);
+
+            System.out.printf("%d books, %d books per checkout, %d seconds per measurement, %d cores%n",
+                    numberOfBooks, booksPerCheckout, seconds, Runtime.getRuntime().availableProcessors());
+
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                double unjournaled = SyntheticCatalog.throughput(threads, seconds,
+                        () -> withoutJournal.buyAll(cart(books, booksPerCheckout)));
+                double journaled = SyntheticCatalog.throughput(threads, seconds,
+                        () -> withJournal.buyAll(cart(books, booksPerCheckout)));
+
+                System.out.printf("%2d threads: %,11.0f checkouts/s without journal, %,11.0f checkouts/s with journal"
+                        + "%n", threads, unjournaled, journaled);
+            }
+        } finally {
+            withJournal.closeJournal();
+            Files.deleteIfExists(journal);
+        }
+    }
+
+    private static IndexedBookList bookList(Book[] books) {
+        IndexedBookList bookList = new IndexedBookList(0);
+        Map<Book, Integer> inventory = new LinkedHashMap<>();
+
+        for (Book book : books) {
+            inventory.put(book, COPIES);
+        }
+
+        bookList.addAll(inventory);
+        return bookList;
+    }
+
+    private static Book[] cart(Book[] books, int size) {
+        Book[] cart = new Book[size];
+
+        for (int i = 0; i < size; i++) {
+            cart[i] = books[ThreadLocalRandom.current().nextInt(books.length)];
+        }
+
+        return cart;
+    }
+}
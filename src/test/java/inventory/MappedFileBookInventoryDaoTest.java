@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test classes for {@link MappedFileBookInventoryDao}
+ */
+public class MappedFileBookInventoryDaoTest {
+
+    private static final String[] TEST_FILES = {"bookstoredata.txt", "corrupt.txt", "empty_author.txt",
+        "invalid_price.txt"};
+
+    @Test
+    public void readInventory() throws Exception {
+        Map<Book, Integer> bookList = new MappedFileBookInventoryDao().bookInventory(getTestFile("bookstoredata.txt"));
+        Assert.assertEquals("The dao failed to read all books", 7, bookList.size());
+    }
+
+    @Test
+    public void readInventoryFromFileUrl() throws Exception {
+        String url = getClass().getResource("bookstoredata.txt").toString();
+        Map<Book, Integer> bookList = new MappedFileBookInventoryDao().bookInventory(url);
+        Assert.assertEquals("The dao failed to read all books from a file URL", 7, bookList.size());
+    }
+
+    @Test
+    public void readLikeCsvParser() throws Exception {
+        for (String testFile : TEST_FILES) {
+            Map<Book, Integer> expected = parseWithCsvParser(testFile);
+            Map<Book, Integer> actual = new MappedFileBookInventoryDao().bookInventory(getTestFile(testFile));
+            Assert.assertEquals("The dao did not read " + testFile + " like the CSV parser", expected, actual);
+        }
+    }
+
+    @Test
+    public void readWithSmallWindows() throws Exception {
+        Map<Book, Integer> expected = parseWithCsvParser("bookstoredata.txt");
+
+        // Windows that split the file in the middle of lines and multi-byte characters.
+        for (int windowSize = 50; windowSize < 70; windowSize++) {
+            Map<Book, Integer> actual =
+                    new MappedFileBookInventoryDao(windowSize, 1).bookInventory(getTestFile("bookstoredata.txt"));
+            Assert.assertEquals("The dao failed to read the file with a window of " + windowSize, expected, actual);
+        }
+    }
+
+    @Test
+    public void readInParallelLikeCsvParser() throws Exception {
+        for (String testFile : TEST_FILES) {
+            Map<Book, Integer> expected = parseWithCsvParser(testFile);
+            Map<Book, Integer> actual =
+                    MappedFileBookInventoryDao.withParallelism(4).bookInventory(getTestFile(testFile));
+            Assert.assertEquals("The dao did not read " + testFile + " in parallel like the CSV parser",
+                    expected, actual);
+        }
+    }
+
+    @Test
+    public void readInParallelSumsDuplicatesAcrossChunks() throws Exception {
+        Path inventory = Files.createTempFile("inventory", ".txt");
+
+        try {
+            List<String> lines = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                lines.add("Title " + (i % 150) + ";Author " + (i % 7) + ";1,0" + (i % 150 % 10) + "0.50;" + i % 13);
+            }
+            Files.write(inventory, lines, StandardCharsets.UTF_8);
+
+            List<Book> expectedOrder = new ArrayList<>();
+            Map<Book, Integer> expected = new HashMap<>();
+            new MappedFileBookInventoryDao().bookInventory(inventory.toString(), (book, quantity) -> {
+                expectedOrder.add(book);
+                expected.merge(book, quantity, Integer::sum);
+            });
+
+            for (int windowSize = 1000; windowSize <= 100000; windowSize *= 10) {
+                List<Book> order = new ArrayList<>();
+                Map<Book, Integer> actual = new HashMap<>();
+                new MappedFileBookInventoryDao(windowSize, 8).bookInventory(inventory.toString(), (book, quantity) -> {
+                    order.add(book);
+                    actual.merge(book, quantity, Integer::sum);
+                });
+
+                Assert.assertEquals("The quantities were not summed like when reading with one thread",
+                        expected, actual);
+                Assert.assertEquals("The books were not passed in file order",
+                        expectedOrder.subList(0, 10), order.subList(0, 10));
+            }
+        } finally {
+            Files.delete(inventory);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void lineLongerThanWindow() throws Exception {
+        new MappedFileBookInventoryDao(10, 1).bookInventory(getTestFile("bookstoredata.txt"));
+    }
+
+    private Map<Book, Integer> parseWithCsvParser(String fileName) throws Exception {
+        try (InputStream inputStream = getClass().getResourceAsStream(fileName);
+             InputStreamReader reader = new InputStreamReader(inputStream, "UTF-8")) {
+            return new CsvBookInventoryParser().parse(reader);
+        }
+    }
+
+    private String getTestFile(String fileName) throws Exception {
+        return Paths.get(getClass().getResource(fileName).toURI()).toString();
+    }
+}
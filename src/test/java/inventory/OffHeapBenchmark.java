@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the heap and the garbage collection pauses of an {@link IndexedBookList} that keeps its books on the heap
+ * with one that keeps them in an {@link OffHeapBookStore}. Not a unit test, run it with
+ *
+ * <pre>
+ * java -XX:+UseSerialGC inventory.OffHeapBenchmark [books] [seconds] [on|off|both]
+ * </pre>
+ *
+ * The book list is loaded with made up books in batches. Then the heap after a full collection and the time of one
+ * more full collection are measured, which grows with the number of live objects. Finally one thread searches and
+ * buys for the given number of seconds and the number and average time of the young collections during that
+ * time are reported, along with the throughput. With both, the on-heap list is measured first and dropped before
+ * the off-heap list is loaded; run the modes in separate JVMs for the cleanest numbers.
+ */
+public class OffHeapBenchmark {
+    private static final int BATCH_SIZE = 100000;
+    private static final int SAMPLE_SIZE = 10000;
+    private static final int COPIES = 1000000;
+
+    private OffHeapBenchmark() {
+
+    }
+
+    public static void main(String[] args) throws Exception {
+        int numberOfBooks = SyntheticCatalog.argument(args, 0, 1000000);
+        int seconds = SyntheticCatalog.argument(args, 1, 10);
+        String mode = args.length > 2 ? args[2] : "both";
+
+        if (!mode.equals("off")) {
+            measure(numberOfBooks, seconds, false);
+        }
+
+        if (!mode.equals("on")) {
+            measure(numberOfBooks, seconds, true);
+        }
+    }
+
+    private static void measure(int numberOfBooks, int seconds, boolean offHeap) throws Exception {
+        String[] words = SyntheticCatalog.words();
+        Random random = new Random(2);
+        IndexedBookList bookList = new IndexedBookList(0, offHeap);
+        Book[] sample = new Book[Math.min(SAMPLE_SIZE, numberOfBooks)];
+
+        for (int batch = 0; batch < numberOfBooks; batch += BATCH_SIZE) {
+            Map<Book, Integer> inventory = new LinkedHashMap<>();
+
+            for (int i = batch; i < Math.min(numberOfBooks, batch + BATCH_SIZE); i++) {
+                // The number makes every title unique.
+                Book book = new Book(words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)]
+                        + " " + i, words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)],
+                        BigDecimal.valueOf(100 + random.nextInt(90000), 2));
+                inventory.put(book, COPIES);
+
+                if (i < sample.length) {
+                    sample[i] = book;
+                }
+            }
+
+            bookList.addAll(inventory);
+        }
+
+        long heap = SyntheticCatalog.usedHeap();
+        long start = System.nanoTime();
+        System.gc();
+        long fullCollectionMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        long[] before = youngCollections();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        long operations = 0;
+        ThreadLocalRandom threadRandom = ThreadLocalRandom.current();
+
+        while (System.nanoTime() < end) {
+            bookList.list(words[threadRandom.nextInt(words.length)] + " " + words[threadRandom.nextInt(words.length)],
+                    SearchOptions.ANY_WORD, 20);
+            bookList.buy(sample[threadRandom.nextInt(sample.length)]);
+            operations++;
+        }
+
+        long[] after = youngCollections();
+        long collections = after[0] - before[0];
+        long collectionMillis = after[1] - before[1];
+
+        System.out.printf("%s, %,d books: heap after full collection %d MB, full collection %d ms%n",
+                offHeap ? "off heap" : "on heap", numberOfBooks, heap >> 20, fullCollectionMillis);
+        System.out.printf("    %d young collections, %.2f ms on average, %.0f searches and buys/s%n",
+                collections, collections == 0 ? 0.0 : collectionMillis / (double) collections,
+                operations / (double) seconds);
+    }
+
+    /**
+     * Returns the number and the total time in milliseconds of the collections of the young generation.
+     */
+    private static long[] youngCollections() {
+        long count = 0;
+        long time = 0;
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            String name = collector.getName();
+
+            if (!name.contains("MarkSweep") && !name.contains("Old")) {
+                count += collector.getCollectionCount();
+                time += collector.getCollectionTime();
+            }
+        }
+
+        return new long[] {count, time};
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Test classes for {@link OffHeapBookStore}
+ */
+public class OffHeapBookStoreTest {
+
+    @Test
+    public void booksAreDecodedAsAdded() {
+        OffHeapBookStore uut = new OffHeapBookStore();
+        Book[] books = {
+                new Book("The Hobbit", "J.R.R. Tolkien", new BigDecimal("150.00")),
+                new Book("The Hobbit", "J.R.R. Tolkien", new BigDecimal("150")),
+                new Book("\u00c5sa-Nisse p\u00e5 Jorden", "Stig Cederholm", new BigDecimal("-1e40")),
+                new Book(null, "", null)
+        };
+
+        for (Book book : books) {
+            uut.add(book);
+        }
+
+        for (int i = 0; i < books.length; i++) {
+            Book book = uut.get(i);
+            Assert.assertEquals("Book " + i + " was not decoded as it was added", books[i], book);
+            Assert.assertEquals("The price of book " + i + " did not keep its scale",
+                    books[i].getPrice() == null ? null : books[i].getPrice().scale(),
+                    book.getPrice() == null ? null : book.getPrice().scale());
+            Assert.assertEquals("The id of book " + i + " was not found", i, uut.idOf(books[i]));
+        }
+
+        Assert.assertEquals("A book that was not added was found",
+                -1, uut.idOf(new Book("The Hobbit", "J.R.R. Tolkien", new BigDecimal("150.0"))));
+    }
+
+    @Test
+    public void manyBooksOverSeveralChunks() {
+        OffHeapBookStore uut = new OffHeapBookStore(256);
+        Book[] books = new Book[1000];
+
+        for (int i = 0; i < books.length; i++) {
+            books[i] = new Book("Volume " + i, "Encyclopedia", new BigDecimal(i));
+        }
+
+        uut.addAll(Arrays.copyOf(books, 500));
+
+        for (int i = 500; i < books.length; i++) {
+            Assert.assertEquals("The id of the added book was not as expected", i, uut.add(books[i]));
+        }
+
+        Assert.assertEquals("The size was not as expected", books.length, uut.size());
+
+        for (int i = 0; i < books.length; i++) {
+            Assert.assertEquals("The id of book " + i + " was not found", i, uut.idOf(books[i]));
+        }
+
+        Assert.assertArrayEquals("The range of books was not as expected",
+                Arrays.copyOfRange(books, 995, 1000), uut.toArray(995, 10));
+        Assert.assertEquals("The stream did not contain all books",
+                Arrays.asList(books), uut.stream().collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures the throughput of {@link PartitionedBookList} against the number of partitions, with one
+ * {@link IndexedBookList} as the reference. Not a unit test, run it with
+ *
+ * <pre>
+ * java inventory.PartitionedBookListBenchmark [books] [threads] [seconds] [max partitions]
+ * </pre>
+ *
+ * Every book list is loaded with the same made up books and then measured with random two-word searches for the
+ * best 20 matches, buys of one book and buys of four books. The partition counts are the powers of two up to the
+ * max partitions. The searches mostly miss the query cache.
+ */
+public class PartitionedBookListBenchmark {
+    private static final int COPIES = 1000000;
+
+    private PartitionedBookListBenchmark() {
+
+    }
+
+    public static void main(String[] args) throws Exception {
+        int numberOfBooks = SyntheticCatalog.argument(args, 0, 200000);
+        int threads = SyntheticCatalog.argument(args, 1, Runtime.getRuntime().availableProcessors() * 2);
+        int seconds = SyntheticCatalog.argument(args, 2, 3);
+        int maxPartitions = SyntheticCatalog.argument(args, 3, 8);
+
+        String[] words = SyntheticCatalog.words();
+        Book[] books = SyntheticCatalog.books(numberOfBooks, words);
+        Map<Book, Integer> inventory = new LinkedHashMap<>();
+
+        for (Book book : books) {
+            inventory.put(book, COPIES);
+        }
+
+        System.out.printf("%d books, %d threads, %d seconds per measurement%n", numberOfBooks, threads, seconds);
+
+        for (int partitions = 0; partitions <= maxPartitions; partitions = Math.max(1, partitions * 2)) {
+            BookList bookList = partitions == 0 ? new IndexedBookList(0) : new PartitionedBookList(partitions);
+            System.gc();
+
+            long start = System.nanoTime();
+            bookList.addAll(inventory);
+            long loadMillis = (System.nanoTime() - start) / 1000000;
+
+            double searches = SyntheticCatalog.throughput(threads, seconds, () -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                bookList.list(words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)],
+                        SearchOptions.ANY_WORD, 20);
+            });
+            double buys = SyntheticCatalog.throughput(threads, seconds,
+                    () -> bookList.buy(books[ThreadLocalRandom.current().nextInt(books.length)]));
+            double buysOfFour = SyntheticCatalog.throughput(threads, seconds, () -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                bookList.buy(books[random.nextInt(books.length)], books[random.nextInt(books.length)],
+                        books[random.nextInt(books.length)], books[random.nextInt(books.length)]);
+            });
+
+            System.out.printf("%-16s load %5d ms, %9.0f searches/s, %10.0f buys/s, %10.0f buys of 4/s%n",
+                    partitions == 0 ? "IndexedBookList" : partitions + (partitions == 1 ? " partition" : " partitions"),
+                    loadMillis, searches, buys, buysOfFour);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * Test classes for {@link PartitionedBookList}
+ */
+public class PartitionedBookListTest {
+    private static final int PARTITIONS = 4;
+
+    private PartitionedBookList uut;
+
+    @Before
+    public void setup() {
+        uut = new PartitionedBookList(PARTITIONS);
+        uut.add(new Book("The Lord of the Rings", "J.R.R. Tolkien", new BigDecimal(300)), 1);
+        uut.add(new Book("The Hobbit", "J.R.R. Tolkien", new BigDecimal(150)), 1);
+        uut.add(new Book("The Rings of Saturn", "W.G. Sebald", new BigDecimal(120)), 1);
+        uut.add(new Book("The Lord of the Flies", "William Golding", new BigDecimal(90)), 1);
+    }
+
+    @Test
+    public void listAllBooks() {
+        Book[] books = uut.list(null);
+        Assert.assertEquals("Not all books were listed", 4, books.length);
+        Assert.assertEquals("A book was listed twice", 4, new HashSet<>(Arrays.asList(books)).size());
+    }
+
+    @Test
+    public void listAllBooksInPages() {
+        Set<Book> books = new HashSet<>();
+
+        for (int offset = 0; offset < 4; offset += 3) {
+            books.addAll(Arrays.asList(uut.list(null, SearchOptions.ANY_WORD, offset, 3)));
+        }
+
+        Assert.assertEquals("The pages did not contain all books once", 4, books.size());
+        Assert.assertEquals("A page beyond the last book was not empty",
+                0, uut.list(null, SearchOptions.ANY_WORD, 4, 3).length);
+    }
+
+    @Test
+    public void searchIsMergedByScore() {
+        Book[] books = uut.list("rings tolkien", SearchOptions.ANY_WORD, 10);
+
+        Assert.assertEquals("The search did not find the books of all partitions", 3, books.length);
+        Assert.assertEquals("The book matching both words was not ranked first",
+                "The Lord of the Rings", books[0].getTitle());
+    }
+
+    @Test
+    public void searchFindsSameBooksAsOneBookList() {
+        IndexedBookList bookList = new IndexedBookList();
+        uut.stream().forEach(book -> bookList.add(book, 1));
+
+        for (String search : new String[] {"the", "lord", "tolkien sebald", "flies of saturn"}) {
+            Set<Book> expected = new HashSet<>(Arrays.asList(bookList.list(search)));
+            Set<Book> actual = new HashSet<>(Arrays.asList(uut.list(search)));
+            Assert.assertEquals("The search for " + search + " was not as expected", expected, actual);
+        }
+    }
+
+    @Test
+    public void searchPages() {
+        Book[] allMatches = uut.list("the", SearchOptions.ANY_WORD, 10);
+
+        Assert.assertArrayEquals("The second page of the search was not as expected",
+                Arrays.copyOfRange(allMatches, 1, 3), uut.list("the", SearchOptions.ANY_WORD, 1, 2));
+    }
+
+    @Test
+    public void addingBookInvalidatesCachedSearches() {
+        Assert.assertEquals("The search result was not as expected", 1, uut.list("hobbit").length);
+
+        uut.add(new Book("The Hobbit", "J.R.R. Tolkien", new BigDecimal(99)), 1);
+        Assert.assertEquals("A cached search result was returned after a book was added",
+                2, uut.list("hobbit").length);
+    }
+
+    @Test
+    public void buyBooksFromSeveralPartitions() {
+        Book hobbit = new Book("The Hobbit", "J.R.R. Tolkien", new BigDecimal(150));
+        Book saturn = new Book("The Rings of Saturn", "W.G. Sebald", new BigDecimal(120));
+        Book missing = new Book("Missing", "Nobody", new BigDecimal(1));
+
+        int[] results = uut.buy(hobbit, missing, saturn, hobbit);
+
+        Assert.assertArrayEquals("The results were not as expected", new int[] {
+                BuyResult.OK.toValue(), BuyResult.DOES_NOT_EXIST.toValue(),
+                BuyResult.OK.toValue(), BuyResult.NOT_IN_STOCK.toValue()}, results);
+    }
+
+    @Test
+    public void buyAllFromSeveralPartitionsOrNothing() {
+        Book[] books = uut.list(null);
+
+        // Asks for two copies of each book in turn so the missing copies are found in every partition.
+        for (Book scarce : books) {
+            Book[] cart = Arrays.copyOf(books, books.length + 1);
+            cart[books.length] = scarce;
+
+            int[] results = uut.buyAll(cart);
+
+            Assert.assertEquals("The scarce book was bought", BuyResult.NOT_IN_STOCK.toValue(),
+                    results[books.length]);
+        }
+
+        int[] results = uut.buyAll(books);
+
+        Assert.assertArrayEquals("Copies were bought by the failed purchases", new int[] {0, 0, 0, 0}, results);
+        Assert.assertEquals("Not all copies were bought", BuyResult.NOT_IN_STOCK.toValue(), uut.buy(books[0])[0]);
+    }
+
+    @Test
+    public void failedBuyAllReportsEveryBook() {
+        List<Book> books = new ArrayList<>();
+
+        // Enough books that they are spread over every partition.
+        for (int i = 0; i < 40; i++) {
+            Book book = new Book("Volume " + i, "Encyclopedia", new BigDecimal(i));
+            uut.add(book, 1);
+            books.add(book);
+        }
+
+        Book sold = books.get(3);
+        uut.buy(sold);
+
+        List<Book> cart = new ArrayList<>(books);
+        cart.add(new Book("Missing", "Nobody", new BigDecimal(1)));
+
+        int[] results = uut.buyAll(cart.toArray(new Book[0]));
+
+        for (int i = 0; i < books.size(); i++) {
+            int expected = books.get(i).equals(sold) ? BuyResult.NOT_IN_STOCK.toValue()
+                    : BuyResult.CANCELLED.toValue();
+            Assert.assertEquals("The status of " + books.get(i) + " was not as expected", expected, results[i]);
+        }
+
+        Assert.assertEquals("The status of the missing book was not as expected",
+                BuyResult.DOES_NOT_EXIST.toValue(), results[books.size()]);
+
+        for (Book book : books) {
+            if (!book.equals(sold)) {
+                Assert.assertArrayEquals("A copy of " + book + " was taken by the failed purchase",
+                        new int[] {BuyResult.OK.toValue()}, uut.buy(book));
+            }
+        }
+    }
+
+    @Test
+    public void addAllAndRemove() {
+        Map<Book, Integer> books = new LinkedHashMap<>();
+
+        for (int i = 0; i < 20; i++) {
+            books.put(new Book("Volume " + i, "Encyclopedia", new BigDecimal(i)), 2);
+        }
+
+        uut.addAll(books);
+        Book volume = new Book("Volume 7", "Encyclopedia", new BigDecimal(7));
+
+        Assert.assertEquals("Not all books were added", 24, uut.list(null).length);
+        Assert.assertEquals("The copies were not removed", 2, uut.remove(volume, 5));
+        Assert.assertArrayEquals("A removed copy was bought", new int[] {BuyResult.NOT_IN_STOCK.toValue()},
+                uut.buy(volume));
+    }
+
+    @Test
+    public void addAllWithNegativeQuantityAddsNothing() {
+        Map<Book, Integer> books = new LinkedHashMap<>();
+        books.put(new Book("Valid", "Author", new BigDecimal(1)), 1);
+        books.put(new Book("Invalid", "Author", new BigDecimal(1)), -1);
+
+        try {
+            uut.addAll(books);
+            Assert.fail("A negative quantity was accepted");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("A book was added", 4, uut.list(null).length);
+        }
+    }
+
+    @Test
+    public void streamBooks() {
+        Set<String> titles = uut.stream().map(Book::getTitle).collect(Collectors.toSet());
+        Assert.assertEquals("The stream did not contain all books", 4, titles.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noPartitions() {
+        new PartitionedBookList(0);
+    }
+
+    @Test
+    public void searchOnPoolOfCaller() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+
+        try {
+            PartitionedBookList bookList = new PartitionedBookList(PARTITIONS, pool);
+            uut.stream().forEach(book -> bookList.add(book, 1));
+
+            Assert.assertEquals("The search on the pool of the caller was not as expected",
+                    3, bookList.list("rings tolkien", SearchOptions.ANY_WORD, 10).length);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noPool() {
+        new PartitionedBookList(PARTITIONS, null);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares the heap used by the postings of a word index with {@link Postings} and with the boxed
+ * {@code HashMap<String, List<Integer>>} that the index used before. Not a unit test, run it with
+ *
+ * <pre>
+ * java -Xmx3g inventory.PostingsMemoryBenchmark [books] [vocabulary]
+ * </pre>
+ *
+ * Every book has six words, four for the title and two for the author, drawn from the vocabulary with a skew
+ * towards the first words, so a few words are very common as in real titles. The heap is measured after a full
+ * collection before and after the index is built, and the words themselves are created before that so only the
+ * maps and the postings are counted. The time to read every id of every word is measured as well.
+ */
+public class PostingsMemoryBenchmark {
+    private static final int WORDS_PER_BOOK = 6;
+
+    private PostingsMemoryBenchmark() {
+
+    }
+
+    public static void main(String[] args) throws Exception {
+        int numberOfBooks = SyntheticCatalog.argument(args, 0, 1000000);
+        int vocabularySize = SyntheticCatalog.argument(args, 1, 200000);
+        String[] vocabulary = new String[vocabularySize];
+
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = "w" + Integer.toString(i, Character.MAX_RADIX);
+        }
+
+        System.out.printf("%,d books, %,d words per book, vocabulary of %,d words%n",
+                numberOfBooks, WORDS_PER_BOOK, vocabularySize);
+
+        long postings = 0;
+        long before = SyntheticCatalog.usedHeap();
+        Map<String, List<Integer>> boxed = new HashMap<>();
+
+        for (int bookId = 0; bookId < numberOfBooks; bookId++) {
+            for (int word : wordsOf(bookId, vocabularySize)) {
+                List<Integer> ids = boxed.computeIfAbsent(vocabulary[word], key -> new ArrayList<>());
+
+                // A word that appears twice in a book is only indexed once, like in Postings.
+                if (ids.isEmpty() || ids.get(ids.size() - 1) != bookId) {
+                    ids.add(bookId);
+                    postings++;
+                }
+            }
+        }
+
+        long boxedBytes = SyntheticCatalog.usedHeap() - before;
+        long start = System.nanoTime();
+        long sum = 0;
+
+        for (List<Integer> ids : boxed.values()) {
+            for (Integer id : ids) {
+                sum += id;
+            }
+        }
+
+        long boxedNanos = System.nanoTime() - start;
+        boxed = null;
+
+        before = SyntheticCatalog.usedHeap();
+        Map<String, Postings> compact = new HashMap<>();
+
+        for (int bookId = 0; bookId < numberOfBooks; bookId++) {
+            for (int word : wordsOf(bookId, vocabularySize)) {
+                compact.computeIfAbsent(vocabulary[word], key -> new Postings()).add(bookId);
+            }
+        }
+
+        long compactBytes = SyntheticCatalog.usedHeap() - before;
+        start = System.nanoTime();
+        long compactSum = 0;
+
+        for (Postings wordPostings : compact.values()) {
+            Postings.Cursor cursor = wordPostings.cursor();
+
+            for (int id = cursor.next(); id != Postings.Cursor.NO_MORE_IDS; id = cursor.next()) {
+                compactSum += id;
+            }
+        }
+
+        long compactNanos = System.nanoTime() - start;
+
+        System.out.printf("HashMap<String, List<Integer>>: %,6d MB, %5.1f ns per id read (sum %d)%n",
+                boxedBytes >> 20, boxedNanos / (double) postings, sum);
+        System.out.printf("HashMap<String, Postings>:      %,6d MB, %5.1f ns per id read (sum %d)%n",
+                compactBytes >> 20, compactNanos / (double) postings, compactSum);
+    }
+
+    /**
+     * Returns the words of a book, the same every time for the same book.
+     */
+    private static int[] wordsOf(int bookId, int vocabularySize) {
+        Random random = new Random(bookId);
+        int[] words = new int[WORDS_PER_BOOK];
+
+        for (int i = 0; i < words.length; i++) {
+            words[i] = (int) (Math.pow(random.nextDouble(), 3) * vocabularySize);
+        }
+
+        return words;
+    }
+}
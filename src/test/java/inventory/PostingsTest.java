@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test classes for {@link Postings}
+ */
+public class PostingsTest {
+
+    @Test
+    public void idsAreReturnedInOrder() {
+        int[] expected = {0, 1, 127, 128, 16383, 16384, 2097152, Integer.MAX_VALUE};
+        Postings uut = new Postings();
+
+        for (int id : expected) {
+            uut.add(id);
+        }
+
+        Assert.assertArrayEquals("The ids were not decoded as they were added", expected, toArray(uut));
+        Assert.assertEquals("The number of ids was not as expected", expected.length, uut.size());
+    }
+
+    @Test
+    public void sameIdIsOnlyAddedOnce() {
+        Postings uut = new Postings();
+        uut.add(3);
+        uut.add(3);
+        uut.add(5);
+
+        Assert.assertArrayEquals("A duplicated id was added twice", new int[] {3, 5}, toArray(uut));
+    }
+
+    @Test
+    public void manyIds() {
+        Postings uut = new Postings();
+
+        for (int id = 0; id < 100000; id += 7) {
+            uut.add(id);
+        }
+
+        int[] actuals = toArray(uut);
+        Assert.assertEquals("Not all ids were stored", 14286, actuals.length);
+        Assert.assertEquals("The last id was not decoded correctly", 99995, actuals[actuals.length - 1]);
+    }
+
+    private static int[] toArray(Postings postings) {
+        List<Integer> ids = new ArrayList<>();
+        Postings.Cursor cursor = postings.cursor();
+
+        for (int id = cursor.next(); id != Postings.Cursor.NO_MORE_IDS; id = cursor.next()) {
+            ids.add(id);
+        }
+
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Test classes for {@link QueryCache}
+ */
+public class QueryCacheTest {
+    private static final Book[] BOOKS = {new Book("Test Title", "Test Author", new BigDecimal("100.40"))};
+
+    @Test
+    public void resultIsOnlyReturnedForSamePublishedBooks() {
+        QueryCache uut = new QueryCache(10);
+        uut.put(query("test"), 5, BOOKS);
+
+        Assert.assertSame("The cached result was not returned", BOOKS, uut.get(query("test"), 5));
+        Assert.assertNull("A result for fewer published books was returned", uut.get(query("test"), 6));
+        Assert.assertEquals("The number of hits was not as expected", 1, uut.hits());
+        Assert.assertEquals("The number of misses was not as expected", 1, uut.misses());
+    }
+
+    @Test
+    public void olderResultDoesNotReplaceNewerResult() {
+        QueryCache uut = new QueryCache(10);
+        uut.put(query("test"), 6, BOOKS);
+        uut.put(query("test"), 5, new Book[0]);
+
+        Assert.assertSame("An older result replaced a newer result", BOOKS, uut.get(query("test"), 6));
+    }
+
+    @Test
+    public void leastRecentlyUsedResultIsEvicted() {
+        QueryCache uut = new QueryCache(1);
+        uut.put(query("first"), 1, BOOKS);
+        uut.put(query("second"), 1, BOOKS);
+
+        Assert.assertNull("The least recently used result was not evicted", uut.get(query("first"), 1));
+        Assert.assertSame("The most recently used result was evicted", BOOKS, uut.get(query("second"), 1));
+    }
+
+    @Test
+    public void cacheWithoutCapacityKeepsNothing() {
+        QueryCache uut = new QueryCache(0);
+        uut.put(query("test"), 1, BOOKS);
+
+        Assert.assertNull("A result was kept without capacity", uut.get(query("test"), 1));
+    }
+
+    @Test
+    public void searchIsOnlyComputedOnce() {
+        QueryCache uut = new QueryCache(10);
+        Book[] first = uut.search(query("test"), 1, 0, () -> BOOKS);
+        Book[] second = uut.search(query("test"), 1, 0, () -> {
+            throw new AssertionError("A cached result was searched again");
+        });
+
+        Assert.assertArrayEquals("The cached result was not as expected", BOOKS, second);
+        Assert.assertNotSame("The cached array was shared with the caller", first, second);
+        Assert.assertEquals("The result from the offset was not as expected",
+                0, uut.search(query("test"), 1, 1, () -> BOOKS).length);
+    }
+
+    private static QueryCache.Query query(String... words) {
+        return new QueryCache.Query(Arrays.asList(words), SearchOptions.ANY_WORD, 10);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ReservationWheelTest {
+    private static final long TICK = 100;
+    private static final long TIME_TO_LIVE = 1000;
+
+    private final Book book = new Book("The Hobbit", "J.R.R. Tolkien", new BigDecimal(150));
+
+    @Test
+    public void expireInDeadlineOrder() {
+        ReservationWheel uut = new ReservationWheel(TIME_TO_LIVE, TICK, 0);
+        List<Reservation> expired = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            uut.schedule(new Reservation(book, i, uut.tickOf(i * 10 + TIME_TO_LIVE)));
+        }
+
+        for (long now = 0; now < 3000; now += TICK) {
+            int before = expired.size();
+            uut.expire(now, expired::add);
+
+            for (int i = before; i < expired.size(); i++) {
+                Assert.assertTrue("A reservation expired too early",
+                        expired.get(i).getBookId() * 10 + TIME_TO_LIVE <= now);
+                Assert.assertTrue("A reservation expired too late",
+                        expired.get(i).getBookId() * 10 + TIME_TO_LIVE > now - TICK);
+            }
+        }
+
+        Assert.assertEquals("Not all reservations expired", 100, expired.size());
+    }
+
+    @Test
+    public void expireAfterLongPause() {
+        ReservationWheel uut = new ReservationWheel(TIME_TO_LIVE, TICK, 0);
+        List<Reservation> expired = new ArrayList<>();
+
+        uut.schedule(new Reservation(book, 0, uut.tickOf(TIME_TO_LIVE)));
+        uut.schedule(new Reservation(book, 1, uut.tickOf(100 * TIME_TO_LIVE)));
+        uut.expire(50 * TIME_TO_LIVE, expired::add);
+
+        Assert.assertEquals("The reservations were not as expected", 1, expired.size());
+
+        uut.expire(100 * TIME_TO_LIVE, expired::add);
+        Assert.assertEquals("The reservations were not as expected", 2, expired.size());
+    }
+
+    @Test
+    public void retryUntilExpired() {
+        ReservationWheel uut = new ReservationWheel(TIME_TO_LIVE, TICK, 0);
+        int[] tries = {0};
+
+        uut.schedule(new Reservation(book, 0, uut.tickOf(TIME_TO_LIVE)));
+
+        for (long now = 0; now < 2 * TIME_TO_LIVE; now += TICK) {
+            uut.expire(now, reservation -> ++tries[0] == 3);
+        }
+
+        Assert.assertEquals("The reservation was not tried again", 3, tries[0]);
+    }
+}
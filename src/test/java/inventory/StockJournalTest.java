@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Test class for {@link StockJournal}
+ */
+public class StockJournalTest {
+    private static final Book BOOK = new Book("Test Title", "Test Author", new BigDecimal("100.40"));
+    private static final Book OTHER_BOOK = new Book("Another Title", "Another Author", new BigDecimal("10.50"));
+
+    private Path file;
+
+    @Before
+    public void setup() throws IOException {
+        file = Files.createTempFile("stock", ".journal");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void replay() throws IOException {
+        try (StockJournal journal = StockJournal.open(file, 0, (book, delta) -> { })) {
+            journal.append(BOOK, 10);
+            journal.append(OTHER_BOOK, 3);
+            journal.awaitDurable(journal.append(BOOK, -1));
+        }
+
+        List<String> changes = replay(0);
+        Assert.assertEquals("The replayed changes were not as expected", 3, changes.size());
+        Assert.assertEquals("The first change was not as expected", BOOK + " 10", changes.get(0));
+        Assert.assertEquals("The last change was not as expected", BOOK + " -1", changes.get(2));
+
+        Assert.assertEquals("Changes that were already applied were replayed", 1, replay(2).size());
+    }
+
+    @Test
+    public void sequenceContinuesAfterReopen() throws IOException {
+        try (StockJournal journal = StockJournal.open(file, 0, (book, delta) -> { })) {
+            journal.append(BOOK, 10);
+        }
+
+        try (StockJournal journal = StockJournal.open(file, 0, (book, delta) -> { })) {
+            Assert.assertEquals("The sequence number did not continue", 2, journal.append(BOOK, -1));
+        }
+
+        try (StockJournal journal = StockJournal.open(file, 5, (book, delta) -> { })) {
+            Assert.assertEquals("The sequence number did not continue after the snapshot", 6, journal.append(BOOK, -1));
+        }
+    }
+
+    @Test
+    public void partlyWrittenRecordIsDropped() throws IOException {
+        try (StockJournal journal = StockJournal.open(file, 0, (book, delta) -> { })) {
+            journal.append(BOOK, 10);
+            journal.append(BOOK, -1);
+        }
+
+        Files.write(file, new byte[] {0, 0, 0, 40, 1, 2, 3, 4, 5}, StandardOpenOption.APPEND);
+
+        try (StockJournal journal = StockJournal.open(file, 0, (book, delta) -> { })) {
+            journal.append(OTHER_BOOK, 2);
+        }
+
+        List<String> changes = replay(0);
+        Assert.assertEquals("The partly written record was not dropped", 3, changes.size());
+        Assert.assertEquals("The change after the partly written record was lost", OTHER_BOOK + " 2", changes.get(2));
+    }
+
+    @Test
+    public void truncate() throws IOException {
+        try (StockJournal journal = StockJournal.open(file, 0, (book, delta) -> { })) {
+            journal.append(BOOK, 10);
+            journal.append(BOOK, -1);
+            journal.awaitDurable(journal.append(BOOK, -1));
+
+            journal.truncate(2);
+            journal.append(OTHER_BOOK, 5);
+        }
+
+        List<String> changes = replay(0);
+        Assert.assertEquals("The journal was not truncated as expected", 2, changes.size());
+        Assert.assertEquals("A change after the truncation was lost", OTHER_BOOK + " 5", changes.get(1));
+    }
+
+    @Test
+    public void concurrentChangesAreDurable() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+
+        try (StockJournal journal = StockJournal.open(file, 0, (book, delta) -> { })) {
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 100; j++) {
+                        journal.awaitDurable(journal.append(BOOK, -1));
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals("Not all changes were written", 800, replay(0).size());
+    }
+
+    private List<String> replay(long afterSequence) throws IOException {
+        List<String> changes = new ArrayList<>();
+
+        StockJournal.open(file, afterSequence, (book, delta) -> changes.add(book + " " + delta)).close();
+        return changes;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class StockReservationsTest {
+    private static final long TIME_TO_LIVE = TimeUnit.MINUTES.toNanos(15);
+
+    private final Book book = new Book("The Hobbit", "J.R.R. Tolkien", new BigDecimal(150));
+    private IndexedBookList bookList;
+    private StockReservations uut;
+    private Path snapshot;
+
+    @Before
+    public void setup() {
+        bookList = new IndexedBookList();
+        bookList.add(book, 2);
+        uut = new StockReservations(bookList, TIME_TO_LIVE, TimeUnit.NANOSECONDS);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        uut.close();
+
+        if (snapshot != null) {
+            Files.deleteIfExists(snapshot);
+        }
+    }
+
+    @Test
+    public void reserveTakesCopiesFromStock() {
+        Assert.assertNotNull("The first copy was not reserved", uut.reserve(book));
+        Assert.assertNotNull("The second copy was not reserved", uut.reserve(book));
+        Assert.assertNull("A copy that is not in stock was reserved", uut.reserve(book));
+        Assert.assertNull("A book that does not exist was reserved",
+                uut.reserve(new Book("not", "in stock", new BigDecimal(100))));
+
+        Assert.assertEquals("The copies in stock were not as expected", 0, bookList.getCopiesOfBookInStock(book));
+        Assert.assertEquals("The reserved copies were not as expected", 2, bookList.getReservedCopiesOfBook(book));
+        Assert.assertArrayEquals("A reserved copy was bought", new int[] {BuyResult.NOT_IN_STOCK.toValue()},
+                bookList.buy(book));
+    }
+
+    @Test
+    public void releaseGivesCopyBack() {
+        Reservation reservation = uut.reserve(book);
+
+        uut.release(reservation);
+        uut.release(reservation);
+
+        Assert.assertEquals("The copies in stock were not as expected", 2, bookList.getCopiesOfBookInStock(book));
+        Assert.assertEquals("The reserved copies were not as expected", 0, bookList.getReservedCopiesOfBook(book));
+    }
+
+    @Test
+    public void reservationsExpire() {
+        long reserved = System.nanoTime();
+        uut.reserve(book);
+
+        uut.expire(reserved + TIME_TO_LIVE / 2);
+        Assert.assertEquals("The reservation expired too early", 1, bookList.getReservedCopiesOfBook(book));
+
+        uut.expire(reserved + 2 * TIME_TO_LIVE);
+        Assert.assertEquals("The reservation did not expire", 0, bookList.getReservedCopiesOfBook(book));
+        Assert.assertEquals("The copy was not given back", 2, bookList.getCopiesOfBookInStock(book));
+    }
+
+    @Test
+    public void buyReservedCopies() {
+        Book[] books = {book, book};
+        Reservation[] reservations = {uut.reserve(book), uut.reserve(book)};
+
+        int[] results = uut.buyAll(books, reservations);
+
+        Assert.assertArrayEquals("The reserved copies were not bought", new int[] {0, 0}, results);
+        Assert.assertEquals("The reserved copies were not as expected", 0, bookList.getReservedCopiesOfBook(book));
+
+        uut.release(reservations[0]);
+        uut.expire(System.nanoTime() + 2 * TIME_TO_LIVE);
+        Assert.assertEquals("A bought copy was given back", 0, bookList.getCopiesOfBookInStock(book));
+    }
+
+    @Test
+    public void buyExpiredReservation() {
+        Reservation reservation = uut.reserve(book);
+        uut.expire(System.nanoTime() + 2 * TIME_TO_LIVE);
+
+        int[] results = uut.buyAll(new Book[] {book, book}, new Reservation[] {reservation, null});
+
+        Assert.assertArrayEquals("The copies in stock were not bought", new int[] {0, 0}, results);
+        Assert.assertEquals("The copies in stock were not as expected", 0, bookList.getCopiesOfBookInStock(book));
+    }
+
+    @Test
+    public void failedPurchaseKeepsReservations() {
+        Reservation reservation = uut.reserve(book);
+        Book missing = new Book("not", "in stock", new BigDecimal(100));
+
+        int[] results = uut.buyAll(new Book[] {book, missing}, new Reservation[] {reservation, null});
+
+        Assert.assertArrayEquals("The results were not as expected", new int[] {
+                BuyResult.CANCELLED.toValue(), BuyResult.DOES_NOT_EXIST.toValue()}, results);
+        Assert.assertEquals("The reservation was not kept", 1, bookList.getReservedCopiesOfBook(book));
+
+        uut.expire(System.nanoTime() + 2 * TIME_TO_LIVE);
+        Assert.assertEquals("The kept reservation did not expire", 2, bookList.getCopiesOfBookInStock(book));
+    }
+
+    @Test
+    public void snapshotDuringReservationsCountsEveryCopy() throws Exception {
+        snapshot = Files.createTempFile("inventory", ".snapshot");
+        AtomicBoolean done = new AtomicBoolean();
+        Thread reserver = new Thread(() -> {
+            while (!done.get()) {
+                Reservation reservation = uut.reserve(book);
+
+                if (reservation != null) {
+                    uut.release(reservation);
+                }
+            }
+        });
+        reserver.start();
+
+        try {
+            for (int i = 0; i < 200; i++) {
+                bookList.writeSnapshot(snapshot);
+                Assert.assertEquals("A copy was lost or counted twice", 2,
+                        IndexedBookList.readSnapshot(snapshot).getCopiesOfBookInStock(book));
+            }
+        } finally {
+            done.set(true);
+            reserver.join();
+        }
+    }
+
+    @Test
+    public void snapshotIncludesReservedCopies() throws IOException {
+        snapshot = Files.createTempFile("inventory", ".snapshot");
+        uut.reserve(book);
+
+        bookList.writeSnapshot(snapshot);
+
+        Assert.assertEquals("The reserved copy was not in the snapshot", 2,
+                IndexedBookList.readSnapshot(snapshot).getCopiesOfBookInStock(book));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares the heap used by an {@link IndexedBookList} that is loaded by {@link CsvBookInventoryParser}, whose books
+ * share their title and author strings, with one whose books have their own copies of them, as they had before the
+ * parser used a {@link StringDictionary}. Not a unit test, run it with
+ *
+ * <pre>
+ * java inventory.StringDictionaryMemoryBenchmark [rows] [authors] [titles]
+ * </pre>
+ *
+ * Every row has one of the authors and one of the titles, and the same title and author may be sold at several
+ * prices. The heap is measured after a full collection with only the book list left, and the number of distinct
+ * String instances that the titles and authors of the books refer to is counted.
+ */
+public class StringDictionaryMemoryBenchmark {
+    private StringDictionaryMemoryBenchmark() {
+
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = SyntheticCatalog.argument(args, 0, 200000);
+        int numberOfAuthors = SyntheticCatalog.argument(args, 1, 2000);
+        int numberOfTitles = SyntheticCatalog.argument(args, 2, 20000);
+        byte[] inventory = inventory(rows, numberOfAuthors, numberOfTitles);
+
+        System.out.printf("%,d rows, %,d authors, %,d titles%n", rows, numberOfAuthors, numberOfTitles);
+        measure("shared strings:", inventory, false);
+        measure("copied strings:", inventory, true);
+    }
+
+    private static void measure(String name, byte[] inventory, boolean copyStrings) throws Exception {
+        long before = SyntheticCatalog.usedHeap();
+        IndexedBookList bookList = load(inventory, copyStrings);
+        long used = SyntheticCatalog.usedHeap() - before;
+        Map<String, Boolean> strings = new IdentityHashMap<>();
+
+        bookList.stream().forEach(book -> {
+            strings.put(book.getTitle(), Boolean.TRUE);
+            strings.put(book.getAuthor(), Boolean.TRUE);
+        });
+
+        System.out.printf("%s %6.1f MB, %,8d books, %,8d String instances for titles and authors%n",
+                name, used / 1048576.0, bookList.list(null).length, strings.size());
+    }
+
+    private static IndexedBookList load(byte[] inventory, boolean copyStrings) throws IOException {
+        Map<Book, Integer> books = new LinkedHashMap<>();
+
+        new CsvBookInventoryParser().parse(
+                new InputStreamReader(new ByteArrayInputStream(inventory), StandardCharsets.UTF_8),
+                (book, quantity) -> {
+                    Book added = copyStrings
+                            ? new Book(new String(book.getTitle()), new String(book.getAuthor()), book.getPrice())
+                            : book;
+                    books.merge(added, quantity, Integer::sum);
+                });
+
+        IndexedBookList bookList = new IndexedBookList();
+        bookList.addAll(books);
+
+        return bookList;
+    }
+
+    private static byte[] inventory(int rows, int numberOfAuthors, int numberOfTitles) {
+        String[] words = SyntheticCatalog.words();
+        Random random = new Random(2);
+        String[] authors = new String[numberOfAuthors];
+        String[] titles = new String[numberOfTitles];
+
+        for (int i = 0; i < authors.length; i++) {
+            authors[i] = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)];
+        }
+
+        for (int i = 0; i < titles.length; i++) {
+            titles[i] = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)] + " "
+                    + words[random.nextInt(words.length)];
+        }
+
+        StringBuilder inventory = new StringBuilder();
+
+        for (int i = 0; i < rows; i++) {
+            inventory.append(titles[random.nextInt(titles.length)]).append(';')
+                    .append(authors[random.nextInt(authors.length)]).append(';')
+                    .append(100 + random.nextInt(90000) / 100.0).append(';')
+                    .append(1 + random.nextInt(20)).append('\n');
+        }
+
+        return inventory.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Made up books and a throughput loop for the benchmarks in this package. The same seeds are used every time so
+ * the runs can be compared with each other.
+ */
+final class SyntheticCatalog {
+    static final int WORDS = 5000;
+
+    private SyntheticCatalog() {
+
+    }
+
+    static int argument(String[] args, int index, int defaultValue) {
+        return args.length > index ? Integer.parseInt(args[index]) : defaultValue;
+    }
+
+    /**
+     * Returns random lower case words of four to nine letters.
+     */
+    static String[] words() {
+        return words(WORDS);
+    }
+
+    /**
+     * Returns random lower case words of four to nine letters, the first ones are the same as those of
+     * {@link #words()}.
+     */
+    static String[] words(int numberOfWords) {
+        Random random = new Random(1);
+        String[] words = new String[numberOfWords];
+
+        for (int i = 0; i < words.length; i++) {
+            char[] word = new char[4 + random.nextInt(6)];
+
+            for (int j = 0; j < word.length; j++) {
+                word[j] = (char) ('a' + random.nextInt(26));
+            }
+
+            words[i] = new String(word);
+        }
+
+        return words;
+    }
+
+    /**
+     * Returns books with a title of three words and an author of two words. Some books may be equal.
+     */
+    static Book[] books(int numberOfBooks, String[] words) {
+        Random random = new Random(2);
+        Book[] books = new Book[numberOfBooks];
+
+        for (int i = 0; i < books.length; i++) {
+            String title = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)] + " "
+                    + words[random.nextInt(words.length)];
+            String author = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)];
+            books[i] = new Book(title, author, BigDecimal.valueOf(100 + random.nextInt(90000), 2));
+        }
+
+        return books;
+    }
+
+    /**
+     * Returns the heap that is used after a few full collections.
+     */
+    static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Returns a percentile of sorted latencies in nanoseconds, in milliseconds.
+     */
+    static double percentile(long[] sortedLatencies, double percentile) {
+        if (sortedLatencies.length == 0) {
+            return 0;
+        }
+
+        int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(index, 0)] / 1e6;
+    }
+
+    /**
+     * Runs the operation on the threads for one second of warm up and then for the measured seconds.
+     *
+     * @return the number of operations per second after the warm up.
+     */
+    static double throughput(int threads, int seconds, Runnable operation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        LongAdder count = new LongAdder();
+        long measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                long now;
+
+                while ((now = System.nanoTime()) < end) {
+                    operation.run();
+
+                    if (now >= measureFrom) {
+                        count.increment();
+                    }
+                }
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        executor.shutdown();
+
+        return count.sum() / (double) seconds;
+    }
+}
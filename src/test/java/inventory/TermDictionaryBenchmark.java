@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Measures the memory and the lookup latency of {@link TermDictionary} and the latency of search-as-you-type. Not a
+ * unit test, run it with
+ *
+ * <pre>
+ * java inventory.TermDictionaryBenchmark [words] [books] [typed titles]
+ * </pre>
+ *
+ * The heap used by random words of 4 to 9 letters is measured after a full collection, once in the
+ * {@code ConcurrentHashMap<String, Postings>} that the index used before and once in a {@link TermDictionary}.
+ * Then the average time of a prefix lookup and of lookups within one and two edits is measured on the dictionary.
+ *
+ * Finally an {@link IndexedBookList} of made up books, without a query cache, is searched once for every keystroke
+ * while the titles of random books are typed, with prefix matching and one edit, like the CLI does.
+ */
+public class TermDictionaryBenchmark {
+    private static final int LOOKUPS = 1000;
+    private static final int FUZZY_LOOKUPS = 200;
+    private static final int COPIES = 1;
+
+    private TermDictionaryBenchmark() {
+
+    }
+
+    public static void main(String[] args) throws Exception {
+        int numberOfWords = SyntheticCatalog.argument(args, 0, 500000);
+        int numberOfBooks = SyntheticCatalog.argument(args, 1, 200000);
+        int typedTitles = SyntheticCatalog.argument(args, 2, 200);
+
+        String[] words = SyntheticCatalog.words(numberOfWords);
+        long before = SyntheticCatalog.usedHeap();
+        Map<String, Postings> map = new ConcurrentHashMap<>();
+
+        for (String word : words) {
+            map.put(new String(word.toCharArray()), new Postings());
+        }
+
+        long mapBytes = SyntheticCatalog.usedHeap() - before;
+        map = null;
+
+        before = SyntheticCatalog.usedHeap();
+        TermDictionary dictionary = new TermDictionary();
+
+        for (String word : words) {
+            dictionary.getOrAdd(new String(word.toCharArray()));
+        }
+
+        long dictionaryBytes = SyntheticCatalog.usedHeap() - before;
+
+        System.out.printf("%,d words with empty postings%n", numberOfWords);
+        System.out.printf("ConcurrentHashMap<String, Postings>: %6.1f MB%n", mapBytes / 1048576.0);
+        System.out.printf("TermDictionary:                      %6.1f MB%n", dictionaryBytes / 1048576.0);
+
+        int[] matches = new int[1];
+        TermDictionary.Visitor counter = (postings, distance) -> matches[0]++;
+
+        // Runs every lookup once before it is measured.
+        for (int run = 0; run < 2; run++) {
+            long start = System.nanoTime();
+
+            for (int i = 0; i < LOOKUPS; i++) {
+                dictionary.forEachWithPrefix(words[i].substring(0, 3), counter);
+            }
+
+            long prefixNanos = (System.nanoTime() - start) / LOOKUPS;
+            start = System.nanoTime();
+
+            for (int i = 0; i < FUZZY_LOOKUPS; i++) {
+                dictionary.forEachWithinDistance(words[i], 1, counter);
+            }
+
+            long oneEditNanos = (System.nanoTime() - start) / FUZZY_LOOKUPS;
+            start = System.nanoTime();
+
+            for (int i = 0; i < FUZZY_LOOKUPS; i++) {
+                dictionary.forEachWithinDistance(words[i], 2, counter);
+            }
+
+            long twoEditsNanos = (System.nanoTime() - start) / FUZZY_LOOKUPS;
+
+            if (run == 1) {
+                System.out.printf("lookup of a 3 letter prefix %,8.1f us, within 1 edit %,8.1f us, "
+                        + "within 2 edits %,8.1f us%n", prefixNanos / 1e3, oneEditNanos / 1e3, twoEditsNanos / 1e3);
+            }
+        }
+
+        typeTitles(numberOfBooks, typedTitles);
+    }
+
+    private static void typeTitles(int numberOfBooks, int typedTitles) {
+        Book[] books = SyntheticCatalog.books(numberOfBooks, SyntheticCatalog.words());
+        IndexedBookList bookList = new IndexedBookList(0);
+        Map<Book, Integer> inventory = new LinkedHashMap<>();
+
+        for (Book book : books) {
+            inventory.put(book, COPIES);
+        }
+
+        bookList.addAll(inventory);
+
+        SearchOptions asYouType = new SearchOptions(SearchOptions.Operator.AND, true, 1);
+        Random random = new Random(3);
+        long[] latencies = new long[0];
+
+        // The first half of the titles warms up the JVM and is not measured.
+        for (int run = 0; run < 2; run++) {
+            int count = 0;
+            latencies = new long[typedTitles * 32];
+
+            for (int i = 0; i < typedTitles; i++) {
+                String title = books[random.nextInt(books.length)].getTitle();
+
+                for (int end = 1; end <= title.length() && count < latencies.length; end++) {
+                    long start = System.nanoTime();
+                    bookList.list(title.substring(0, end), asYouType, 10);
+                    latencies[count++] = System.nanoTime() - start;
+                }
+            }
+
+            latencies = Arrays.copyOf(latencies, count);
+        }
+
+        Arrays.sort(latencies);
+
+        System.out.printf("%,d books, %d keystrokes: p50 %.2f ms, p99 %.2f ms, max %.2f ms per keystroke%n",
+                numberOfBooks, latencies.length, SyntheticCatalog.percentile(latencies, 0.50),
+                SyntheticCatalog.percentile(latencies, 0.99), SyntheticCatalog.percentile(latencies, 1.0));
+    }
+}
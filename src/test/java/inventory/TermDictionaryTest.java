@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test classes for {@link TermDictionary}
+ */
+public class TermDictionaryTest {
+
+    private static final int NUMBER_OF_TERMS = 5000;
+
+    private TermDictionary uut;
+    private List<Postings> postings;
+
+    @Before
+    public void setup() {
+        uut = new TermDictionary();
+        postings = new ArrayList<>();
+
+        // Enough words to merge the new words into the sorted segment a few times.
+        for (int i = 0; i < NUMBER_OF_TERMS; i++) {
+            postings.add(uut.getOrAdd("word" + i));
+        }
+    }
+
+    @Test
+    public void getAfterMerge() {
+        for (int i = 0; i < NUMBER_OF_TERMS; i++) {
+            Assert.assertSame("The wrong postings was returned for word" + i, postings.get(i), uut.get("word" + i));
+        }
+
+        Assert.assertNull("A missing word was found", uut.get("word"));
+        Assert.assertSame("getOrAdd did not return the existing postings", postings.get(7), uut.getOrAdd("word7"));
+    }
+
+    @Test
+    public void prefix() {
+        List<Postings> matches = new ArrayList<>();
+        uut.forEachWithPrefix("word123", (match, distance) -> matches.add(match));
+
+        // word123 and word1230 to word1239
+        Assert.assertEquals("The prefix did not match the expected words", 11, matches.size());
+        Assert.assertTrue("word1234 was not matched", matches.contains(postings.get(1234)));
+    }
+
+    @Test
+    public void fuzzy() {
+        uut.getOrAdd("tolkien");
+        uut.getOrAdd("tolstoy");
+        List<Integer> distances = new ArrayList<>();
+
+        uut.forEachWithinDistance("tolkein", 2, (match, distance) -> distances.add(distance));
+        Assert.assertEquals("tolkein was not matched to tolkien only", 1, distances.size());
+        Assert.assertEquals("The distance between tolkein and tolkien was wrong", 2, (int) distances.get(0));
+
+    }
+
+    @Test
+    public void fuzzyMatchesAllWordsWithinDistance() {
+        for (String term : new String[] {"word12", "wrd4321", "xword99"}) {
+            for (int maxEdits = 1; maxEdits <= 2; maxEdits++) {
+                List<Postings> matches = new ArrayList<>();
+                uut.forEachWithinDistance(term, maxEdits, (match, distance) -> matches.add(match));
+
+                List<Postings> expected = new ArrayList<>();
+                for (int i = 0; i < NUMBER_OF_TERMS; i++) {
+                    if (levenshtein("word" + i, term) <= maxEdits) {
+                        expected.add(postings.get(i));
+                    }
+                }
+
+                Assert.assertEquals("Wrong number of matches for " + term + " within " + maxEdits,
+                        expected.size(), matches.size());
+                Assert.assertTrue("Wrong matches for " + term + " within " + maxEdits, matches.containsAll(expected));
+            }
+        }
+    }
+
+    private static int levenshtein(String first, String second) {
+        int[][] distances = new int[first.length() + 1][second.length() + 1];
+
+        for (int i = 0; i <= first.length(); i++) {
+            for (int j = 0; j <= second.length(); j++) {
+                if (i == 0 || j == 0) {
+                    distances[i][j] = i + j;
+                } else {
+                    int substitution = distances[i - 1][j - 1] + (first.charAt(i - 1) == second.charAt(j - 1) ? 0 : 1);
+                    distances[i][j] = Math.min(substitution, Math.min(distances[i - 1][j], distances[i][j - 1]) + 1);
+                }
+            }
+        }
+
+        return distances[first.length()][second.length()];
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Compares the throughput of {@link Tokenizer} with the regular expression that cleaned the titles, authors and
+ * search strings before it. Not a unit test, run it with
+ *
+ * <pre>
+ * java inventory.TokenizerBenchmark [seconds] [rounds]
+ * </pre>
+ *
+ * Both tokenize the same titles and authors, with punctuation and letters outside of ASCII, on one thread. Each
+ * round measures both for the given number of seconds and the first round warms up the JVM.
+ */
+public class TokenizerBenchmark {
+    private static final String PUNCTUATION_REGEXP = "\\p{P}";
+    private static final String[] FIELDS = {
+        "The Lord of the Rings: The Fellowship of the Ring",
+        "J.R.R. Tolkien",
+        "Harry Potter and the Philosopher's Stone",
+        "Nineteen Eighty-Four (Penguin Modern Classics)",
+        "Mastering \u00e5\u00e4\u00f6",
+        "Generic Title",
+        "First Author",
+        "How To Spend Money",
+        "Rich Bloke",
+        "Desperados! - \"A story about gunslingers\""
+    };
+
+    private TokenizerBenchmark() {
+
+    }
+
+    public static void main(String[] args) {
+        int seconds = SyntheticCatalog.argument(args, 0, 2);
+        int rounds = SyntheticCatalog.argument(args, 1, 3);
+
+        for (int round = 1; round <= rounds; round++) {
+            double regexTokens = tokensPerSecond(seconds, TokenizerBenchmark::cleanInput);
+            double tokenizerTokens = tokensPerSecond(seconds, Tokenizer::tokenize);
+
+            System.out.printf("round %d: regex %5.1f M tokens/s, Tokenizer %5.1f M tokens/s%n",
+                    round, regexTokens / 1e6, tokenizerTokens / 1e6);
+        }
+    }
+
+    private static double tokensPerSecond(int seconds, Function<String, String[]> tokenizer) {
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long tokens = 0;
+        long now;
+
+        do {
+            for (String field : FIELDS) {
+                tokens += tokenizer.apply(field).length;
+            }
+
+            now = System.nanoTime();
+        } while (now < end);
+
+        return tokens / ((now - start) / 1e9);
+    }
+
+    /**
+     * The normalization that {@link Tokenizer} replaced. It used StringUtils.replaceAll, which is deprecated and
+     * compiles the expression on every call just like String.replaceAll.
+     */
+    private static String[] cleanInput(String input) {
+        String lowerCaseInput = StringUtils.lowerCase(input);
+        String inputWithoutPunctuation = lowerCaseInput.replaceAll(PUNCTUATION_REGEXP, " ");
+        String[] searchWords = StringUtils.split(inputWithoutPunctuation);
+
+        return Arrays.stream(searchWords).map(StringUtils::trimToEmpty).toArray(String[]::new);
+    }
+}
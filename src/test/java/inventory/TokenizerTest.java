@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package inventory;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * Test classes for {@link Tokenizer}
+ */
+public class TokenizerTest {
+
+    private static final Pattern PUNCTUATION = Pattern.compile("\\p{P}");
+    private static final Pattern WHITE_SPACE = Pattern.compile("\\s+");
+
+    @Test
+    public void tokenize() {
+        Assert.assertArrayEquals("The words were not split and cleaned as expected",
+                new String[] {"with", "punctuation", "part", "ii", "the", "best", "part"},
+                Tokenizer.tokenize("With. Punctuation:Part II, The Best Part!"));
+    }
+
+    @Test
+    public void tokenizeEmptyInput() {
+        Assert.assertEquals("Null did not give an empty array", 0, Tokenizer.tokenize(null).length);
+        Assert.assertEquals("An empty string did not give an empty array", 0, Tokenizer.tokenize("").length);
+        Assert.assertEquals("Only punctuation did not give an empty array", 0, Tokenizer.tokenize(" .,;- ").length);
+    }
+
+    @Test
+    public void tokenizeLikeRegularExpression() {
+        String[] inputs = {
+            "Mastering \u00e5\u00e4\u00f6",
+            "J.R.R. Tolkien",
+            "\u00abGuillemets\u00bb and \u201cquotes\u201d \u2014 dashes_underscores",
+            "\u00c5NGEST\t\u00d6VER\nTABS",
+            "Nineteen Eighty-Four (1984) [Centennial Edition]",
+            "   leading and trailing   "
+        };
+
+        for (String input : inputs) {
+            Assert.assertArrayEquals("The tokenizer did not match the regular expression for " + input,
+                    tokenizeWithRegularExpression(input), Tokenizer.tokenize(input));
+        }
+    }
+
+    private static String[] tokenizeWithRegularExpression(String input) {
+        String withoutPunctuation = PUNCTUATION.matcher(input.toLowerCase()).replaceAll(" ");
+        return Arrays.stream(WHITE_SPACE.split(withoutPunctuation)).filter(word -> !word.isEmpty())
+                .toArray(String[]::new);
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package server;
+
+import inventory.Book;
+import inventory.IndexedBookList;
+import inventory.SearchOptions;
+import inventory.StockReservations;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Test classes for {@link BookStoreServer}
+ */
+public class BookStoreServerTest {
+    private static final Pattern CART_ID = Pattern.compile("\"id\":\"([^\"]+)\"");
+
+    private IndexedBookList bookList;
+    private StockReservations reservations;
+    private BookStoreServer uut;
+
+    @Before
+    public void setup() throws IOException {
+        bookList = new IndexedBookList();
+        bookList.add(new Book("The Hobbit", "J.R.R. Tolkien", new BigDecimal("150.00")), 1);
+        bookList.add(new Book("The Rings of Saturn", "W.G. Sebald", new BigDecimal("120.00")), 5);
+        uut = startServer(bookList, 2, 10);
+    }
+
+    @After
+    public void tearDown() {
+        uut.close();
+        reservations.close();
+    }
+
+    @Test
+    public void searchForBooks() throws IOException {
+        Response response = request("GET", "/books?q=hobbit", null);
+
+        Assert.assertEquals("The status was not as expected", HttpURLConnection.HTTP_OK, response.status);
+        Assert.assertEquals("The search result was not as expected",
+                "{\"offset\":0,\"books\":[{\"title\":\"The Hobbit\",\"author\":\"J.R.R. Tolkien\",\"price\":150.00}]}",
+                response.body);
+    }
+
+    @Test
+    public void listBooksInPages() throws IOException {
+        Response response = request("GET", "/books?offset=1&limit=1", null);
+
+        Assert.assertEquals("The status was not as expected", HttpURLConnection.HTTP_OK, response.status);
+        Assert.assertTrue("The page did not contain the second book", response.body.contains("The Rings of Saturn"));
+        Assert.assertFalse("The page contained the first book", response.body.contains("The Hobbit"));
+    }
+
+    @Test
+    public void addBook() throws IOException {
+        Response response = request("POST", "/books", "title=Austerlitz&author=W.G.+Sebald&price=99.50&quantity=3");
+
+        Assert.assertEquals("The status was not as expected", HttpURLConnection.HTTP_CREATED, response.status);
+        Assert.assertEquals("The book was not added to the inventory",
+                1, bookList.list("austerlitz", SearchOptions.ANY_WORD, 10).length);
+    }
+
+    @Test
+    public void buyBook() throws IOException {
+        String book = "title=The+Hobbit&author=J.R.R.+Tolkien&price=150.00";
+
+        Response response = request("POST", "/buy", book);
+        Assert.assertEquals("The book was not bought", "{\"result\":\"OK\"}", response.body);
+
+        response = request("POST", "/buy", book);
+        Assert.assertEquals("A book that is not in stock was bought", "{\"result\":\"NOT_IN_STOCK\"}", response.body);
+    }
+
+    @Test
+    public void checkoutCart() throws IOException {
+        Response response = request("POST", "/carts", null);
+        Assert.assertEquals("The cart was not created", HttpURLConnection.HTTP_CREATED, response.status);
+
+        Matcher matcher = CART_ID.matcher(response.body);
+        Assert.assertTrue("The id of the cart was not returned", matcher.find());
+        String cart = "/carts/" + matcher.group(1);
+
+        request("POST", cart + "/books", "title=The+Rings+of+Saturn&author=W.G.+Sebald&price=120.00");
+        response = request("POST", cart + "/books", "title=The+Hobbit&author=J.R.R.+Tolkien&price=150.00");
+        Assert.assertTrue("The total price of the cart was not as expected",
+                response.body.contains("\"totalPrice\":270"));
+
+        response = request("POST", cart + "/checkout", null);
+        Assert.assertEquals("The status was not as expected", HttpURLConnection.HTTP_OK, response.status);
+        Assert.assertFalse("A book was not bought", response.body.contains("\"result\":\"NOT_IN_STOCK\""));
+        Assert.assertEquals("The reserved copy was not bought", "{\"result\":\"NOT_IN_STOCK\"}",
+                request("POST", "/buy", "title=The+Hobbit&author=J.R.R.+Tolkien&price=150.00").body);
+
+        response = request("POST", cart + "/checkout", null);
+        Assert.assertEquals("The cart was checked out twice", HttpURLConnection.HTTP_NOT_FOUND, response.status);
+    }
+
+    @Test
+    public void cartReservesCopies() throws IOException {
+        String cart = createCart();
+        String hobbit = "title=The+Hobbit&author=J.R.R.+Tolkien&price=150.00";
+
+        request("POST", cart + "/books", hobbit);
+
+        Response response = request("POST", "/buy", hobbit);
+        Assert.assertEquals("A copy that is reserved by a cart was bought",
+                "{\"result\":\"NOT_IN_STOCK\"}", response.body);
+    }
+
+    @Test
+    public void failedCheckoutKeepsCart() throws IOException {
+        String cart = createCart();
+        String hobbit = "title=The+Hobbit&author=J.R.R.+Tolkien&price=150.00";
+
+        request("POST", cart + "/books", hobbit);
+        request("POST", cart + "/books", hobbit);
+
+        Response response = request("POST", cart + "/checkout", null);
+        Assert.assertEquals("The status was not as expected", HttpURLConnection.HTTP_OK, response.status);
+        Assert.assertTrue("The missing copy was not reported", response.body.contains("\"result\":\"NOT_IN_STOCK\""));
+        Assert.assertFalse("A copy was bought", response.body.contains("\"result\":\"OK\""));
+
+        response = request("GET", cart, null);
+        Assert.assertEquals("The cart was removed by a failed checkout", HttpURLConnection.HTTP_OK, response.status);
+        Assert.assertEquals("The reserved copy was given back by a failed checkout", "{\"result\":\"NOT_IN_STOCK\"}",
+                request("POST", "/buy", hobbit).body);
+    }
+
+    @Test
+    public void missingParameterIsBadRequest() throws IOException {
+        Response response = request("POST", "/buy", "title=The+Hobbit&author=J.R.R.+Tolkien");
+
+        Assert.assertEquals("The status was not as expected", HttpURLConnection.HTTP_BAD_REQUEST, response.status);
+        Assert.assertEquals("The error was not as expected", "{\"error\":\"price is missing\"}", response.body);
+    }
+
+    @Test
+    public void unknownPathIsNotFound() throws IOException {
+        Response response = request("GET", "/books/unknown", null);
+        Assert.assertEquals("The status was not as expected", HttpURLConnection.HTTP_NOT_FOUND, response.status);
+    }
+
+    @Test
+    public void internalErrorDoesNotRevealFailure() throws IOException {
+        IndexedBookList failingBookList = new IndexedBookList() {
+            @Override
+            public Book[] list(String searchString, SearchOptions options, int offset, int limit) {
+                throw new IllegalStateException("Internal details");
+            }
+        };
+
+        uut.close();
+        uut = startServer(failingBookList, 1, 0);
+        Response response = request("GET", "/books", null);
+
+        Assert.assertEquals("The status was not as expected", HttpURLConnection.HTTP_INTERNAL_ERROR, response.status);
+        Assert.assertEquals("The error was not as expected",
+                "{\"error\":\"The request could not be handled\"}", response.body);
+    }
+
+    @Test
+    public void requestIsRejectedWhenQueueIsFull() throws Exception {
+        CountDownLatch searching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IndexedBookList blockingBookList = new IndexedBookList() {
+            @Override
+            public Book[] list(String searchString, SearchOptions options, int offset, int limit) {
+                searching.countDown();
+
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                return super.list(searchString, options, offset, limit);
+            }
+        };
+
+        uut.close();
+        uut = startServer(blockingBookList, 1, 0);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            Future<Response> blocked = executor.submit(() -> request("GET", "/books", null));
+            searching.await();
+
+            Response response = request("GET", "/books", null);
+            Assert.assertEquals("The request was not rejected", HttpURLConnection.HTTP_UNAVAILABLE, response.status);
+            Assert.assertEquals("The rejected request was not counted", 1, uut.getRejectedRequests());
+
+            release.countDown();
+            Assert.assertEquals("The blocked request did not complete",
+                    HttpURLConnection.HTTP_OK, blocked.get().status);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    private BookStoreServer startServer(IndexedBookList bookList, int workers, int queueSize) throws IOException {
+        if (reservations != null) {
+            reservations.close();
+        }
+
+        reservations = new StockReservations(bookList, 15, TimeUnit.MINUTES);
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        BookStoreServer server = new BookStoreServer(bookList, reservations, address, workers, queueSize, true);
+        server.start();
+
+        return server;
+    }
+
+    private String createCart() throws IOException {
+        Matcher matcher = CART_ID.matcher(request("POST", "/carts", null).body);
+        Assert.assertTrue("The id of the cart was not returned", matcher.find());
+
+        return "/carts/" + matcher.group(1);
+    }
+
+    private Response request(String method, String pathAndQuery, String body) throws IOException {
+        URL url = new URL("http", InetAddress.getLoopbackAddress().getHostAddress(), uut.getPort(), pathAndQuery);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+
+        if (body != null) {
+            connection.setDoOutput(true);
+
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        int status = connection.getResponseCode();
+        InputStream in = status < HttpURLConnection.HTTP_BAD_REQUEST ?
+                connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+        try (InputStream stream = in) {
+            byte[] buffer = new byte[4096];
+            int read = stream.read(buffer);
+
+            while (read != -1) {
+                content.write(buffer, 0, read);
+                read = stream.read(buffer);
+            }
+        }
+
+        return new Response(status, new String(content.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private static final class Response {
+        private final int status;
+        private final String body;
+
+        private Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
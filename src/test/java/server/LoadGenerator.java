@@ -0,0 +1,274 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package server;
+
+import inventory.Book;
+import inventory.IndexedBookList;
+import inventory.StockReservations;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates load against a {@link BookStoreServer} on the local machine and reports the throughput and the latency
+ * of the requests. Not a unit test, run it with
+ *
+ * <pre>
+ * java server.LoadGenerator [books] [workers] [queue size] [clients] [seconds]
+ * </pre>
+ *
+ * The server is started with an inventory of made up books. Each client sends one request at a time over a kept
+ * alive connection: 80% searches for two words, 10% pages of all books and 10% purchases. The first fifth of the
+ * run warms up the JVM and is not measured.
+ */
+public class LoadGenerator {
+    private static final int WORDS = 5000;
+    private static final int COPIES = 1000000;
+
+    private LoadGenerator() {
+
+    }
+
+    public static void main(String[] args) throws Exception {
+        int numberOfBooks = argument(args, 0, 100000);
+        int workers = argument(args, 1, Runtime.getRuntime().availableProcessors() * 2);
+        int queueSize = argument(args, 2, 64);
+        int clients = argument(args, 3, 16);
+        int seconds = argument(args, 4, 10);
+
+        String[] words = words();
+        Book[] books = books(numberOfBooks, words);
+        IndexedBookList bookList = new IndexedBookList();
+        Map<Book, Integer> inventory = new LinkedHashMap<>();
+
+        for (Book book : books) {
+            inventory.put(book, COPIES);
+        }
+
+        bookList.addAll(inventory);
+
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+
+        try (StockReservations reservations = new StockReservations(bookList, 15, TimeUnit.MINUTES);
+             BookStoreServer server = new BookStoreServer(bookList, reservations, address, workers, queueSize, true)) {
+            server.start();
+
+            long start = System.nanoTime();
+            long measureFrom = start + TimeUnit.SECONDS.toNanos(seconds) / 5;
+            long end = start + TimeUnit.SECONDS.toNanos(seconds);
+            ExecutorService executor = Executors.newFixedThreadPool(clients);
+            List<Future<Client>> futures = new ArrayList<>();
+
+            for (int i = 0; i < clients; i++) {
+                futures.add(executor.submit(new Client(server.getPort(), words, books, measureFrom, end)));
+            }
+
+            long[] latencies = new long[0];
+            int rejected = 0;
+            int failed = 0;
+
+            for (Future<Client> future : futures) {
+                Client client = future.get();
+                int offset = latencies.length;
+                latencies = Arrays.copyOf(latencies, offset + client.count);
+                System.arraycopy(client.latencies, 0, latencies, offset, client.count);
+                rejected += client.rejected;
+                failed += client.failed;
+            }
+
+            executor.shutdown();
+            Arrays.sort(latencies);
+            double measuredSeconds = (end - measureFrom) / 1e9;
+
+            System.out.printf("%d books, %d workers, queue of %d, %d clients, %d seconds%n",
+                    numberOfBooks, workers, queueSize, clients, seconds);
+            System.out.printf("%d requests, %.0f requests/s%n", latencies.length, latencies.length / measuredSeconds);
+            System.out.printf("latency p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                    percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 1.0));
+            System.out.printf("%d rejected with 503, %d failed%n", rejected, failed);
+        }
+    }
+
+    private static int argument(String[] args, int index, int defaultValue) {
+        return args.length > index ? Integer.parseInt(args[index]) : defaultValue;
+    }
+
+    private static double percentile(long[] sortedLatencies, double percentile) {
+        if (sortedLatencies.length == 0) {
+            return 0;
+        }
+
+        int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(index, 0)] / 1e6;
+    }
+
+    private static String[] words() {
+        Random random = new Random(1);
+        String[] words = new String[WORDS];
+
+        for (int i = 0; i < words.length; i++) {
+            char[] word = new char[4 + random.nextInt(6)];
+
+            for (int j = 0; j < word.length; j++) {
+                word[j] = (char) ('a' + random.nextInt(26));
+            }
+
+            words[i] = new String(word);
+        }
+
+        return words;
+    }
+
+    private static Book[] books(int numberOfBooks, String[] words) {
+        Random random = new Random(2);
+        Book[] books = new Book[numberOfBooks];
+
+        for (int i = 0; i < books.length; i++) {
+            String title = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)] + " "
+                    + words[random.nextInt(words.length)];
+            String author = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)];
+            books[i] = new Book(title, author, BigDecimal.valueOf(100 + random.nextInt(90000), 2));
+        }
+
+        return books;
+    }
+
+    /**
+     * Sends requests until the end of the run and records the latency of the requests that were sent after the
+     * warm up.
+     */
+    private static final class Client implements Callable<Client> {
+        private final int port;
+        private final String[] words;
+        private final Book[] books;
+        private final long measureFrom;
+        private final long end;
+        private long[] latencies;
+        private int count;
+        private int rejected;
+        private int failed;
+
+        private Client(int port, String[] words, Book[] books, long measureFrom, long end) {
+            this.port = port;
+            this.words = words;
+            this.books = books;
+            this.measureFrom = measureFrom;
+            this.end = end;
+            this.latencies = new long[1024];
+        }
+
+        @Override
+        public Client call() throws IOException {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long now = System.nanoTime();
+
+            while (now < end) {
+                int kind = random.nextInt(10);
+                int status;
+
+                if (kind < 8) {
+                    status = request("GET", "/books?q=" + words[random.nextInt(words.length)] + "+"
+                            + words[random.nextInt(words.length)], null);
+                } else if (kind < 9) {
+                    status = request("GET", "/books?offset=" + random.nextInt(books.length) + "&limit=20", null);
+                } else {
+                    Book book = books[random.nextInt(books.length)];
+                    status = request("POST", "/buy", "title=" + URLEncoder.encode(book.getTitle(), "UTF-8")
+                            + "&author=" + URLEncoder.encode(book.getAuthor(), "UTF-8")
+                            + "&price=" + book.getPrice().toPlainString());
+                }
+
+                long done = System.nanoTime();
+
+                if (now >= measureFrom) {
+                    record(done - now, status);
+                }
+
+                now = done;
+            }
+
+            return this;
+        }
+
+        private void record(long latency, int status) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+
+            latencies[count++] = latency;
+
+            if (status == HttpURLConnection.HTTP_UNAVAILABLE) {
+                rejected++;
+            } else if (status >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                failed++;
+            }
+        }
+
+        private int request(String method, String pathAndQuery, String body) throws IOException {
+            URL url = new URL("http", InetAddress.getLoopbackAddress().getHostAddress(), port, pathAndQuery);
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod(method);
+
+            if (body != null) {
+                connection.setDoOutput(true);
+
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+
+            int status = connection.getResponseCode();
+            InputStream in = status < HttpURLConnection.HTTP_BAD_REQUEST ?
+                    connection.getInputStream() : connection.getErrorStream();
+
+            // The whole response must be read for the connection to be reused by the next request.
+            try (InputStream stream = in) {
+                byte[] buffer = new byte[4096];
+                int read = stream == null ? -1 : stream.read(buffer);
+
+                while (read != -1) {
+                    read = stream.read(buffer);
+                }
+            }
+
+            return status;
+        }
+    }
+}
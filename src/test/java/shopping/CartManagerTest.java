@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package shopping;
+
+import inventory.Book;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+public class CartManagerTest {
+    private static final long IDLE_TIMEOUT = TimeUnit.MINUTES.toNanos(30);
+
+    private CartManager uut;
+
+    @After
+    public void tearDown() {
+        uut.close();
+    }
+
+    @Test
+    public void createAndGetCart() {
+        uut = new CartManager(null, 100, IDLE_TIMEOUT, TimeUnit.NANOSECONDS);
+        String id = uut.create();
+
+        Cart cart = uut.get(id);
+
+        Assert.assertNotNull("The cart was not found", cart);
+        Assert.assertSame("Another cart was returned", cart, uut.get(id));
+        Assert.assertNull("A cart that does not exist was found", uut.get("unknown"));
+    }
+
+    @Test
+    public void removeCartOnce() {
+        uut = new CartManager(null, 100, IDLE_TIMEOUT, TimeUnit.NANOSECONDS);
+        String id = uut.create();
+        Cart cart = uut.get(id);
+
+        Assert.assertTrue("The cart was not removed", uut.remove(id, cart));
+        Assert.assertFalse("The cart was removed twice", uut.remove(id, cart));
+        Assert.assertNull("The removed cart was found", uut.get(id));
+    }
+
+    @Test
+    public void evictIdleCarts() {
+        uut = new CartManager(null, 100, IDLE_TIMEOUT, TimeUnit.NANOSECONDS);
+        Cart cart = uut.get(uut.create());
+        cart.add(new Book("The Hobbit", "J.R.R. Tolkien", new BigDecimal(150)));
+        uut.create();
+
+        uut.evictIdle(System.nanoTime() + IDLE_TIMEOUT / 2);
+        Assert.assertEquals("A cart was evicted too early", 2, uut.size());
+
+        uut.evictIdle(System.nanoTime() + IDLE_TIMEOUT * 2);
+        Assert.assertEquals("The idle carts were not evicted", 0, uut.size());
+        Assert.assertEquals("The evicted cart was not cleared", 0, cart.getNumberOfBooks());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsedCart() {
+        uut = new CartManager(null, 1, IDLE_TIMEOUT, TimeUnit.NANOSECONDS);
+        String first = uut.create();
+        String second = uut.create();
+
+        Assert.assertNull("The least recently used cart was not evicted", uut.get(first));
+        Assert.assertNotNull("The new cart was evicted", uut.get(second));
+        Assert.assertEquals("The number of carts was not as expected", 1, uut.size());
+    }
+}
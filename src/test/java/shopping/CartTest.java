@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package shopping;
+
+import inventory.Book;
+import inventory.BuyResult;
+import inventory.IndexedBookList;
+import inventory.StockReservations;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+public class CartTest {
+    private final Book hobbit = new Book("The Hobbit", "J.R.R. Tolkien", new BigDecimal("150.25"));
+    private final Book saturn = new Book("The Rings of Saturn", "W.G. Sebald", new BigDecimal("120.50"));
+
+    @Test
+    public void addAndRemoveCopies() {
+        Cart uut = new Cart();
+
+        uut.add(hobbit);
+        uut.add(saturn);
+        uut.add(hobbit);
+
+        Assert.assertEquals("The quantity was not as expected", 2, uut.getQuantity(hobbit));
+        Assert.assertEquals("The number of books was not as expected", 3, uut.getNumberOfBooks());
+        Assert.assertEquals("The content was not as expected", Arrays.asList(hobbit, hobbit, saturn),
+                uut.getContent());
+
+        uut.remove(hobbit);
+        uut.remove(new Book("not", "in cart", new BigDecimal(100)));
+
+        Assert.assertEquals("The quantity was not as expected", 1, uut.getQuantity(hobbit));
+        Assert.assertEquals("The number of books was not as expected", 2, uut.getNumberOfBooks());
+    }
+
+    @Test
+    public void totalPriceIsExact() {
+        Cart uut = new Cart();
+
+        uut.add(hobbit);
+        uut.add(hobbit);
+        uut.add(saturn);
+        Assert.assertEquals("The total price was not as expected", new BigDecimal("421.00"), uut.getTotalPrice());
+
+        uut.remove(hobbit);
+        Assert.assertEquals("The total price was not as expected", new BigDecimal("270.75"), uut.getTotalPrice());
+
+        uut.clear();
+        Assert.assertEquals("The total price was not as expected", 0, uut.getTotalPrice().signum());
+        Assert.assertTrue("The cart was not cleared", uut.getContent().isEmpty());
+    }
+
+    @Test
+    public void removeUnreservedCopyFirst() {
+        IndexedBookList bookList = new IndexedBookList();
+        bookList.add(hobbit, 1);
+
+        try (StockReservations reservations = new StockReservations(bookList, 15, TimeUnit.MINUTES)) {
+            Cart uut = new Cart(reservations);
+
+            Assert.assertTrue("The first copy was not reserved", uut.add(hobbit));
+            Assert.assertFalse("A copy that is not in stock was reserved", uut.add(hobbit));
+
+            uut.remove(hobbit);
+            Assert.assertArrayEquals("The reservation was released", new int[] {BuyResult.NOT_IN_STOCK.toValue()},
+                    bookList.buy(hobbit));
+
+            uut.remove(hobbit);
+            Assert.assertArrayEquals("The reservation was not released", new int[] {BuyResult.OK.toValue()},
+                    bookList.buy(hobbit));
+        }
+    }
+
+    @Test
+    public void buyAllEmptiesCart() {
+        IndexedBookList bookList = new IndexedBookList();
+        bookList.add(hobbit, 1);
+        bookList.add(saturn, 1);
+
+        try (StockReservations reservations = new StockReservations(bookList, 15, TimeUnit.MINUTES)) {
+            Cart uut = new Cart(reservations);
+            uut.add(hobbit);
+            uut.add(saturn);
+            uut.add(hobbit);
+
+            Assert.assertArrayEquals("The cart was bought", new int[] {
+                    BuyResult.NOT_IN_STOCK.toValue(), BuyResult.NOT_IN_STOCK.toValue(),
+                    BuyResult.CANCELLED.toValue()}, uut.buyAll(bookList));
+            Assert.assertEquals("The cart was emptied", 3, uut.getNumberOfBooks());
+
+            uut.remove(hobbit);
+
+            Assert.assertArrayEquals("The cart was not bought", new int[] {0, 0}, uut.buyAll(bookList));
+            Assert.assertEquals("The cart was not emptied", 0, uut.getNumberOfBooks());
+            Assert.assertEquals("The total price was not as expected", BigDecimal.ZERO, uut.getTotalPrice());
+        }
+    }
+}
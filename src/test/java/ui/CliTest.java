@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package ui;
+
+import inventory.Book;
+import inventory.IndexedBookList;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Test classes for {@link Cli}
+ */
+public class CliTest {
+    private Path snapshot;
+    private byte[] bytes;
+
+    @Before
+    public void setup() throws IOException {
+        IndexedBookList bookList = new IndexedBookList();
+        bookList.add(new Book("The Lord of the Rings", "J.R.R. Tolkien", new BigDecimal(300)), 2);
+        bookList.add(new Book("The Rings of Saturn", "W.G. Sebald", new BigDecimal(120)), 1);
+        snapshot = Files.createTempFile("inventory", ".snapshot");
+        bookList.writeSnapshot(snapshot);
+        bytes = Files.readAllBytes(snapshot);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(snapshot);
+    }
+
+    @Test
+    public void loadSnapshot() {
+        IndexedBookList bookList = Cli.loadSnapshot(snapshot);
+
+        Assert.assertNotNull("The snapshot was not loaded", bookList);
+        Assert.assertEquals("The books in the snapshot were not as expected", 2, bookList.list(null).length);
+    }
+
+    @Test
+    public void missingSnapshotIsLoadedFromUrl() throws IOException {
+        Files.delete(snapshot);
+
+        Assert.assertNull("A missing snapshot was loaded", Cli.loadSnapshot(snapshot));
+    }
+
+    @Test
+    public void truncatedSnapshotIsLoadedFromUrl() throws IOException {
+        for (int length = 0; length < bytes.length; length++) {
+            Files.write(snapshot, Arrays.copyOf(bytes, length));
+
+            Assert.assertNull("A snapshot truncated to " + length + " bytes was loaded", Cli.loadSnapshot(snapshot));
+        }
+    }
+
+    @Test
+    public void corruptSnapshotIsReadOrLoadedFromUrl() throws IOException {
+        // A flipped byte in a title or a word is not detected, but no flipped byte may stop the store from starting.
+        for (int i = 0; i < bytes.length; i++) {
+            byte[] corrupt = bytes.clone();
+            corrupt[i] ^= (byte) 0xff;
+            Files.write(snapshot, corrupt);
+
+            Cli.loadSnapshot(snapshot);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package util;
+
+/**
+ * Compares how many lines of a book listing per second {@link Print} writes with the unbuffered printing that it
+ * replaced, one call to System.out per fragment and a println. Not a unit test, run it with stdout redirected:
+ *
+ * <pre>
+ * java util.PrintBenchmark [lines] [rounds] &gt; /dev/null
+ * </pre>
+ *
+ * The lines look like the lines that the CLI prints when it lists books. The results are written to stderr. The
+ * first round warms up the JVM.
+ */
+public class PrintBenchmark {
+    private static final String BOOK =
+            "Title: The Lord of the Rings: The Fellowship of the Ring, Author: J.R.R. Tolkien, Price: 300.00";
+
+    private PrintBenchmark() {
+
+    }
+
+    public static void main(String[] args) {
+        int lines = argument(args, 0, 1000000);
+        int rounds = argument(args, 1, 3);
+
+        for (int round = 1; round <= rounds; round++) {
+            long start = System.nanoTime();
+
+            for (int i = 0; i < lines; i++) {
+                printUnbuffered(String.valueOf(i + 1), ":", BOOK);
+            }
+
+            long unbufferedNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+
+            for (int i = 0; i < lines; i++) {
+                Print.print(String.valueOf(i + 1), ":", BOOK);
+            }
+
+            Print.flush();
+            long bufferedNanos = System.nanoTime() - start;
+
+            System.err.printf("round %d: System.out %,10.0f lines/s, Print %,10.0f lines/s%n",
+                    round, lines * 1e9 / unbufferedNanos, lines * 1e9 / bufferedNanos);
+        }
+    }
+
+    private static int argument(String[] args, int index, int defaultValue) {
+        return args.length > index ? Integer.parseInt(args[index]) : defaultValue;
+    }
+
+    /**
+     * The printing that {@link Print#print(String...)} replaced.
+     */
+    private static void printUnbuffered(String... toPrint) {
+        for (String fragment : toPrint) {
+            System.out.print(fragment);
+        }
+
+        System.out.println();
+    }
+}